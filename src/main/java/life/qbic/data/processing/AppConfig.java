@@ -3,11 +3,22 @@ package life.qbic.data.processing;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
+import life.qbic.data.processing.config.AutoscalingConfig;
+import life.qbic.data.processing.config.BackpressureConfig;
 import life.qbic.data.processing.config.EvaluationWorkersConfig;
+import life.qbic.data.processing.config.JournalConfig;
+import life.qbic.data.processing.config.LaneConfig;
 import life.qbic.data.processing.config.ProcessingWorkersConfig;
+import life.qbic.data.processing.config.ReconciliationConfig;
+import life.qbic.data.processing.config.RegistrationQueueConfig;
 import life.qbic.data.processing.config.RegistrationWorkersConfig;
+import life.qbic.data.processing.config.StageEngineConfig;
+import life.qbic.data.processing.config.TargetSelectionConfig;
+import life.qbic.data.processing.config.TransferConfig;
 import life.qbic.data.processing.evaluation.EvaluationConfiguration;
 import life.qbic.data.processing.processing.ProcessingConfiguration;
+import life.qbic.data.processing.processing.ProcessingSteps;
 import life.qbic.data.processing.registration.RegistrationConfiguration;
 import life.qbic.data.processing.scanner.ScannerConfiguration;
 import org.springframework.beans.factory.annotation.Value;
@@ -29,9 +40,12 @@ class AppConfig {
   @Bean
   ScannerConfiguration scannerConfiguration(
       @Value("${scanner.directory}") String scannerDirectory,
-      @Value("${scanner.interval}") int interval, @Value("${scanner.ignore}") String[] ignore)
+      @Value("${scanner.interval}") int interval, @Value("${scanner.ignore}") String[] ignore,
+      @Value("${scanner.mode}") String mode,
+      @Value("${scanner.reconciliation.interval}") long reconciliationInterval)
       throws IOException {
-    return new ScannerConfiguration(scannerDirectory, interval, ignore);
+    return new ScannerConfiguration(scannerDirectory, interval, ignore, mode,
+        reconciliationInterval);
   }
 
   @Bean
@@ -39,9 +53,39 @@ class AppConfig {
       @Value("${registration.threads}") int amountOfWorkers,
       @Value("${registration.working.dir}") String workingDirectory,
       @Value("${registration.target.dir}") String targetDirectory,
-      @Value("${registration.metadata.filename}") String metadataFileName) {
+      @Value("${registration.metadata.filename}") String metadataFileName,
+      @Value("${registration.batch.size}") int batchSize,
+      @Value("${registration.bulk.threads}") int amountOfBulkWorkers,
+      @Value("${registration.measurement.parallelism}") int measurementParallelism) {
     return new RegistrationWorkersConfig(amountOfWorkers, workingDirectory, targetDirectory,
-        metadataFileName);
+        metadataFileName, batchSize, amountOfBulkWorkers, measurementParallelism);
+  }
+
+  @Bean
+  JournalConfig journalConfig(@Value("${journal.file}") String file) {
+    return new JournalConfig(file);
+  }
+
+  @Bean
+  ReconciliationConfig reconciliationConfig(
+      @Value("${reconciliation.parallelism}") int parallelism) {
+    return new ReconciliationConfig(parallelism);
+  }
+
+  @Bean
+  RegistrationQueueConfig registrationQueueConfig(
+      @Value("${registration.queue.log}") String logFile,
+      @Value("${registration.queue.capacity}") int capacity,
+      @Value("${registration.queue.fair}") boolean fair,
+      @Value("${registration.queue.fair.quantum}") int quantum,
+      @Value("${registration.queue.fair.max-in-flight}") int maxInFlightPerUser) {
+    return new RegistrationQueueConfig(logFile, capacity, fair, quantum, maxInFlightPerUser);
+  }
+
+  @Bean
+  LaneConfig laneConfig(@Value("${lanes.bulk.min-size}") long bulkMinSize,
+      @Value("${lanes.bulk.min-files}") long bulkMinFiles) {
+    return new LaneConfig(bulkMinSize, bulkMinFiles);
   }
 
   @Bean
@@ -49,47 +93,105 @@ class AppConfig {
       RegistrationWorkersConfig registrationWorkersConfig) throws IOException {
     return new RegistrationConfiguration(registrationWorkersConfig.workingDirectory().toString(),
         registrationWorkersConfig.targetDirectory().toString(),
-        registrationWorkersConfig.metadataFileName());
+        registrationWorkersConfig.metadataFileName(), registrationWorkersConfig.batchSize(),
+        registrationWorkersConfig.measurementParallelism());
   }
 
   @Bean
   EvaluationWorkersConfig evaluationWorkersConfig(
       @Value("${evaluation.threads}") int amountOfWorkers,
       @Value("${evaluation.working.dir}") String workingDirectory,
-      @Value("${evaluation.target.dirs}") String[] targetDirectory) {
+      @Value("${evaluation.target.dirs}") String[] targetDirectory,
+      @Value("${evaluation.bulk.threads}") int amountOfBulkWorkers,
+      @Value("${evaluation.publish.mode}") String publishMode,
+      @Value("${evaluation.publish.verify}") boolean verifyPublish) {
     return new EvaluationWorkersConfig(amountOfWorkers, workingDirectory,
-        Arrays.stream(targetDirectory).toList());
+        Arrays.stream(targetDirectory).toList(), amountOfBulkWorkers, publishMode, verifyPublish);
+  }
+
+  @Bean
+  TargetSelectionConfig targetSelectionConfig(
+      @Value("${evaluation.target.selection}") String selection,
+      @Value("${evaluation.target.weights}") String[] weights,
+      @Value("${evaluation.target.min-free-space}") long minFreeSpace,
+      @Value("${evaluation.target.failure-threshold}") int failureThreshold,
+      @Value("${evaluation.target.open-duration}") long openDuration,
+      @Value("${evaluation.target.slow-throughput}") long slowThroughput) {
+    return new TargetSelectionConfig(selection,
+        Arrays.stream(weights).map(String::strip).filter(weight -> !weight.isEmpty())
+            .map(Integer::parseInt).toList(), minFreeSpace, failureThreshold, openDuration,
+        slowThroughput);
+  }
+
+  @Bean
+  BackpressureConfig backpressureConfig(
+      @Value("${evaluation.backpressure.high-watermark}") int highWatermark,
+      @Value("${evaluation.backpressure.low-watermark}") int lowWatermark,
+      @Value("${backpressure.max-staged-tasks}") long maxStagedTasks) {
+    return new BackpressureConfig(highWatermark, lowWatermark, maxStagedTasks);
   }
 
   @Bean
   EvaluationConfiguration evaluationConfiguration(EvaluationWorkersConfig evaluationWorkersConfig,
-      GlobalConfig globalConfig) throws IOException {
+      GlobalConfig globalConfig, TargetSelectionConfig targetSelectionConfig,
+      BackpressureConfig backpressureConfig) throws IOException {
     return new EvaluationConfiguration(evaluationWorkersConfig.workingDirectory().toString(),
-        evaluationWorkersConfig.targetDirectories(), globalConfig);
+        evaluationWorkersConfig.targetDirectories(), globalConfig,
+        evaluationWorkersConfig.publishMode(), targetSelectionConfig, backpressureConfig,
+        evaluationWorkersConfig.verifyPublish());
   }
 
   @Bean
   ProcessingWorkersConfig processingWorkersConfig(
       @Value("${processing.threads}") int amountOfWorkers,
       @Value("${processing.working.dir}") String workingDirectory,
-      @Value("${processing.target.dir}") String targetDirectory) {
+      @Value("${processing.target.dir}") String targetDirectory,
+      @Value("${processing.bulk.threads}") int amountOfBulkWorkers,
+      @Value("${processing.steps}") String[] steps) {
     return new ProcessingWorkersConfig(amountOfWorkers, Path.of(workingDirectory),
-        Path.of(targetDirectory));
+        Path.of(targetDirectory), amountOfBulkWorkers, Arrays.stream(steps).toList());
   }
 
   @Bean
-  ProcessingConfiguration processingConfiguration(ProcessingWorkersConfig processingWorkersConfig)
-      throws IOException {
+  ProcessingConfiguration processingConfiguration(ProcessingWorkersConfig processingWorkersConfig,
+      GlobalConfig globalConfig) throws IOException {
+    var steps = processingWorkersConfig.steps().isEmpty() ? List.of(ProcessingSteps.DEFAULT_STEP)
+        : processingWorkersConfig.steps();
     return new ProcessingConfiguration(processingWorkersConfig.workingDirectory(),
-        processingWorkersConfig.targetDirectory());
+        processingWorkersConfig.targetDirectory(), steps, globalConfig.usersErrorDirectory(),
+        globalConfig.provenanceCodec());
+  }
+
+  @Bean
+  AutoscalingConfig autoscalingConfig(@Value("${autoscaling.enabled}") boolean enabled,
+      @Value("${autoscaling.interval}") long interval,
+      @Value("${autoscaling.target-drain-time}") long targetDrainTime,
+      @Value("${autoscaling.scale-down-delay}") int scaleDownDelay,
+      @Value("${registration.threads.max}") int maxRegistrationThreads,
+      @Value("${processing.threads.max}") int maxProcessingThreads,
+      @Value("${evaluation.threads.max}") int maxEvaluationThreads) {
+    return new AutoscalingConfig(enabled, interval, targetDrainTime, scaleDownDelay,
+        maxRegistrationThreads, maxProcessingThreads, maxEvaluationThreads);
+  }
+
+  @Bean
+  TransferConfig transferConfig(@Value("${transfer.parallelism}") int parallelism,
+      @Value("${transfer.chunk-size}") long chunkSize) {
+    return new TransferConfig(parallelism, chunkSize);
+  }
+
+  @Bean
+  StageEngineConfig stageEngineConfig(@Value("${workers.thread-mode}") String threadMode) {
+    return new StageEngineConfig(threadMode);
   }
 
   @Bean
   GlobalConfig globalConfig(
       @Value("${users.error.directory.name}") String usersErrorDirectoryName,
       @Value("${users.registration.directory.name}") String usersRegistrationDirectoryName,
-      @Value("${qbic.measurement-id.pattern}") String measurementIdPattern) {
+      @Value("${qbic.measurement-id.pattern}") String measurementIdPattern,
+      @Value("${provenance.compact}") boolean compactProvenance) {
     return new GlobalConfig(usersErrorDirectoryName, usersRegistrationDirectoryName,
-        measurementIdPattern);
+        measurementIdPattern, compactProvenance);
   }
 }
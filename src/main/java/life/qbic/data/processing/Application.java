@@ -1,10 +1,24 @@
 package life.qbic.data.processing;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import life.qbic.data.processing.config.AutoscalingConfig;
+import life.qbic.data.processing.config.BackpressureConfig;
 import life.qbic.data.processing.config.EvaluationWorkersConfig;
+import life.qbic.data.processing.config.JournalConfig;
+import life.qbic.data.processing.config.LaneConfig;
 import life.qbic.data.processing.config.ProcessingWorkersConfig;
+import life.qbic.data.processing.config.ReconciliationConfig;
+import life.qbic.data.processing.config.RegistrationQueueConfig;
 import life.qbic.data.processing.config.RegistrationWorkersConfig;
+import life.qbic.data.processing.config.StageEngineConfig;
+import life.qbic.data.processing.config.TransferConfig;
+import life.qbic.data.processing.evaluation.BackpressureController;
 import life.qbic.data.processing.evaluation.EvaluationConfiguration;
 import life.qbic.data.processing.evaluation.EvaluationRequest;
 import life.qbic.data.processing.processing.ProcessingConfiguration;
@@ -13,6 +27,10 @@ import life.qbic.data.processing.registration.ProcessRegistrationRequest;
 import life.qbic.data.processing.registration.RegistrationConfiguration;
 import life.qbic.data.processing.scanner.Scanner;
 import life.qbic.data.processing.scanner.ScannerConfiguration;
+import life.qbic.data.processing.stage.Autoscaler;
+import life.qbic.data.processing.stage.StageEngine;
+import life.qbic.data.processing.stage.StageExecutor;
+import life.qbic.data.processing.transfer.TransferEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
@@ -45,46 +63,203 @@ public class Application {
         EvaluationConfiguration.class);
     GlobalConfig globalConfig = context.getBean(GlobalConfig.class);
 
-    var requestQueue = new ConcurrentRegistrationQueue();
-    var scannerThread = new Scanner(scannerConfiguration, requestQueue, globalConfig);
+    RegistrationQueueConfig registrationQueueConfig = context.getBean(
+        RegistrationQueueConfig.class);
+    LaneConfig laneConfig = context.getBean(LaneConfig.class);
+    StageEngineConfig stageEngineConfig = context.getBean(StageEngineConfig.class);
+    AutoscalingConfig autoscalingConfig = context.getBean(AutoscalingConfig.class);
+    TransferConfig transferConfig = context.getBean(TransferConfig.class);
+    BackpressureConfig backpressureConfig = context.getBean(BackpressureConfig.class);
+    JournalConfig journalConfig = context.getBean(JournalConfig.class);
+    ReconciliationConfig reconciliationConfig = context.getBean(ReconciliationConfig.class);
 
-    log.info("Registering {} registration workers...", registrationWorkersConfig.amountOfWorkers());
+    boolean bulkLaneEnabled = isBulkLaneEnabled(registrationWorkersConfig,
+        processingWorkersConfig, evaluationWorkersConfig);
 
-    List<ProcessRegistrationRequest> registrationWorkers = new LinkedList<>();
-    for (int i = 0; i < registrationWorkersConfig.amountOfWorkers(); i++) {
-      registrationWorkers.add(
-          new ProcessRegistrationRequest(requestQueue, registrationConfiguration, globalConfig));
+    var requestLog = openRegistrationRequestLog(registrationQueueConfig);
+    Map<Lane, RegistrationQueue> requestQueues = new EnumMap<>(Lane.class);
+    requestQueues.put(Lane.EXPRESS, createRegistrationQueue(registrationQueueConfig, requestLog));
+    DatasetClassifier datasetClassifier = null;
+    if (bulkLaneEnabled) {
+      requestQueues.put(Lane.BULK, createRegistrationQueue(registrationQueueConfig, requestLog));
+      datasetClassifier = new DatasetClassifier(laneConfig.bulkMinSize(),
+          laneConfig.bulkMinFiles());
     }
+    var scannerThread = new Scanner(scannerConfiguration, requestQueues, datasetClassifier,
+        globalConfig);
+    // the request log is shared between the lanes, so the express queue knows about all requests
+    scannerThread.recover(requestQueues.get(Lane.EXPRESS).unacknowledged());
 
-    log.info("Registering {} processing workers...", processingWorkersConfig.threads());
-
-    List<ProcessingRequest> processingWorkers = new LinkedList<>();
-    for (int i = 0; i < processingWorkersConfig.threads(); i++) {
-      processingWorkers.add(new ProcessingRequest(processingConfiguration));
+    var transferEngine = new TransferEngine(transferConfig.parallelism(),
+        transferConfig.chunkSize());
+    var journal = openTaskJournal(journalConfig);
+    var stageEngine = new StageEngine(stageEngineConfig.threadMode());
+    var autoscaler = new Autoscaler(autoscalingConfig.interval(),
+        autoscalingConfig.targetDrainTime(), autoscalingConfig.scaleDownDelay());
+    // the stages of every lane in the order of the pipeline, for the propagation of backpressure
+    Map<Lane, List<StageExecutor<?>>> pipelines = new EnumMap<>(Lane.class);
+    pipelines.put(Lane.EXPRESS, new ArrayList<>());
+    if (bulkLaneEnabled) {
+      pipelines.put(Lane.BULK, new ArrayList<>());
     }
-
-    log.info("Registering {} evaluation workers...", evaluationWorkersConfig.threads());
-
-    List<EvaluationRequest> evaluationWorkers = new LinkedList<>();
-    for (int i = 0; i < evaluationWorkersConfig.threads(); i++) {
-      evaluationWorkers.add(new EvaluationRequest(evaluationConfiguration));
+    var registration = new ProcessRegistrationRequest(requestQueues.get(Lane.EXPRESS),
+        registrationConfiguration, globalConfig, Lane.EXPRESS, transferEngine, journal,
+        stageEngineConfig.threadMode());
+    var registrationStage = stageEngine.register(registration,
+        registrationWorkersConfig.amountOfWorkers());
+    autoscaler.manage(registrationStage, registrationWorkersConfig.amountOfWorkers(),
+        autoscalingConfig.maxRegistrationThreads());
+    pipelines.get(Lane.EXPRESS).add(registrationStage);
+    if (bulkLaneEnabled) {
+      var bulkRegistrationStage = stageEngine.register(
+          new ProcessRegistrationRequest(requestQueues.get(Lane.BULK), registrationConfiguration,
+              globalConfig, Lane.BULK, transferEngine, journal, stageEngineConfig.threadMode()),
+          registrationWorkersConfig.amountOfBulkWorkers());
+      autoscaler.manage(bulkRegistrationStage, registrationWorkersConfig.amountOfBulkWorkers(),
+          autoscalingConfig.maxRegistrationThreads());
+      pipelines.get(Lane.BULK).add(bulkRegistrationStage);
+    }
+    for (int step = 0; step < processingConfiguration.steps().size(); step++) {
+      var processingStage = stageEngine.register(
+          new ProcessingRequest(processingConfiguration, step, Lane.EXPRESS, transferEngine),
+          processingWorkersConfig.threads());
+      autoscaler.manage(processingStage, processingWorkersConfig.threads(),
+          autoscalingConfig.maxProcessingThreads());
+      pipelines.get(Lane.EXPRESS).add(processingStage);
+      if (bulkLaneEnabled) {
+        var bulkProcessingStage = stageEngine.register(
+            new ProcessingRequest(processingConfiguration, step, Lane.BULK, transferEngine),
+            processingWorkersConfig.bulkThreads());
+        autoscaler.manage(bulkProcessingStage, processingWorkersConfig.bulkThreads(),
+            autoscalingConfig.maxProcessingThreads());
+        pipelines.get(Lane.BULK).add(bulkProcessingStage);
+      }
     }
+    var evaluation = new EvaluationRequest(evaluationConfiguration, Lane.EXPRESS, transferEngine,
+        journal);
+    var evaluationStage = stageEngine.register(evaluation, evaluationWorkersConfig.threads());
+    autoscaler.manage(evaluationStage, evaluationWorkersConfig.threads(),
+        autoscalingConfig.maxEvaluationThreads());
+    pipelines.get(Lane.EXPRESS).add(evaluationStage);
+    if (bulkLaneEnabled) {
+      var bulkEvaluationStage = stageEngine.register(
+          new EvaluationRequest(evaluationConfiguration, Lane.BULK, transferEngine, journal),
+          evaluationWorkersConfig.bulkThreads());
+      autoscaler.manage(bulkEvaluationStage, evaluationWorkersConfig.bulkThreads(),
+          autoscalingConfig.maxEvaluationThreads());
+      pipelines.get(Lane.BULK).add(bulkEvaluationStage);
+    }
+    pipelines.values().forEach(pipeline -> applyBackpressure(pipeline,
+        evaluationConfiguration.backpressure(), backpressureConfig.maxStagedTasks()));
+
+    // the journal is shared between the lanes, so one instance per stage recovers all of them
+    registration.recover();
+    evaluation.recover();
+    createStartupReconciliation(reconciliationConfig, transferEngine, registrationConfiguration,
+        processingConfiguration, evaluationConfiguration, pipelines.keySet()).run();
 
     scannerThread.start();
-    registrationWorkers.forEach(Thread::start);
-    processingWorkers.forEach(Thread::start);
-    evaluationWorkers.forEach(Thread::start);
+    stageEngine.start();
+    if (autoscalingConfig.enabled()) {
+      log.info("Autoscaling of workers enabled");
+      autoscaler.start();
+    }
 
     Runtime.getRuntime().addShutdownHook(new Thread(null, () ->
     {
       log.info("Shutting sequence initiated...");
       scannerThread.interrupt();
-      registrationWorkers.forEach(Thread::interrupt);
-      processingWorkers.forEach(Thread::interrupt);
-      evaluationWorkers.forEach(Thread::interrupt);
+      autoscaler.shutdown();
+      stageEngine.shutdown();
       // if every worker thread has shut down successfully, the application can exit with status code 0
       Runtime.getRuntime().halt(0);
     }, "Shutdown-thread"));
 
   }
+
+  /**
+   * Pauses the evaluation while no target directory accepts datasets. A paused stage pauses the
+   * stage in front of it as well, once the configured number of tasks is waiting in front of the
+   * paused stage. So a stalled openBIS ETL eventually stops the registration of new datasets,
+   * instead of filling up the working directories.
+   */
+  private static void applyBackpressure(List<StageExecutor<?>> pipeline,
+      BackpressureController backpressure, long maxStagedTasks) {
+    pipeline.get(pipeline.size() - 1).pauseWhen(backpressure::isSaturated);
+    for (int i = pipeline.size() - 2; i >= 0; i--) {
+      var downstream = pipeline.get(i + 1);
+      pipeline.get(i).pauseWhen(
+          () -> downstream.isPaused() && downstream.getBacklog() >= maxStagedTasks);
+    }
+  }
+
+  private static StartupReconciliation createStartupReconciliation(ReconciliationConfig config,
+      TransferEngine transferEngine, RegistrationConfiguration registrationConfiguration,
+      ProcessingConfiguration processingConfiguration,
+      EvaluationConfiguration evaluationConfiguration, Collection<Lane> lanes) {
+    var reconciliation = new StartupReconciliation(config.parallelism(), transferEngine);
+    reconciliation.registrationDirectory(registrationConfiguration.workingDirectory());
+    for (Lane lane : lanes) {
+      for (int step = 0; step < processingConfiguration.steps().size(); step++) {
+        reconciliation.stageDirectory(
+            lane.resolve(processingConfiguration.stepWorkingDirectory(step)));
+      }
+      reconciliation.stageDirectory(lane.resolve(evaluationConfiguration.workingDirectory()));
+    }
+    reconciliation.interventionDirectory(processingConfiguration.getWorkingDirectory()
+        .resolve(ProcessingRequest.INTERVENTION_DIRECTORY));
+    reconciliation.interventionDirectory(evaluationConfiguration.workingDirectory()
+        .resolve(EvaluationRequest.INTERVENTION_DIRECTORY));
+    return reconciliation;
+  }
+
+  private static boolean isBulkLaneEnabled(RegistrationWorkersConfig registrationWorkersConfig,
+      ProcessingWorkersConfig processingWorkersConfig,
+      EvaluationWorkersConfig evaluationWorkersConfig) {
+    var bulkWorkers = List.of(registrationWorkersConfig.amountOfBulkWorkers(),
+        processingWorkersConfig.bulkThreads(), evaluationWorkersConfig.bulkThreads());
+    if (bulkWorkers.stream().allMatch(threads -> threads == 0)) {
+      return false;
+    }
+    if (bulkWorkers.stream().anyMatch(threads -> threads == 0)) {
+      // tasks of the bulk lane would get stuck in a process step without workers
+      throw new IllegalArgumentException(
+          "Bulk workers must be configured either for every process step or for none");
+    }
+    return true;
+  }
+
+  private static RegistrationRequestLog openRegistrationRequestLog(
+      RegistrationQueueConfig config) {
+    if (config.logFile().isEmpty()) {
+      return null;
+    }
+    try {
+      return RegistrationRequestLog.open(config.logFile().get());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open registration queue log", e);
+    }
+  }
+
+  private static TaskJournal openTaskJournal(JournalConfig config) {
+    if (config.file().isEmpty()) {
+      log.info("Task journal disabled, interrupted tasks are not recovered");
+      return TaskJournal.disabled();
+    }
+    try {
+      return TaskJournal.open(config.file().get());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open task journal", e);
+    }
+  }
+
+  private static RegistrationQueue createRegistrationQueue(RegistrationQueueConfig config,
+      RegistrationRequestLog requestLog) {
+    if (config.fair()) {
+      log.info("Using fair registration queue with a capacity of {} per user", config.capacity());
+      return new FairRegistrationQueue(config.capacity(), config.quantum(),
+          config.maxInFlightPerUser(), requestLog);
+    }
+    return new ConcurrentRegistrationQueue(config.capacity(), requestLog);
+  }
 }
@@ -2,24 +2,41 @@ package life.qbic.data.processing;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import life.qbic.data.processing.registration.RegistrationRequest;
 import org.apache.logging.log4j.Logger;
 
 /**
  * <b>Concurrent Registration Queue</b>
  * <p>
- * Simple FIFO queue, that allows for backpressure.
+ * Bounded FIFO queue, that allows for backpressure.
+ * <p>
+ * The queue is based on a lock-free {@link RingBuffer}. Producers never block: if the queue has
+ * reached its capacity, {@link #offer(RegistrationRequest)} rejects the request and the producer
+ * can retry later. Consumers wait until a request is available and can take several requests at
+ * once (see {@link #drainTo(Collection, int)}).
+ * <p>
+ * Optionally, the queue is backed by a {@link RegistrationRequestLog}, so requests that have not
+ * been acknowledged by a registration worker (see {@link #acknowledge(RegistrationRequest)}) can
+ * be recovered after a restart (see {@link #unacknowledged()}).
  *
  * @since 1.0.0
  */
-public class ConcurrentRegistrationQueue {
+public class ConcurrentRegistrationQueue implements RegistrationQueue {
 
-  private static final int DEFAULT_CAPACITY = 10;
-  private final Queue<RegistrationRequest> queue = new LinkedBlockingQueue<>();
-  private final int capacity;
+  public static final int DEFAULT_CAPACITY = 10;
   private static final Logger log = getLogger(ConcurrentRegistrationQueue.class);
+  private final RingBuffer<RegistrationRequest> queue;
+  /**
+   * Counts the published requests, consumers only wait here if the queue is empty.
+   */
+  private final Semaphore available = new Semaphore(0);
+  private final RegistrationRequestLog requestLog;
 
 
   public ConcurrentRegistrationQueue() {
@@ -27,61 +44,187 @@ public class ConcurrentRegistrationQueue {
   }
 
   public ConcurrentRegistrationQueue(int capacity) {
-    this.capacity = capacity;
+    this(capacity, null);
   }
 
   /**
-   * Adds a new {@link RegistrationRequest} to the registration queue.
+   * Creates a queue that persists all requests in the given log.
+   *
+   * @param capacity   the maximal capacity of the queue
+   * @param requestLog the log to persist requests in, can be <code>null</code> for a queue that
+   *                   is held in memory only
+   * @since 1.0.0
+   */
+  public ConcurrentRegistrationQueue(int capacity, RegistrationRequestLog requestLog) {
+    this.queue = new RingBuffer<>(capacity);
+    this.requestLog = requestLog;
+  }
+
+  /**
+   * Offers a new {@link RegistrationRequest} to the registration queue.
    * <p>
-   * If the queue has reached its maximal capacity, the calling thread is put into the wait state,
-   * until the queue's load is reduced below its configured maximal capacity.
+   * The method never blocks. If the queue has reached its maximal capacity, the request is
+   * rejected and has to be offered again later.
    *
    * @param request the request to add to the registration queue
+   * @return <code>true</code>, if the request has been added, <code>false</code> if the queue is
+   * full
    * @since 1.0.0
    */
-  public synchronized void add(RegistrationRequest request) {
-    while (queue.size() >= capacity) {
-      try {
-        wait();
-      } catch (InterruptedException e) {
-        log.error("Interrupted while waiting for registration request", e);
-        Thread.currentThread().interrupt();
-      }
+  @Override
+  public boolean offer(RegistrationRequest request) {
+    // persisting first ensures that the acknowledgement can never overtake the request in the log,
+    // a rejected request is not persisted twice when offered again
+    persist(request);
+    if (!queue.offer(request)) {
+      return false;
+    }
+    available.release();
+    return true;
+  }
+
+  private void persist(RegistrationRequest request) {
+    if (requestLog == null) {
+      return;
+    }
+    try {
+      requestLog.append(request);
+    } catch (IOException e) {
+      log.error("Cannot persist registration request %s".formatted(request), e);
     }
-    queue.add(request);
-    notifyAll();
   }
 
   /**
    * Requests the next {@link RegistrationRequest} in the queue.
    * <p>
-   * If the queue is empty, the calling thread is put into the wait state (via
-   * {@link Object#wait()}) until it gets notified again when a new task is available in the queue.
+   * If the queue is empty, the calling thread waits until a new request is available in the
+   * queue.
    *
    * @return the next registration request available.
    * @since 1.0.0
    */
-  public synchronized RegistrationRequest poll() {
-    while (queue.isEmpty()) {
-      try {
-        wait();
-      } catch (InterruptedException e) {
-        log.error("Interrupted while waiting for registration request", e);
-        Thread.currentThread().interrupt();
+  @Override
+  public RegistrationRequest poll() {
+    available.acquireUninterruptibly();
+    return take();
+  }
+
+  /**
+   * Moves up to <code>maxRequests</code> {@link RegistrationRequest}s from the queue into the
+   * given collection.
+   * <p>
+   * If the queue is empty, the calling thread waits until at least one request is available.
+   *
+   * @param batch       the collection to add the requests to
+   * @param maxRequests the maximal number of requests to take
+   * @return the number of requests added to the batch
+   * @since 1.0.0
+   */
+  @Override
+  public int drainTo(Collection<RegistrationRequest> batch, int maxRequests) {
+    if (maxRequests < 1) {
+      throw new IllegalArgumentException("maxRequests must be greater than 0");
+    }
+    available.acquireUninterruptibly();
+    batch.add(take());
+    int taken = 1;
+    while (taken < maxRequests && available.tryAcquire()) {
+      batch.add(take());
+      taken++;
+    }
+    return taken;
+  }
+
+  /**
+   * Moves up to <code>maxRequests</code> {@link RegistrationRequest}s from the queue into the
+   * given collection, waits at most the given time for the first request.
+   *
+   * @param batch       the collection to add the requests to
+   * @param maxRequests the maximal number of requests to take
+   * @param timeout     the maximal time to wait for the first request
+   * @param unit        the unit of the timeout
+   * @return the number of requests added to the batch, <code>0</code> if no request became
+   * available in time
+   * @since 1.0.0
+   */
+  @Override
+  public int drainTo(Collection<RegistrationRequest> batch, int maxRequests, long timeout,
+      TimeUnit unit) {
+    if (maxRequests < 1) {
+      throw new IllegalArgumentException("maxRequests must be greater than 0");
+    }
+    try {
+      if (!available.tryAcquire(timeout, unit)) {
+        return 0;
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 0;
     }
-    var request = queue.poll();
-    if (queue.size() == capacity - 1) {
-      notifyAll();
+    batch.add(take());
+    int taken = 1;
+    while (taken < maxRequests && available.tryAcquire()) {
+      batch.add(take());
+      taken++;
+    }
+    return taken;
+  }
+
+  /**
+   * Takes a request, for which a permit has been acquired already. The request might not be
+   * visible yet, if a producer with an earlier position has not finished publishing.
+   */
+  private RegistrationRequest take() {
+    RegistrationRequest request;
+    while ((request = queue.poll()) == null) {
+      Thread.onSpinWait();
     }
     return request;
   }
 
-  public synchronized boolean hasItems() {
-    return !queue.isEmpty();
+  /**
+   * Acknowledges that a {@link RegistrationRequest} has been finished, regardless of its outcome.
+   * Acknowledged requests will not be recovered after a restart.
+   *
+   * @param request the finished request
+   * @since 1.0.0
+   */
+  @Override
+  public void acknowledge(RegistrationRequest request) {
+    if (requestLog == null) {
+      return;
+    }
+    try {
+      requestLog.acknowledge(request);
+    } catch (IOException e) {
+      log.error("Cannot acknowledge registration request %s".formatted(request), e);
+    }
+  }
+
+  /**
+   * Lists all requests that have been added to the queue (also in previous runs of the
+   * application), but have not been acknowledged yet.
+   *
+   * @return the unacknowledged requests in the order they have been added
+   * @since 1.0.0
+   */
+  @Override
+  public List<RegistrationRequest> unacknowledged() {
+    return Optional.ofNullable(requestLog).map(RegistrationRequestLog::unacknowledged)
+        .orElse(List.of());
+  }
+
+  @Override
+  public boolean hasItems() {
+    return queue.size() > 0;
   }
 
+  @Override
   public int items() {
     return queue.size();
   }
+
+  public int capacity() {
+    return queue.capacity();
+  }
 }
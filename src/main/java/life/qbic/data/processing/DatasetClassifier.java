@@ -0,0 +1,84 @@
+package life.qbic.data.processing;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Dataset Classifier</b>
+ * <p>
+ * Assigns a dataset to a {@link Lane} based on its total size in bytes and its number of files.
+ * <p>
+ * The dataset is traversed only until one of the thresholds of the {@link Lane#BULK} lane has
+ * been reached.
+ *
+ * @since 1.0.0
+ */
+public class DatasetClassifier {
+
+  private static final Logger log = getLogger(DatasetClassifier.class);
+  private final long bulkMinSize;
+  private final long bulkMinFiles;
+
+  /**
+   * @param bulkMinSize  the total size in bytes from which on a dataset belongs to the bulk lane
+   * @param bulkMinFiles the number of files from which on a dataset belongs to the bulk lane
+   * @since 1.0.0
+   */
+  public DatasetClassifier(long bulkMinSize, long bulkMinFiles) {
+    if (bulkMinSize < 1) {
+      throw new IllegalArgumentException("bulkMinSize must be greater than 0");
+    }
+    if (bulkMinFiles < 1) {
+      throw new IllegalArgumentException("bulkMinFiles must be greater than 0");
+    }
+    this.bulkMinSize = bulkMinSize;
+    this.bulkMinFiles = bulkMinFiles;
+  }
+
+  /**
+   * Classifies a dataset.
+   *
+   * @param dataset the path of the dataset, either a file or a directory
+   * @return the lane the dataset belongs to, {@link Lane#EXPRESS} if it cannot be determined
+   * @since 1.0.0
+   */
+  public Lane classify(Path dataset) {
+    var visitor = new SizeVisitor();
+    try {
+      Files.walkFileTree(dataset, visitor);
+    } catch (IOException e) {
+      log.warn("Cannot determine size of dataset '{}'", dataset, e);
+      return Lane.EXPRESS;
+    }
+    return visitor.exceedsThreshold() ? Lane.BULK : Lane.EXPRESS;
+  }
+
+  private class SizeVisitor extends SimpleFileVisitor<Path> {
+
+    private long size = 0;
+    private long files = 0;
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+      size += attrs.size();
+      files++;
+      return exceedsThreshold() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+      return FileVisitResult.CONTINUE;
+    }
+
+    private boolean exceedsThreshold() {
+      return size >= bulkMinSize || files >= bulkMinFiles;
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package life.qbic.data.processing;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import life.qbic.data.processing.registration.RegistrationRequest;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Fair Registration Queue</b>
+ * <p>
+ * Registration queue that shares the registration workers fairly between users, so a single user
+ * submitting a large number of datasets cannot starve all other users.
+ * <p>
+ * Every user (identified by {@link RegistrationRequest#userPath()}) has an own bounded sub-queue.
+ * The sub-queues are served by deficit round-robin: in every round, a user with pending requests
+ * receives a quantum of credits and can hand out one request per credit. Optionally, the number of
+ * requests per user that have been taken, but not been acknowledged yet (in-flight), is limited.
+ * Users that reached this limit are skipped until one of their requests is acknowledged.
+ * <p>
+ * Like the {@link ConcurrentRegistrationQueue}, the queue can be backed by a
+ * {@link RegistrationRequestLog}.
+ *
+ * @since 1.0.0
+ */
+public class FairRegistrationQueue implements RegistrationQueue {
+
+  private static final Logger log = getLogger(FairRegistrationQueue.class);
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition eligible = lock.newCondition();
+  private final Map<Path, UserQueue> users = new HashMap<>();
+  /**
+   * Users with pending requests, in the order they will be served.
+   */
+  private final Deque<UserQueue> activeUsers = new ArrayDeque<>();
+  private final int capacityPerUser;
+  private final int quantum;
+  private final int maxInFlightPerUser;
+  private final RegistrationRequestLog requestLog;
+  private int items = 0;
+
+  /**
+   * Creates a new fair registration queue.
+   *
+   * @param capacityPerUser    the maximal number of pending requests per user
+   * @param quantum            the number of requests a user can take per round
+   * @param maxInFlightPerUser the maximal number of requests per user that are processed at the
+   *                           same time, 0 for no limit
+   * @param requestLog         the log to persist requests in, can be <code>null</code> for a
+   *                           queue that is held in memory only
+   * @since 1.0.0
+   */
+  public FairRegistrationQueue(int capacityPerUser, int quantum, int maxInFlightPerUser,
+      RegistrationRequestLog requestLog) {
+    if (capacityPerUser < 1) {
+      throw new IllegalArgumentException("capacityPerUser must be greater than 0");
+    }
+    if (quantum < 1) {
+      throw new IllegalArgumentException("quantum must be greater than 0");
+    }
+    if (maxInFlightPerUser < 0) {
+      throw new IllegalArgumentException("maxInFlightPerUser must not be negative");
+    }
+    this.capacityPerUser = capacityPerUser;
+    this.quantum = quantum;
+    this.maxInFlightPerUser = maxInFlightPerUser;
+    this.requestLog = requestLog;
+  }
+
+  @Override
+  public boolean offer(RegistrationRequest request) {
+    lock.lock();
+    try {
+      var user = users.computeIfAbsent(request.userPath(), UserQueue::new);
+      if (user.pending.size() >= capacityPerUser) {
+        return false;
+      }
+      persist(request);
+      if (user.pending.isEmpty()) {
+        activeUsers.addLast(user);
+      }
+      user.pending.addLast(request);
+      items++;
+      eligible.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void persist(RegistrationRequest request) {
+    if (requestLog == null) {
+      return;
+    }
+    try {
+      requestLog.append(request);
+    } catch (IOException e) {
+      log.error("Cannot persist registration request %s".formatted(request), e);
+    }
+  }
+
+  @Override
+  public RegistrationRequest poll() {
+    lock.lock();
+    try {
+      RegistrationRequest request;
+      while ((request = next()) == null) {
+        eligible.awaitUninterruptibly();
+      }
+      return request;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<RegistrationRequest> batch, int maxRequests) {
+    if (maxRequests < 1) {
+      throw new IllegalArgumentException("maxRequests must be greater than 0");
+    }
+    lock.lock();
+    try {
+      batch.add(poll());
+      int taken = 1;
+      RegistrationRequest request;
+      while (taken < maxRequests && (request = next()) != null) {
+        batch.add(request);
+        taken++;
+      }
+      return taken;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<RegistrationRequest> batch, int maxRequests, long timeout,
+      TimeUnit unit) {
+    if (maxRequests < 1) {
+      throw new IllegalArgumentException("maxRequests must be greater than 0");
+    }
+    long remaining = unit.toNanos(timeout);
+    lock.lock();
+    try {
+      int taken = 0;
+      RegistrationRequest request;
+      while ((request = next()) == null) {
+        if (remaining <= 0) {
+          return 0;
+        }
+        remaining = eligible.awaitNanos(remaining);
+      }
+      do {
+        batch.add(request);
+        taken++;
+      } while (taken < maxRequests && (request = next()) != null);
+      return taken;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Selects the next request by deficit round-robin. Must only be called holding the lock.
+   *
+   * @return the next request, or <code>null</code> if no user with pending requests is eligible
+   */
+  private RegistrationRequest next() {
+    for (int i = activeUsers.size(); i > 0; i--) {
+      var user = activeUsers.peekFirst();
+      if (maxInFlightPerUser > 0 && user.inFlight >= maxInFlightPerUser) {
+        activeUsers.addLast(activeUsers.pollFirst());
+        continue;
+      }
+      if (user.deficit == 0) {
+        user.deficit = quantum;
+      }
+      var request = user.pending.pollFirst();
+      user.deficit--;
+      user.inFlight++;
+      items--;
+      activeUsers.pollFirst();
+      if (user.pending.isEmpty()) {
+        user.deficit = 0;
+      } else if (user.deficit == 0) {
+        activeUsers.addLast(user);
+      } else {
+        activeUsers.addFirst(user);
+      }
+      return request;
+    }
+    return null;
+  }
+
+  @Override
+  public void acknowledge(RegistrationRequest request) {
+    lock.lock();
+    try {
+      var user = users.get(request.userPath());
+      if (user != null && user.inFlight > 0) {
+        user.inFlight--;
+        if (user.inFlight == 0 && user.pending.isEmpty()) {
+          users.remove(user.userPath);
+        }
+        // the user might have been blocked by the in-flight limit for several waiting workers
+        eligible.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (requestLog == null) {
+      return;
+    }
+    try {
+      requestLog.acknowledge(request);
+    } catch (IOException e) {
+      log.error("Cannot acknowledge registration request %s".formatted(request), e);
+    }
+  }
+
+  @Override
+  public List<RegistrationRequest> unacknowledged() {
+    return Optional.ofNullable(requestLog).map(RegistrationRequestLog::unacknowledged)
+        .orElse(List.of());
+  }
+
+  @Override
+  public boolean hasItems() {
+    return items() > 0;
+  }
+
+  @Override
+  public int items() {
+    lock.lock();
+    try {
+      return items;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static final class UserQueue {
+
+    private final Path userPath;
+    private final Deque<RegistrationRequest> pending = new ArrayDeque<>();
+    private int deficit = 0;
+    private int inFlight = 0;
+
+    private UserQueue(Path userPath) {
+      this.userPath = userPath;
+    }
+  }
+}
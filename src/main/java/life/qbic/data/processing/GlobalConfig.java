@@ -12,8 +12,10 @@ public class GlobalConfig {
 
   private final Pattern qbicMeasurementIdPattern;
 
+  private final ProvenanceCodec provenanceCodec;
+
   public GlobalConfig(String usersErrorDirectoryName, String usersRegistrationDirectoryName,
-      String qbicMeasurementIdPattern) {
+      String qbicMeasurementIdPattern, boolean compactProvenance) {
     if (usersErrorDirectoryName == null || usersErrorDirectoryName.isBlank()) {
       throw new IllegalArgumentException("usersErrorDirectoryName cannot be null or empty");
     }
@@ -26,6 +28,7 @@ public class GlobalConfig {
     this.usersErrorDirectoryName = Paths.get(usersErrorDirectoryName);
     this.usersDirectoryRegistrationName = Paths.get(usersRegistrationDirectoryName);
     this.qbicMeasurementIdPattern = Pattern.compile(qbicMeasurementIdPattern);
+    this.provenanceCodec = ProvenanceCodec.of(compactProvenance);
   }
 
   public Path usersErrorDirectory() {
@@ -40,4 +43,13 @@ public class GlobalConfig {
     return this.qbicMeasurementIdPattern;
   }
 
+  /**
+   * The codec every process step writes provenance files with.
+   *
+   * @return the provenance codec
+   */
+  public ProvenanceCodec provenanceCodec() {
+    return this.provenanceCodec;
+  }
+
 }
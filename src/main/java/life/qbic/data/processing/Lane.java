@@ -0,0 +1,61 @@
+package life.qbic.data.processing;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * <b>Lane</b>
+ * <p>
+ * Datasets are processed in separate lanes depending on their size, so small datasets do not have
+ * to wait behind large datasets that occupy the workers for hours.
+ * <p>
+ * Every lane has its own workers per process step. Tasks of the {@link #EXPRESS} lane reside
+ * directly in the working directories of the process steps, tasks of any other lane in a
+ * sub-directory named after the lane.
+ *
+ * @since 1.0.0
+ */
+public enum Lane {
+
+  /**
+   * Small datasets, the default lane.
+   */
+  EXPRESS(null),
+  /**
+   * Large datasets, either by total size or number of files.
+   */
+  BULK("bulk");
+
+  private final String directoryName;
+
+  Lane(String directoryName) {
+    this.directoryName = directoryName;
+  }
+
+  /**
+   * Checks if a directory name is reserved for the tasks of a lane.
+   *
+   * @param name the name of the directory
+   * @return <code>true</code>, if the directory contains the tasks of a lane
+   * @since 1.0.0
+   */
+  public static boolean isLaneDirectory(String name) {
+    return Arrays.stream(values()).anyMatch(lane -> name.equals(lane.directoryName));
+  }
+
+  /**
+   * Resolves the directory of the lane within the directory of a process step.
+   *
+   * @param stageDirectory the working or target directory of a process step
+   * @return the directory holding the tasks of this lane
+   * @since 1.0.0
+   */
+  public Path resolve(Path stageDirectory) {
+    return directoryName == null ? stageDirectory : stageDirectory.resolve(directoryName);
+  }
+
+  @Override
+  public String toString() {
+    return name().charAt(0) + name().substring(1).toLowerCase();
+  }
+}
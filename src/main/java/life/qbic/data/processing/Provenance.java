@@ -1,19 +1,23 @@
 package life.qbic.data.processing;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -58,21 +62,26 @@ public class Provenance {
   @JsonProperty("history")
   public List<String> history;
 
+  /**
+   * Additional sections added by processing steps, e.g. statistics of the dataset, by the name of
+   * the section.
+   */
+  @JsonProperty("extensions")
+  @JsonInclude(Include.NON_EMPTY)
+  public Map<String, Object> extensions;
+
+  @JsonIgnore
+  private boolean extended = false;
+
   public static Provenance parse(Path json) throws ProvenanceException {
-    File provenanceFile = json.toFile();
-    if (!provenanceFile.exists()) {
-      throw new ProvenanceException("File does not exist: %s".formatted(provenanceFile),
+    try {
+      return ProvenanceCodec.read(json);
+    } catch (NoSuchFileException e) {
+      throw new ProvenanceException("File does not exist: %s".formatted(json),
           ERROR_CODE.NOT_FOUND);
-    }
-    if (!provenanceFile.canRead()) {
-      throw new ProvenanceException("Cannot read file: %s".formatted(provenanceFile),
+    } catch (AccessDeniedException e) {
+      throw new ProvenanceException("Cannot read file: %s".formatted(json),
           ERROR_CODE.PERMISSION_DENIED);
-    }
-    ObjectMapper mapper = new ObjectMapper().configure(
-        DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    Provenance provenance;
-    try {
-      provenance = mapper.readValue(Files.readString(json), Provenance.class);
     } catch (JsonProcessingException e) {
       throw new ProvenanceException("Cannot read content %s".formatted(json), e,
           ERROR_CODE.UNKNOWN_CONTENT);
@@ -80,7 +89,6 @@ public class Provenance {
       throw new ProvenanceException("IO Error: %s".formatted(e.getMessage()), e,
           ERROR_CODE.IO_ERROR);
     }
-    return provenance;
   }
 
   public static Optional<File> findProvenance(Path directory) {
@@ -95,6 +103,46 @@ public class Provenance {
     history.add(event);
   }
 
+  /**
+   * Adds a section to the provenance, replacing an existing section with the same name.
+   *
+   * @param name    the name of the section
+   * @param section the content of the section, must be serializable to JSON
+   * @since 1.0.0
+   */
+  public void putExtension(String name, Object section) {
+    Objects.requireNonNull(name);
+    Objects.requireNonNull(section);
+    if (extensions == null) {
+      extensions = new LinkedHashMap<>();
+    }
+    extensions.put(name, section);
+    extended = true;
+  }
+
+  /**
+   * Checks if sections have been added since the provenance has been read, so the provenance file
+   * has to be written again.
+   *
+   * @return <code>true</code>, if {@link #putExtension(String, Object)} has been called
+   * @since 1.0.0
+   */
+  public boolean isExtended() {
+    return extended;
+  }
+
+  /**
+   * Returns a section added by a processing step. Sections read from a provenance file are
+   * represented as maps, lists and plain values.
+   *
+   * @param name the name of the section
+   * @return the section, or {@link Optional#empty()} if there is no section with the name
+   * @since 1.0.0
+   */
+  public Optional<Object> extension(String name) {
+    return extensions == null ? Optional.empty() : Optional.ofNullable(extensions.get(name));
+  }
+
   public enum ERROR_CODE {
     PERMISSION_DENIED,
     UNKNOWN_CONTENT,
@@ -0,0 +1,105 @@
+package life.qbic.data.processing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * <b>Provenance Codec</b>
+ * <p>
+ * Reads and writes {@link Provenance} files with a single, pre-configured Jackson reader and
+ * writer, which are thread-safe and shared by all workers. Creating an {@link ObjectMapper} per
+ * file would discard the serializers Jackson has built for the provenance class every time.
+ * <p>
+ * Files are parsed as a stream straight from their channel. A provenance file is written to a
+ * temporary file in the same directory first, forced to disk and renamed to its final name, so
+ * readers never see a partially written provenance, not even after a crash.
+ * <p>
+ * The {@link #PRETTY} codec writes indented JSON for humans, the {@link #COMPACT} codec writes a
+ * single line, which is smaller and faster for datasets with many files.
+ *
+ * @since 1.0.0
+ */
+public final class ProvenanceCodec {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper().configure(
+      DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  private static final ObjectReader READER = MAPPER.readerFor(Provenance.class);
+  /**
+   * Writes indented JSON.
+   */
+  public static final ProvenanceCodec PRETTY = new ProvenanceCodec(
+      MAPPER.writerFor(Provenance.class).withDefaultPrettyPrinter());
+  /**
+   * Writes JSON without any whitespace.
+   */
+  public static final ProvenanceCodec COMPACT = new ProvenanceCodec(
+      MAPPER.writerFor(Provenance.class));
+  private final ObjectWriter writer;
+
+  private ProvenanceCodec(ObjectWriter writer) {
+    // the channel must stay open until it has been forced to disk
+    this.writer = writer.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  /**
+   * @param compact <code>true</code> for compact JSON, <code>false</code> for indented JSON
+   * @return the codec writing the requested format
+   * @since 1.0.0
+   */
+  public static ProvenanceCodec of(boolean compact) {
+    return compact ? COMPACT : PRETTY;
+  }
+
+  /**
+   * Parses a provenance file, written in any format.
+   *
+   * @param file the provenance file
+   * @return the provenance
+   * @throws IOException if the file cannot be read or does not contain a provenance, in this case
+   *                     a {@link com.fasterxml.jackson.core.JsonProcessingException}
+   * @since 1.0.0
+   */
+  public static Provenance read(Path file) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ);
+        var input = Channels.newInputStream(channel)) {
+      return READER.readValue(input);
+    }
+  }
+
+  /**
+   * Replaces a provenance file atomically.
+   *
+   * @param provenance the provenance to write
+   * @param file       the provenance file, replaced if it exists
+   * @throws IOException if the provenance cannot be written, the previous file is kept then
+   * @since 1.0.0
+   */
+  public void write(Provenance provenance, Path file) throws IOException {
+    // a hidden name in the same directory, created with the default permissions of new files
+    var temporaryFile = file.resolveSibling(
+        ".%s.%s.tmp".formatted(file.getFileName(), UUID.randomUUID()));
+    try {
+      try (var channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.WRITE)) {
+        writer.writeValue(Channels.newOutputStream(channel), provenance);
+        channel.force(false);
+      }
+      Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporaryFile);
+      throw e;
+    }
+  }
+}
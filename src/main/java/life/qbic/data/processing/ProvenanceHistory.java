@@ -0,0 +1,163 @@
+package life.qbic.data.processing;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Provenance History</b>
+ * <p>
+ * Append-only log of the process steps a task has passed, kept as {@link #FILE_NAME} next to the
+ * provenance file. Every process step appends one {@link Event} as a line of JSON (NDJSON) instead
+ * of rewriting the whole provenance, which contains the list of all dataset files and is written
+ * once by the registration.
+ * <p>
+ * Before a task is published, the log is materialized into the provenance file: the locations of
+ * all events are appended to {@link Provenance#history}, the events themselves are added as the
+ * {@link #PROVENANCE_SECTION} extension, and the log is deleted. So the published provenance file
+ * is self-contained, as expected by openBIS.
+ * <p>
+ * A line partially written during a crash is skipped when the log is read.
+ *
+ * @since 1.0.0
+ */
+public final class ProvenanceHistory {
+
+  /**
+   * The name of the history log in the task directory.
+   */
+  public static final String FILE_NAME = "provenance-history.ndjson";
+  /**
+   * The name of the provenance section holding the materialized events.
+   */
+  public static final String PROVENANCE_SECTION = "historyEvents";
+  private static final Logger log = getLogger(ProvenanceHistory.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectReader READER = MAPPER.readerFor(Event.class);
+  private static final ObjectWriter WRITER = MAPPER.writerFor(Event.class);
+  private static final TypeReference<List<Event>> EVENTS = new TypeReference<>() {
+  };
+
+  private ProvenanceHistory() {
+  }
+
+  /**
+   * Appends an event for a process step to the history log of a task, creating the log if
+   * necessary, and forces it to disk.
+   *
+   * @param taskDirectory the task directory, the location of the event
+   * @param stage         the name of the process step
+   * @throws IOException if the event cannot be written
+   * @since 1.0.0
+   */
+  public static void append(Path taskDirectory, String stage) throws IOException {
+    var event = new Event(stage, taskDirectory.toAbsolutePath().toString(),
+        Instant.now().toString());
+    var line = ByteBuffer.wrap(
+        (WRITER.writeValueAsString(event) + "\n").getBytes(StandardCharsets.UTF_8));
+    try (var channel = FileChannel.open(taskDirectory.resolve(FILE_NAME),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      while (line.hasRemaining()) {
+        channel.write(line);
+      }
+      channel.force(false);
+    }
+  }
+
+  /**
+   * Reads the history log of a task.
+   *
+   * @param taskDirectory the task directory
+   * @return the events in the order they were appended, empty if the task has no history log
+   * @throws IOException if the log cannot be read
+   * @since 1.0.0
+   */
+  public static List<Event> read(Path taskDirectory) throws IOException {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(taskDirectory.resolve(FILE_NAME), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return List.of();
+    }
+    List<Event> events = new ArrayList<>(lines.size());
+    for (String line : lines) {
+      if (line.isBlank()) {
+        continue;
+      }
+      try {
+        events.add(READER.readValue(line));
+      } catch (JsonProcessingException e) {
+        log.warn("Skipping corrupt event in history of task {}: {}", taskDirectory, line);
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Writes the complete provenance of a task, including its history log and a final event for the
+   * current process step, and deletes the history log. Events materialized before are kept, so a
+   * task can be materialized again, e.g. after its evaluation has been retried.
+   *
+   * @param taskDirectory the task directory
+   * @param provenance    the provenance of the task, as read from its provenance file
+   * @param stage         the name of the current process step
+   * @param codec         the codec to write the provenance file with
+   * @throws IOException if the history log cannot be read or the provenance cannot be written
+   * @since 1.0.0
+   */
+  public static void materialize(Path taskDirectory, Provenance provenance, String stage,
+      ProvenanceCodec codec) throws IOException {
+    // a task materialized before, e.g. by an evaluation that failed later, keeps its events
+    List<Event> events = new ArrayList<>(materialized(provenance));
+    read(taskDirectory).stream().filter(event -> !events.contains(event)).forEach(events::add);
+    var location = taskDirectory.toAbsolutePath().toString();
+    if (events.stream().noneMatch(
+        event -> event.stage().equals(stage) && event.location().equals(location))) {
+      events.add(new Event(stage, location, Instant.now().toString()));
+    }
+    events.stream().map(Event::location)
+        .filter(eventLocation -> provenance.history == null
+            || !provenance.history.contains(eventLocation))
+        .distinct().forEach(provenance::addToHistory);
+    provenance.putExtension(PROVENANCE_SECTION, events);
+    codec.write(provenance, taskDirectory.resolve(Provenance.FILE_NAME));
+    Files.deleteIfExists(taskDirectory.resolve(FILE_NAME));
+  }
+
+  private static List<Event> materialized(Provenance provenance) {
+    return provenance.extension(PROVENANCE_SECTION)
+        .map(section -> MAPPER.convertValue(section, EVENTS))
+        .orElse(List.of());
+  }
+
+  /**
+   * A process step a task has passed.
+   *
+   * @param stage     the name of the process step
+   * @param location  the task directory in the working directory of the process step
+   * @param timestamp the time the process step finished the task, in ISO-8601 format
+   * @since 1.0.0
+   */
+  public record Event(@JsonProperty("stage") String stage,
+                      @JsonProperty("location") String location,
+                      @JsonProperty("timestamp") String timestamp) {
+
+  }
+}
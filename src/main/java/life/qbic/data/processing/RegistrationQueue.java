@@ -0,0 +1,82 @@
+package life.qbic.data.processing;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import life.qbic.data.processing.registration.RegistrationRequest;
+
+/**
+ * <b>Registration Queue</b>
+ * <p>
+ * Hands over {@link RegistrationRequest}s from the scanner to the registration workers.
+ *
+ * @since 1.0.0
+ */
+public interface RegistrationQueue {
+
+  /**
+   * Offers a new {@link RegistrationRequest} to the registration queue without blocking.
+   *
+   * @param request the request to add to the registration queue
+   * @return <code>true</code>, if the request has been added, <code>false</code> if the queue
+   * cannot take the request at the moment and it has to be offered again later
+   * @since 1.0.0
+   */
+  boolean offer(RegistrationRequest request);
+
+  /**
+   * Requests the next {@link RegistrationRequest} in the queue, waits until one is available.
+   *
+   * @return the next registration request available.
+   * @since 1.0.0
+   */
+  RegistrationRequest poll();
+
+  /**
+   * Moves up to <code>maxRequests</code> {@link RegistrationRequest}s from the queue into the
+   * given collection, waits until at least one request is available.
+   *
+   * @param batch       the collection to add the requests to
+   * @param maxRequests the maximal number of requests to take
+   * @return the number of requests added to the batch
+   * @since 1.0.0
+   */
+  int drainTo(Collection<RegistrationRequest> batch, int maxRequests);
+
+  /**
+   * Moves up to <code>maxRequests</code> {@link RegistrationRequest}s from the queue into the
+   * given collection, waits at most the given time for the first request.
+   *
+   * @param batch       the collection to add the requests to
+   * @param maxRequests the maximal number of requests to take
+   * @param timeout     the maximal time to wait for the first request
+   * @param unit        the unit of the timeout
+   * @return the number of requests added to the batch, <code>0</code> if no request became
+   * available in time
+   * @since 1.0.0
+   */
+  int drainTo(Collection<RegistrationRequest> batch, int maxRequests, long timeout,
+      TimeUnit unit);
+
+  /**
+   * Acknowledges that a {@link RegistrationRequest} taken from the queue has been finished,
+   * regardless of its outcome.
+   *
+   * @param request the finished request
+   * @since 1.0.0
+   */
+  void acknowledge(RegistrationRequest request);
+
+  /**
+   * Lists all requests that have been added to the queue (also in previous runs of the
+   * application, if the queue is persistent), but have not been acknowledged yet.
+   *
+   * @return the unacknowledged requests in the order they have been added
+   * @since 1.0.0
+   */
+  List<RegistrationRequest> unacknowledged();
+
+  boolean hasItems();
+
+  int items();
+}
@@ -0,0 +1,258 @@
+package life.qbic.data.processing;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import life.qbic.data.processing.registration.RegistrationRequest;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Registration Request Log</b>
+ * <p>
+ * Append-only, memory-mapped write-ahead log of {@link RegistrationRequest}s, that enables the
+ * {@link ConcurrentRegistrationQueue} to survive application restarts.
+ * <p>
+ * Every enqueued request is appended before it becomes visible to the registration workers, and
+ * every request that has been finished by a worker is recorded with an acknowledgement. On
+ * opening the log, all requests without acknowledgement are recovered.
+ * <p>
+ * Each record is protected by a CRC32C checksum, so a record that has only been written partially
+ * (e.g. due to a crash) marks the end of the log. The log is compacted, when it is opened, when it
+ * runs out of space and whenever all requests have been acknowledged.
+ *
+ * @since 1.0.0
+ */
+public class RegistrationRequestLog implements Closeable {
+
+  private static final Logger log = getLogger(RegistrationRequestLog.class);
+  private static final int MAGIC = 0x51524c31;
+  private static final byte ENQUEUED = 1;
+  private static final byte ACKNOWLEDGED = 2;
+  private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+  private static final int INITIAL_SIZE = 1 << 20;
+  private static final int COMPACTION_THRESHOLD = 1 << 16;
+
+  private final Path file;
+  private final Set<RegistrationRequest> pending = new LinkedHashSet<>();
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+
+  private RegistrationRequestLog(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Opens the log at the given location, or creates a new one if it does not exist yet.
+   *
+   * @param file the path of the log file
+   * @return the opened log, containing all unacknowledged requests of previous runs
+   * @throws IOException if the log cannot be read or written
+   * @since 1.0.0
+   */
+  public static RegistrationRequestLog open(Path file) throws IOException {
+    Objects.requireNonNull(file, "file must not be null");
+    var requestLog = new RegistrationRequestLog(file);
+    if (Files.exists(file)) {
+      requestLog.read();
+    }
+    requestLog.compact();
+    log.info("Opened registration request log '{}' with {} unacknowledged requests", file,
+        requestLog.pending.size());
+    return requestLog;
+  }
+
+  private static void putString(ByteBuffer target, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    target.putInt(bytes.length);
+    target.put(bytes);
+  }
+
+  private static String getString(ByteBuffer source) {
+    byte[] bytes = new byte[source.getInt()];
+    source.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] encode(byte type, RegistrationRequest request) {
+    byte[] target = request.target().toString().getBytes(StandardCharsets.UTF_8);
+    byte[] origin = request.origin().toString().getBytes(StandardCharsets.UTF_8);
+    byte[] user = request.userPath().toString().getBytes(StandardCharsets.UTF_8);
+    int size = 1 + Long.BYTES + Integer.BYTES + target.length;
+    if (type == ENQUEUED) {
+      size += Long.BYTES + Integer.BYTES + 2 * Integer.BYTES + origin.length + user.length;
+    }
+    ByteBuffer payload = ByteBuffer.allocate(size);
+    payload.put(type);
+    payload.putLong(request.lastModified());
+    payload.putInt(target.length).put(target);
+    if (type == ENQUEUED) {
+      payload.putLong(request.timestamp().getEpochSecond());
+      payload.putInt(request.timestamp().getNano());
+      payload.putInt(origin.length).put(origin);
+      payload.putInt(user.length).put(user);
+    }
+    return payload.array();
+  }
+
+  private static int checksum(byte[] payload) {
+    var crc = new CRC32C();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  private void read() throws IOException {
+    try (var readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var content = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+      if (content.remaining() < Integer.BYTES || content.getInt() != MAGIC) {
+        throw new IOException("Not a registration request log: " + file);
+      }
+      while (content.remaining() >= RECORD_HEADER_SIZE) {
+        int length = content.getInt();
+        int crc = content.getInt();
+        if (length <= 0 || length > content.remaining()) {
+          break;
+        }
+        byte[] payload = new byte[length];
+        content.get(payload);
+        if (checksum(payload) != crc) {
+          log.warn("Skipping corrupt tail of registration request log '{}'", file);
+          break;
+        }
+        apply(ByteBuffer.wrap(payload));
+      }
+    }
+  }
+
+  private void apply(ByteBuffer payload) {
+    byte type = payload.get();
+    long lastModified = payload.getLong();
+    Path target = Paths.get(getString(payload));
+    if (type == ACKNOWLEDGED) {
+      pending.removeIf(request -> request.lastModified() == lastModified && request.target()
+          .equals(target));
+      return;
+    }
+    var timestamp = Instant.ofEpochSecond(payload.getLong(), payload.getInt());
+    var origin = Paths.get(getString(payload));
+    var userPath = Paths.get(getString(payload));
+    pending.add(new RegistrationRequest(timestamp, lastModified, origin, target, userPath));
+  }
+
+  /**
+   * Appends a request to the log. Requests that are already pending are not appended again.
+   *
+   * @param request the request to append
+   * @throws IOException if the request cannot be written durably
+   * @since 1.0.0
+   */
+  public synchronized void append(RegistrationRequest request) throws IOException {
+    if (pending.add(request)) {
+      write(encode(ENQUEUED, request));
+    }
+  }
+
+  /**
+   * Acknowledges a request, which will not be recovered anymore after a restart.
+   *
+   * @param request the request that has been finished
+   * @throws IOException if the acknowledgement cannot be written durably
+   * @since 1.0.0
+   */
+  public synchronized void acknowledge(RegistrationRequest request) throws IOException {
+    if (!pending.remove(request)) {
+      return;
+    }
+    if (pending.isEmpty() && buffer.position() > COMPACTION_THRESHOLD) {
+      compact();
+      return;
+    }
+    write(encode(ACKNOWLEDGED, request));
+  }
+
+  /**
+   * @return all requests that have been appended, but not acknowledged yet, in the order of their
+   * appending
+   * @since 1.0.0
+   */
+  public synchronized List<RegistrationRequest> unacknowledged() {
+    return List.copyOf(pending);
+  }
+
+  private void write(byte[] payload) throws IOException {
+    int recordSize = RECORD_HEADER_SIZE + payload.length;
+    if (buffer.remaining() < recordSize) {
+      compact();
+    }
+    if (buffer.remaining() < recordSize) {
+      remap(Math.max(2L * buffer.capacity(), (long) buffer.position() + recordSize));
+    }
+    buffer.putInt(payload.length);
+    buffer.putInt(checksum(payload));
+    buffer.put(payload);
+    buffer.force();
+  }
+
+  /**
+   * Rewrites the log with the pending requests only and replaces the current log atomically.
+   */
+  private void compact() throws IOException {
+    Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+    long size = Integer.BYTES;
+    try (var compactChannel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      compactChannel.write(ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip());
+      for (RegistrationRequest request : pending) {
+        byte[] payload = encode(ENQUEUED, request);
+        var record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        while (record.hasRemaining()) {
+          compactChannel.write(record);
+        }
+        size += RECORD_HEADER_SIZE + payload.length;
+      }
+      compactChannel.force(true);
+    }
+    close();
+    Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    buffer = null;
+    remap(Math.max(INITIAL_SIZE, 2 * size));
+    buffer.position((int) size);
+  }
+
+  private void remap(long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Registration request log exceeds maximum size: " + file);
+    }
+    int position = buffer == null ? 0 : buffer.position();
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    buffer.position(position);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (buffer != null) {
+      buffer.force();
+    }
+    if (channel != null) {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package life.qbic.data.processing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <b>Ring Buffer</b>
+ * <p>
+ * Bounded, lock-free multi-producer multi-consumer FIFO buffer.
+ * <p>
+ * Every slot carries a sequence number, that tells producers and consumers whether the slot is
+ * ready to be written or read in the current round (D. Vyukov's bounded MPMC queue). Producers and
+ * consumers only contend on a single compare-and-set of their respective position counter. The
+ * scheme requires at least two slots, so a capacity of 1 is rounded up to 2.
+ *
+ * @param <T> the type of the buffered items
+ * @since 1.0.0
+ */
+final class RingBuffer<T> {
+
+  private final int capacity;
+  private final AtomicLongArray sequences;
+  private final AtomicReferenceArray<T> items;
+  private final AtomicLong writePosition = new AtomicLong();
+  private final AtomicLong readPosition = new AtomicLong();
+
+  RingBuffer(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be greater than 0");
+    }
+    // with a single slot, the sequence of a readable slot equals the one of a writable slot
+    this.capacity = Math.max(2, capacity);
+    this.sequences = new AtomicLongArray(this.capacity);
+    this.items = new AtomicReferenceArray<>(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Inserts an item, if the buffer is not full.
+   *
+   * @param item the item to insert
+   * @return <code>true</code>, if the item has been inserted, <code>false</code> if the buffer is
+   * full
+   * @since 1.0.0
+   */
+  boolean offer(T item) {
+    long position = writePosition.get();
+    while (true) {
+      int index = (int) (position % capacity);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (writePosition.compareAndSet(position, position + 1)) {
+          items.lazySet(index, item);
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = writePosition.get();
+      } else if (difference < 0) {
+        return false;
+      } else {
+        position = writePosition.get();
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest item, if one has been published.
+   *
+   * @return the oldest item, or <code>null</code> if there is none
+   * @since 1.0.0
+   */
+  T poll() {
+    long position = readPosition.get();
+    while (true) {
+      int index = (int) (position % capacity);
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (readPosition.compareAndSet(position, position + 1)) {
+          T item = items.get(index);
+          items.lazySet(index, null);
+          sequences.set(index, position + capacity);
+          return item;
+        }
+        position = readPosition.get();
+      } else if (difference < 0) {
+        return null;
+      } else {
+        position = readPosition.get();
+      }
+    }
+  }
+
+  /**
+   * @return the approximate number of buffered items
+   * @since 1.0.0
+   */
+  int size() {
+    long size = writePosition.get() - readPosition.get();
+    return (int) Math.max(0, Math.min(size, capacity));
+  }
+
+  int capacity() {
+    return capacity;
+  }
+}
@@ -0,0 +1,325 @@
+package life.qbic.data.processing;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import life.qbic.data.processing.Provenance.ProvenanceException;
+import life.qbic.data.processing.transfer.TransferEngine;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Startup Reconciliation</b>
+ * <p>
+ * Examines the tasks left over in the working directories of all process steps on start-up, before
+ * the scanner and the workers start, and hands them over to the {@link TaskChannel} of the process
+ * step they belong to. So the workers start with a full channel, instead of discovering the
+ * leftovers with their first directory listing.
+ * <p>
+ * The directories are traversed in parallel on a {@link ForkJoinPool}: every directory is listed
+ * by an own task, its entries are split recursively into batches, whose provenance files are read
+ * in parallel. Every task directory is classified as follows:
+ * <ul>
+ *   <li>tasks in the working directory of a processing step or the evaluation are queued in the
+ *   channel of that directory, tasks without a readable provenance file are queued too, their
+ *   process step moves them to the intervention</li>
+ *   <li>tasks in the registration working directory with a provenance file have been registered
+ *   completely, they are moved to the working directory recorded last in their provenance
+ *   history and queued there</li>
+ *   <li>empty task directories in the registration working directory are deleted, other tasks
+ *   there are parts of registration requests and left for the {@link TaskJournal}</li>
+ *   <li>tasks in the intervention directories are counted and reported only, they need
+ *   manual intervention</li>
+ * </ul>
+ *
+ * @since 1.0.0
+ */
+public class StartupReconciliation {
+
+  /**
+   * The number of task directories below which a batch is classified without further splitting.
+   */
+  static final int BATCH_SIZE = 64;
+  private static final Logger log = getLogger(StartupReconciliation.class);
+  private final int parallelism;
+  private final TransferEngine transferEngine;
+  private final Map<Path, Kind> directories = new LinkedHashMap<>();
+  private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+
+  /**
+   * @param parallelism    the number of threads examining the task directories
+   * @param transferEngine the transfer engine to move registered tasks to the processing
+   * @since 1.0.0
+   */
+  public StartupReconciliation(int parallelism, TransferEngine transferEngine) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be greater than 0");
+    }
+    this.parallelism = parallelism;
+    this.transferEngine = transferEngine;
+    for (Outcome outcome : Outcome.values()) {
+      outcomes.put(outcome, new LongAdder());
+    }
+  }
+
+  private static Path normalize(Path path) {
+    return path.toAbsolutePath().normalize();
+  }
+
+  /**
+   * Adds the working directory of the registration.
+   *
+   * @param workingDirectory the working directory of the registration
+   * @since 1.0.0
+   */
+  public void registrationDirectory(Path workingDirectory) {
+    directories.put(normalize(workingDirectory), Kind.REGISTRATION);
+  }
+
+  /**
+   * Adds the working directory of a processing step or the evaluation in one lane. Its tasks are
+   * queued in the {@link TaskChannel} of the directory.
+   *
+   * @param workingDirectory the working directory of the process step within the lane
+   * @since 1.0.0
+   */
+  public void stageDirectory(Path workingDirectory) {
+    directories.put(normalize(workingDirectory), Kind.STAGE);
+  }
+
+  /**
+   * Adds an intervention directory, whose tasks are reported.
+   *
+   * @param interventionDirectory the intervention directory of a process step
+   * @since 1.0.0
+   */
+  public void interventionDirectory(Path interventionDirectory) {
+    directories.put(normalize(interventionDirectory), Kind.INTERVENTION);
+  }
+
+  /**
+   * Examines all added directories and waits until every task directory has been classified.
+   *
+   * @since 1.0.0
+   */
+  public void run() {
+    long start = System.nanoTime();
+    var pool = new ForkJoinPool(parallelism);
+    try {
+      // registered tasks are moved into the stage directories first, so they are counted once
+      pool.invoke(new ScanAll(Kind.REGISTRATION));
+      pool.invoke(new ScanAll(Kind.STAGE, Kind.INTERVENTION));
+    } finally {
+      pool.shutdown();
+    }
+    log.info(
+        "Reconciled {} directories in {} ms: {} tasks queued, {} of them without valid provenance, "
+            + "{} of them moved from registration, {} empty removed, {} left in registration, "
+            + "{} awaiting intervention", directories.size(),
+        (System.nanoTime() - start) / 1_000_000, count(Outcome.QUEUED) + count(Outcome.INVALID),
+        count(Outcome.INVALID), count(Outcome.MOVED), count(Outcome.REMOVED),
+        count(Outcome.SKIPPED), count(Outcome.INTERVENTION));
+  }
+
+  /**
+   * The number of task directories classified with the given outcome during the last run.
+   *
+   * @param outcome the outcome
+   * @return the number of task directories
+   * @since 1.0.0
+   */
+  public long count(Outcome outcome) {
+    return outcomes.get(outcome).sum();
+  }
+
+  private List<Path> list(Path directory) {
+    if (!Files.isDirectory(directory)) {
+      return List.of();
+    }
+    List<Path> tasks = new ArrayList<>();
+    try (DirectoryStream<Path> content = Files.newDirectoryStream(directory)) {
+      for (Path entry : content) {
+        var name = entry.getFileName().toString();
+        // nested lanes, processing steps and interventions are reconciled on their own
+        if (name.startsWith(".") || Lane.isLaneDirectory(name) || directories.containsKey(entry)
+            || !Files.isDirectory(entry)) {
+          continue;
+        }
+        tasks.add(entry);
+      }
+    } catch (IOException e) {
+      log.error("Cannot list directory {}", directory, e);
+    }
+    return tasks;
+  }
+
+  private Outcome classify(Path task, Kind kind) throws IOException {
+    return switch (kind) {
+      case STAGE -> {
+        TaskChannel.forDirectory(task.getParent()).publish(task);
+        yield readProvenance(task).isPresent() ? Outcome.QUEUED : Outcome.INVALID;
+      }
+      case REGISTRATION -> classifyRegistration(task);
+      case INTERVENTION -> Outcome.INTERVENTION;
+    };
+  }
+
+  private Outcome classifyRegistration(Path task) throws IOException {
+    try (var content = Files.list(task)) {
+      if (content.findAny().isEmpty()) {
+        Files.delete(task);
+        return Outcome.REMOVED;
+      }
+    }
+    var provenance = readProvenance(task);
+    if (provenance.isEmpty() || provenance.get().history == null
+        || provenance.get().history.isEmpty()) {
+      return Outcome.SKIPPED;
+    }
+    var history = provenance.get().history;
+    var stageDirectory = normalize(Path.of(history.get(history.size() - 1)));
+    if (directories.get(stageDirectory) != Kind.STAGE) {
+      log.warn("Task {} has been registered for unknown directory {}, leaving it", task,
+          stageDirectory);
+      return Outcome.SKIPPED;
+    }
+    var target = stageDirectory.resolve(task.getFileName());
+    transferEngine.move(task, target);
+    TaskChannel.forDirectory(stageDirectory).publish(target);
+    return Outcome.MOVED;
+  }
+
+  private static Optional<Provenance> readProvenance(Path task) {
+    var provenanceFile = task.resolve(Provenance.FILE_NAME);
+    if (!Files.isRegularFile(provenanceFile)) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(Provenance.parse(provenanceFile));
+    } catch (ProvenanceException e) {
+      log.debug("Cannot read provenance of task {}", task, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * The result of the reconciliation of a task directory.
+   *
+   * @since 1.0.0
+   */
+  public enum Outcome {
+    /**
+     * Queued in the channel of its working directory.
+     */
+    QUEUED,
+    /**
+     * Queued in the channel of its working directory, but without a readable provenance file.
+     */
+    INVALID,
+    /**
+     * Moved from the registration working directory to the processing and queued there.
+     */
+    MOVED,
+    /**
+     * An empty task directory, deleted.
+     */
+    REMOVED,
+    /**
+     * Left in the registration working directory.
+     */
+    SKIPPED,
+    /**
+     * Waiting in an intervention directory.
+     */
+    INTERVENTION
+  }
+
+  private enum Kind {
+    REGISTRATION,
+    STAGE,
+    INTERVENTION
+  }
+
+  private class ScanAll extends RecursiveAction {
+
+    private final List<Kind> kinds;
+
+    private ScanAll(Kind... kinds) {
+      this.kinds = List.of(kinds);
+    }
+
+    @Override
+    protected void compute() {
+      List<DirectoryScan> scans = new ArrayList<>();
+      directories.forEach((directory, kind) -> {
+        if (kinds.contains(kind)) {
+          scans.add(new DirectoryScan(directory, kind));
+        }
+      });
+      invokeAll(scans);
+    }
+  }
+
+  private class DirectoryScan extends RecursiveAction {
+
+    private final Path directory;
+    private final Kind kind;
+
+    private DirectoryScan(Path directory, Kind kind) {
+      this.directory = directory;
+      this.kind = kind;
+    }
+
+    @Override
+    protected void compute() {
+      var tasks = list(directory);
+      if (!tasks.isEmpty()) {
+        new Batch(tasks, 0, tasks.size(), kind).compute();
+      }
+    }
+  }
+
+  private class Batch extends RecursiveAction {
+
+    private final List<Path> tasks;
+    private final int from;
+    private final int to;
+    private final Kind kind;
+
+    private Batch(List<Path> tasks, int from, int to, Kind kind) {
+      this.tasks = tasks;
+      this.from = from;
+      this.to = to;
+      this.kind = kind;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > BATCH_SIZE) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new Batch(tasks, from, middle, kind), new Batch(tasks, middle, to, kind));
+        return;
+      }
+      for (int i = from; i < to; i++) {
+        var task = tasks.get(i);
+        try {
+          outcomes.get(classify(task, kind)).increment();
+        } catch (IOException | RuntimeException e) {
+          log.error("Cannot reconcile task {}", task, e);
+          outcomes.get(Outcome.SKIPPED).increment();
+        }
+      }
+    }
+  }
+}
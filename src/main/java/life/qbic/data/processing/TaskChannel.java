@@ -0,0 +1,138 @@
+package life.qbic.data.processing;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <b>Task Channel</b>
+ * <p>
+ * Hands over task directories from one process step to the next within the application. A process
+ * step publishes a task directory to the channel of the working directory of the next process step
+ * right after it has moved the task there, so the workers of the next step do not have to poll
+ * their working directory.
+ * <p>
+ * There is exactly one channel per working directory. A task directory is contained at most once,
+ * from its publication until a worker has completed it, so every task is processed by a single
+ * worker only.
+ * <p>
+ * Listing the working directory remains necessary for tasks the channel does not know about, e.g.
+ * tasks left over from a previous run or moved into the working directory manually. Workers
+ * reconcile the channel with the working directory on start-up and then every
+ * {@link #RECONCILIATION_INTERVAL} milliseconds.
+ *
+ * @since 1.0.0
+ */
+public class TaskChannel {
+
+  /**
+   * The time interval (milliseconds) in which the channel is reconciled with its working
+   * directory.
+   */
+  public static final long RECONCILIATION_INTERVAL = 60_000;
+  private static final Map<Path, TaskChannel> CHANNELS = new ConcurrentHashMap<>();
+  private final BlockingQueue<Path> tasks = new LinkedBlockingQueue<>();
+  private final Set<Path> knownTasks = ConcurrentHashMap.newKeySet();
+  private final AtomicLong nextReconciliation = new AtomicLong(0);
+
+  private TaskChannel() {
+  }
+
+  /**
+   * Returns the channel of a working directory.
+   *
+   * @param workingDirectory the working directory of a process step
+   * @return the channel of the working directory, shared by every producer and consumer
+   * @since 1.0.0
+   */
+  public static TaskChannel forDirectory(Path workingDirectory) {
+    return CHANNELS.computeIfAbsent(normalize(workingDirectory), ignored -> new TaskChannel());
+  }
+
+  private static Path normalize(Path path) {
+    return path.toAbsolutePath().normalize();
+  }
+
+  /**
+   * Publishes a task directory to the workers of the channel. Tasks that are already waiting or
+   * being processed are ignored.
+   *
+   * @param taskDirectory the task directory in the working directory of the channel
+   * @since 1.0.0
+   */
+  public void publish(Path taskDirectory) {
+    var task = normalize(taskDirectory);
+    if (knownTasks.add(task)) {
+      tasks.add(task);
+    }
+  }
+
+  /**
+   * Publishes all task directories found in the working directory.
+   *
+   * @param taskDirectories the current content of the working directory
+   * @since 1.0.0
+   */
+  public void reconcile(Collection<Path> taskDirectories) {
+    taskDirectories.forEach(this::publish);
+  }
+
+  /**
+   * Claims the next reconciliation of the channel. Only one of the competing workers is granted
+   * the reconciliation per interval.
+   *
+   * @return <code>true</code>, if the caller shall reconcile the channel with its working
+   * directory, else <code>false</code>
+   * @since 1.0.0
+   */
+  public boolean claimReconciliation() {
+    long next = nextReconciliation.get();
+    long now = System.currentTimeMillis();
+    return now >= next && nextReconciliation.compareAndSet(next, now + RECONCILIATION_INTERVAL);
+  }
+
+  /**
+   * Waits for the next task directory.
+   *
+   * @param timeout the maximal time to wait
+   * @param unit    the unit of the timeout
+   * @return the next task directory, or {@link Optional#empty()} if none has been published within
+   * the timeout
+   * @since 1.0.0
+   */
+  public Optional<Path> poll(long timeout, TimeUnit unit) {
+    try {
+      return Optional.ofNullable(tasks.poll(timeout, unit));
+    } catch (InterruptedException e) {
+      // workers are retired by their stage executor, not by interruption
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * The number of published tasks waiting for a worker.
+   *
+   * @return the number of pending tasks
+   * @since 1.0.0
+   */
+  public int size() {
+    return tasks.size();
+  }
+
+  /**
+   * Marks a task as completed, after which it can be published again.
+   *
+   * @param taskDirectory the task directory taken from this channel
+   * @since 1.0.0
+   */
+  public void complete(Path taskDirectory) {
+    knownTasks.remove(normalize(taskDirectory));
+  }
+}
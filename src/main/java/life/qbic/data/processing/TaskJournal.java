@@ -0,0 +1,354 @@
+package life.qbic.data.processing;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Task Journal</b>
+ * <p>
+ * Append-only journal of the steps of tasks that move data between directories, so a task
+ * interrupted by a crash can be resumed or rolled back from its last recorded step on the next
+ * start, instead of leaving partial task directories behind.
+ * <p>
+ * A stage records a {@link Step} of a task before (or, for {@link Step#PUBLISHED}, right after)
+ * the corresponding change on the file system. A task is in flight until a final step
+ * ({@link Step#COMPLETED} or {@link Step#ROLLED_BACK}) has been recorded. On opening the journal,
+ * the last step of every task in flight is recovered, together with the attributes recorded with
+ * any of its steps.
+ * <p>
+ * {@link #record(String, String, Step, Map)} returns, once the step has been written durably.
+ * Concurrent records are forced to disk together (group commit), so many workers do not cost one
+ * disk flush each. Records are protected by CRC32C checksums like the
+ * {@link RegistrationRequestLog}, a partially written record marks the end of the journal. The
+ * journal is compacted to the tasks in flight, when it is opened and whenever it has grown beyond
+ * {@link #COMPACTION_THRESHOLD} bytes.
+ *
+ * @since 1.0.0
+ */
+public class TaskJournal implements Closeable {
+
+  /**
+   * The size (bytes) of the journal that triggers a compaction.
+   */
+  static final long COMPACTION_THRESHOLD = 4L << 20;
+  private static final Logger log = getLogger(TaskJournal.class);
+  private static final int MAGIC = 0x51544a31;
+  private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+  private static final Step[] STEPS = Step.values();
+  private final Path file;
+  private final Map<String, Task> inFlight = new LinkedHashMap<>();
+  private final Object syncLock = new Object();
+  private FileChannel channel;
+  private long written = 0;
+  private volatile long durable = 0;
+
+  private TaskJournal(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Opens the journal at the given location, or creates a new one if it does not exist yet.
+   *
+   * @param file the path of the journal file
+   * @return the opened journal, containing the tasks in flight of previous runs
+   * @throws IOException if the journal cannot be read or written
+   * @since 1.0.0
+   */
+  public static TaskJournal open(Path file) throws IOException {
+    Objects.requireNonNull(file, "file must not be null");
+    var journal = new TaskJournal(file);
+    if (Files.exists(file)) {
+      journal.read();
+    }
+    journal.compact();
+    log.info("Opened task journal '{}' with {} tasks in flight", file, journal.inFlight.size());
+    return journal;
+  }
+
+  /**
+   * A journal that records nothing, for running without crash recovery.
+   *
+   * @return a disabled journal
+   * @since 1.0.0
+   */
+  public static TaskJournal disabled() {
+    return new TaskJournal(null);
+  }
+
+  private static String key(String stage, String task) {
+    return stage + '\0' + task;
+  }
+
+  private static void putString(ByteBuffer target, byte[] value) {
+    target.putInt(value.length);
+    target.put(value);
+  }
+
+  private static String getString(ByteBuffer source) {
+    byte[] bytes = new byte[source.getInt()];
+    source.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] encode(Task task, Map<String, String> attributes) {
+    byte[] stage = task.stage().getBytes(StandardCharsets.UTF_8);
+    byte[] name = task.task().getBytes(StandardCharsets.UTF_8);
+    List<byte[]> encodedAttributes = attributes.entrySet().stream()
+        .flatMap(entry -> List.of(entry.getKey(), entry.getValue()).stream())
+        .map(value -> value.getBytes(StandardCharsets.UTF_8)).toList();
+    int size = 1 + 3 * Integer.BYTES + stage.length + name.length;
+    for (byte[] value : encodedAttributes) {
+      size += Integer.BYTES + value.length;
+    }
+    var payload = ByteBuffer.allocate(size);
+    payload.put((byte) task.step().ordinal());
+    putString(payload, stage);
+    putString(payload, name);
+    payload.putInt(attributes.size());
+    encodedAttributes.forEach(value -> putString(payload, value));
+    return payload.array();
+  }
+
+  private static int checksum(byte[] payload) {
+    var crc = new CRC32C();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  private static ByteBuffer frame(byte[] payload) {
+    return ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length).putInt(payload.length)
+        .putInt(checksum(payload)).put(payload).flip();
+  }
+
+  private void read() throws IOException {
+    try (var readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var content = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+      if (content.remaining() < Integer.BYTES || content.getInt() != MAGIC) {
+        throw new IOException("Not a task journal: " + file);
+      }
+      while (content.remaining() >= RECORD_HEADER_SIZE) {
+        int length = content.getInt();
+        int crc = content.getInt();
+        if (length <= 0 || length > content.remaining()) {
+          break;
+        }
+        byte[] payload = new byte[length];
+        content.get(payload);
+        if (checksum(payload) != crc) {
+          log.warn("Skipping corrupt tail of task journal '{}'", file);
+          break;
+        }
+        var record = ByteBuffer.wrap(payload);
+        var step = STEPS[record.get()];
+        var stage = getString(record);
+        var task = getString(record);
+        Map<String, String> attributes = new LinkedHashMap<>();
+        int count = record.getInt();
+        for (int i = 0; i < count; i++) {
+          attributes.put(getString(record), getString(record));
+        }
+        apply(stage, task, step, attributes);
+      }
+    }
+  }
+
+  private Task apply(String stage, String task, Step step, Map<String, String> attributes) {
+    var key = key(stage, task);
+    if (step.isFinal()) {
+      inFlight.remove(key);
+      return new Task(stage, task, step, attributes);
+    }
+    var previous = inFlight.get(key);
+    Map<String, String> merged = new LinkedHashMap<>();
+    if (previous != null) {
+      merged.putAll(previous.attributes());
+    }
+    merged.putAll(attributes);
+    var current = new Task(stage, task, step, Map.copyOf(merged));
+    inFlight.put(key, current);
+    return current;
+  }
+
+  /**
+   * Records a step of a task without attributes.
+   *
+   * @see #record(String, String, Step, Map)
+   * @since 1.0.0
+   */
+  public void record(String stage, String task, Step step) throws IOException {
+    record(stage, task, step, Map.of());
+  }
+
+  /**
+   * Records a step of a task and waits until it has been written durably.
+   *
+   * @param stage      the stage the task belongs to, e.g. "registration"
+   * @param task       the identifier of the task within the stage, e.g. the path of its directory
+   * @param step       the step the task has reached
+   * @param attributes information needed to recover the task, kept until the task is finished
+   * @throws IOException if the step cannot be written durably
+   * @since 1.0.0
+   */
+  public void record(String stage, String task, Step step, Map<String, String> attributes)
+      throws IOException {
+    if (file == null) {
+      return;
+    }
+    long sequence;
+    synchronized (this) {
+      var current = apply(stage, task, step, attributes);
+      var record = frame(encode(current, attributes));
+      while (record.hasRemaining()) {
+        channel.write(record);
+      }
+      sequence = ++written;
+    }
+    sync(sequence);
+  }
+
+  /**
+   * Forces the journal to disk, unless another thread already did after the given record was
+   * written. Threads waiting for the lock are likely served by the flush of their predecessor.
+   */
+  private void sync(long sequence) throws IOException {
+    if (durable >= sequence) {
+      return;
+    }
+    synchronized (syncLock) {
+      if (durable >= sequence) {
+        return;
+      }
+      long flushed;
+      FileChannel current;
+      synchronized (this) {
+        flushed = written;
+        current = channel;
+      }
+      current.force(false);
+      durable = flushed;
+      synchronized (this) {
+        if (channel.position() > COMPACTION_THRESHOLD) {
+          compact();
+        }
+      }
+    }
+  }
+
+  /**
+   * The tasks of a stage, that have not been finished yet.
+   *
+   * @param stage the stage
+   * @return the tasks in flight, in the order they were started
+   * @since 1.0.0
+   */
+  public synchronized List<Task> inFlight(String stage) {
+    return inFlight.values().stream().filter(task -> task.stage().equals(stage)).toList();
+  }
+
+  /**
+   * Rewrites the journal with the tasks in flight only and replaces the current journal
+   * atomically.
+   */
+  private void compact() throws IOException {
+    Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+    try (var compactChannel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      compactChannel.write(ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip());
+      for (Task task : inFlight.values()) {
+        var record = frame(encode(task, task.attributes()));
+        while (record.hasRemaining()) {
+          compactChannel.write(record);
+        }
+      }
+      compactChannel.force(true);
+    }
+    if (channel != null) {
+      channel.close();
+    }
+    Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    durable = written;
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (syncLock) {
+      synchronized (this) {
+        if (channel != null) {
+          channel.force(false);
+          channel.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * The steps of a task. Not every stage uses every step.
+   *
+   * @since 1.0.0
+   */
+  public enum Step {
+    /**
+     * The task has been started, nothing has been changed yet.
+     */
+    STARTED,
+    /**
+     * The files of the task have been moved to the task directory.
+     */
+    FILES_MOVED,
+    /**
+     * The provenance of the task has been written.
+     */
+    PROVENANCE_WRITTEN,
+    /**
+     * The task is complete at its target, the source might still have to be removed.
+     */
+    PUBLISHED,
+    /**
+     * The task has been finished, final step.
+     */
+    COMPLETED,
+    /**
+     * The changes of the task have been undone or the task has been handed over to an
+     * intervention, final step.
+     */
+    ROLLED_BACK;
+
+    public boolean isFinal() {
+      return this == COMPLETED || this == ROLLED_BACK;
+    }
+  }
+
+  /**
+   * A task of the journal.
+   *
+   * @param stage      the stage the task belongs to
+   * @param task       the identifier of the task within the stage
+   * @param step       the last recorded step
+   * @param attributes the attributes recorded with all steps of the task
+   * @since 1.0.0
+   */
+  public record Task(String stage, String task, Step step, Map<String, String> attributes) {
+
+    public String attribute(String name) {
+      return Objects.requireNonNull(attributes.get(name),
+          "Missing attribute '%s' of task %s".formatted(name, task));
+    }
+  }
+}
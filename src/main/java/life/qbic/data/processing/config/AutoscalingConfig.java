@@ -0,0 +1,93 @@
+package life.qbic.data.processing.config;
+
+/**
+ * <b>Autoscaling Config</b>
+ * <p>
+ * Settings of the autoscaler, that adjusts the number of workers of every process step between
+ * the configured number of threads and the maximal number of threads of the process step.
+ *
+ * @since 1.0.0
+ */
+public class AutoscalingConfig {
+
+  private final boolean enabled;
+
+  private final long interval;
+
+  private final long targetDrainTime;
+
+  private final int scaleDownDelay;
+
+  private final int maxRegistrationThreads;
+
+  private final int maxProcessingThreads;
+
+  private final int maxEvaluationThreads;
+
+  public AutoscalingConfig(boolean enabled, long interval, long targetDrainTime,
+      int scaleDownDelay, int maxRegistrationThreads, int maxProcessingThreads,
+      int maxEvaluationThreads) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("Autoscaling interval must be greater than 0");
+    }
+    if (targetDrainTime < 1) {
+      throw new IllegalArgumentException("Autoscaling target drain time must be greater than 0");
+    }
+    if (scaleDownDelay < 1) {
+      throw new IllegalArgumentException("Autoscaling scale down delay must be greater than 0");
+    }
+    if (maxRegistrationThreads < 1 || maxProcessingThreads < 1 || maxEvaluationThreads < 1) {
+      throw new IllegalArgumentException("Maximal number of threads must be greater than 0");
+    }
+    this.enabled = enabled;
+    this.interval = interval;
+    this.targetDrainTime = targetDrainTime;
+    this.scaleDownDelay = scaleDownDelay;
+    this.maxRegistrationThreads = maxRegistrationThreads;
+    this.maxProcessingThreads = maxProcessingThreads;
+    this.maxEvaluationThreads = maxEvaluationThreads;
+  }
+
+  public boolean enabled() {
+    return enabled;
+  }
+
+  /**
+   * The time interval (milliseconds) between two scaling decisions.
+   *
+   * @return the autoscaling interval
+   */
+  public long interval() {
+    return interval;
+  }
+
+  /**
+   * The time (milliseconds) in which every process step shall be able to process its backlog.
+   *
+   * @return the target drain time
+   */
+  public long targetDrainTime() {
+    return targetDrainTime;
+  }
+
+  /**
+   * The number of intervals a process step has to need fewer workers, before workers are removed.
+   *
+   * @return the scale down delay in intervals
+   */
+  public int scaleDownDelay() {
+    return scaleDownDelay;
+  }
+
+  public int maxRegistrationThreads() {
+    return maxRegistrationThreads;
+  }
+
+  public int maxProcessingThreads() {
+    return maxProcessingThreads;
+  }
+
+  public int maxEvaluationThreads() {
+    return maxEvaluationThreads;
+  }
+}
@@ -0,0 +1,63 @@
+package life.qbic.data.processing.config;
+
+/**
+ * <b>Backpressure Config</b>
+ * <p>
+ * Thresholds for pausing the publication of datasets to target directories, whose datasets have
+ * not been consumed by the openBIS ETL yet, and for pausing the process steps in front.
+ *
+ * @since 1.0.0
+ */
+public class BackpressureConfig {
+
+  private final int highWatermark;
+
+  private final int lowWatermark;
+
+  private final long maxStagedTasks;
+
+  public BackpressureConfig(int highWatermark, int lowWatermark, long maxStagedTasks) {
+    if (highWatermark < 0) {
+      throw new IllegalArgumentException("High watermark must not be negative");
+    }
+    if (lowWatermark < 0 || (highWatermark > 0 && lowWatermark >= highWatermark)) {
+      throw new IllegalArgumentException(
+          "Low watermark must not be negative and lower than the high watermark");
+    }
+    if (maxStagedTasks < 0) {
+      throw new IllegalArgumentException("Maximal number of staged tasks must not be negative");
+    }
+    this.highWatermark = highWatermark;
+    this.lowWatermark = lowWatermark;
+    this.maxStagedTasks = maxStagedTasks;
+  }
+
+  /**
+   * The number of pending datasets from which on a target directory does not accept datasets,
+   * <code>0</code> if backpressure is disabled.
+   *
+   * @return the high watermark
+   */
+  public int highWatermark() {
+    return highWatermark;
+  }
+
+  /**
+   * The number of pending datasets at which a target directory accepts datasets again.
+   *
+   * @return the low watermark
+   */
+  public int lowWatermark() {
+    return lowWatermark;
+  }
+
+  /**
+   * The number of tasks that may wait in front of a paused process step, before the process step
+   * in front of it pauses as well.
+   *
+   * @return the maximal number of staged tasks
+   */
+  public long maxStagedTasks() {
+    return maxStagedTasks;
+  }
+}
@@ -3,24 +3,36 @@ package life.qbic.data.processing.config;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import life.qbic.data.processing.evaluation.PublishMode;
 
 public class EvaluationWorkersConfig {
 
   private final int threads;
   private final Path workingDirectory;
   private final Collection<Path> targetDirectories;
+  private final int bulkThreads;
+  private final PublishMode publishMode;
+  private final boolean verifyPublish;
 
   public EvaluationWorkersConfig(int threads, String workingDirectory,
-      Collection<String> targetDirectories) {
+      Collection<String> targetDirectories, int bulkThreads, String publishMode,
+      boolean verifyPublish) {
     if (threads < 1) {
       throw new IllegalArgumentException(
           "Number of evaluation worker threads must be greater than 0");
     }
+    if (bulkThreads < 0) {
+      throw new IllegalArgumentException(
+          "Number of evaluation bulk worker threads must not be negative");
+    }
     if (targetDirectories.isEmpty()) {
       throw new IllegalArgumentException(
           "Target directories cannot be empty, please specify at least one target directory");
     }
     this.threads = threads;
+    this.bulkThreads = bulkThreads;
+    this.publishMode = PublishMode.from(publishMode);
+    this.verifyPublish = verifyPublish;
     this.workingDirectory = Paths.get(workingDirectory);
     if (!this.workingDirectory.toFile().exists()) {
       throw new IllegalArgumentException("Evaluation worker directory does not exist");
@@ -43,4 +55,16 @@ public class EvaluationWorkersConfig {
   public Collection<Path> targetDirectories() {
     return targetDirectories;
   }
+
+  public int bulkThreads() {
+    return bulkThreads;
+  }
+
+  public PublishMode publishMode() {
+    return publishMode;
+  }
+
+  public boolean verifyPublish() {
+    return verifyPublish;
+  }
 }
@@ -0,0 +1,36 @@
+package life.qbic.data.processing.config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * <b>Journal Config</b>
+ * <p>
+ * Settings of the task journal, that enables the recovery of tasks interrupted by a crash.
+ *
+ * @since 1.0.0
+ */
+public class JournalConfig {
+
+  private final Path file;
+
+  public JournalConfig(String file) {
+    if (file == null || file.isBlank()) {
+      this.file = null;
+    } else {
+      this.file = Paths.get(file);
+      if (!this.file.toAbsolutePath().getParent().toFile().exists()) {
+        throw new IllegalArgumentException(
+            "Directory of task journal file " + file + " does not exist");
+      }
+    }
+  }
+
+  /**
+   * @return the journal file, or {@link Optional#empty()} if the journal is disabled
+   */
+  public Optional<Path> file() {
+    return Optional.ofNullable(file);
+  }
+}
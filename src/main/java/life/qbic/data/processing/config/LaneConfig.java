@@ -0,0 +1,45 @@
+package life.qbic.data.processing.config;
+
+/**
+ * <b>Lane Config</b>
+ * <p>
+ * Thresholds from which on a dataset is processed in the bulk lane instead of the express lane.
+ *
+ * @since 1.0.0
+ */
+public class LaneConfig {
+
+  private final long bulkMinSize;
+
+  private final long bulkMinFiles;
+
+  public LaneConfig(long bulkMinSize, long bulkMinFiles) {
+    if (bulkMinSize < 1) {
+      throw new IllegalArgumentException("Minimal size of bulk datasets must be greater than 0");
+    }
+    if (bulkMinFiles < 1) {
+      throw new IllegalArgumentException(
+          "Minimal number of files of bulk datasets must be greater than 0");
+    }
+    this.bulkMinSize = bulkMinSize;
+    this.bulkMinFiles = bulkMinFiles;
+  }
+
+  /**
+   * The total size of a dataset in bytes from which on it belongs to the bulk lane.
+   *
+   * @return the minimal size of bulk datasets
+   */
+  public long bulkMinSize() {
+    return bulkMinSize;
+  }
+
+  /**
+   * The number of files of a dataset from which on it belongs to the bulk lane.
+   *
+   * @return the minimal number of files of bulk datasets
+   */
+  public long bulkMinFiles() {
+    return bulkMinFiles;
+  }
+}
@@ -1,6 +1,7 @@
 package life.qbic.data.processing.config;
 
 import java.nio.file.Path;
+import java.util.List;
 
 public class ProcessingWorkersConfig {
 
@@ -10,11 +11,20 @@ public class ProcessingWorkersConfig {
 
   private final Path targetDirectory;
 
-  public ProcessingWorkersConfig(int threads, Path workingDirectory, Path targetDirectory) {
+  private final int bulkThreads;
+
+  private final List<String> steps;
+
+  public ProcessingWorkersConfig(int threads, Path workingDirectory, Path targetDirectory,
+      int bulkThreads, List<String> steps) {
     if (threads < 1) {
       throw new IllegalArgumentException("threads must be greater than 0");
     }
     this.threads = threads;
+    if (bulkThreads < 0) {
+      throw new IllegalArgumentException("bulk threads must not be negative");
+    }
+    this.bulkThreads = bulkThreads;
 
     if (!workingDirectory.toFile().exists()) {
       throw new IllegalArgumentException("working directory does not exist");
@@ -25,6 +35,8 @@ public class ProcessingWorkersConfig {
       throw new IllegalArgumentException("target directory does not exist");
     }
     this.targetDirectory = targetDirectory;
+
+    this.steps = steps.stream().map(String::strip).filter(step -> !step.isEmpty()).toList();
   }
 
   public int threads() {
@@ -38,4 +50,17 @@ public class ProcessingWorkersConfig {
   public Path targetDirectory() {
     return targetDirectory;
   }
+
+  public int bulkThreads() {
+    return bulkThreads;
+  }
+
+  /**
+   * The names of the configured processing steps, in the order of execution.
+   *
+   * @return the processing steps, empty if the default processing step shall be used
+   */
+  public List<String> steps() {
+    return steps;
+  }
 }
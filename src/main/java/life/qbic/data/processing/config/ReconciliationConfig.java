@@ -0,0 +1,29 @@
+package life.qbic.data.processing.config;
+
+/**
+ * <b>Reconciliation Config</b>
+ * <p>
+ * Settings of the reconciliation of the working directories on start-up.
+ *
+ * @since 1.0.0
+ */
+public class ReconciliationConfig {
+
+  private final int parallelism;
+
+  public ReconciliationConfig(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Reconciliation parallelism must be greater than 0");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * The number of threads that examine the task directories on start-up.
+   *
+   * @return the reconciliation parallelism
+   */
+  public int parallelism() {
+    return parallelism;
+  }
+}
@@ -0,0 +1,82 @@
+package life.qbic.data.processing.config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * <b>Registration Queue Config</b>
+ * <p>
+ * Settings of the registration queue between the scanner and the registration workers.
+ *
+ * @since 1.0.0
+ */
+public class RegistrationQueueConfig {
+
+  private final Path logFile;
+
+  private final int capacity;
+
+  private final boolean fair;
+
+  private final int quantum;
+
+  private final int maxInFlightPerUser;
+
+  public RegistrationQueueConfig(String logFile, int capacity, boolean fair, int quantum,
+      int maxInFlightPerUser) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be greater than 0");
+    }
+    if (quantum < 1) {
+      throw new IllegalArgumentException("Queue quantum must be greater than 0");
+    }
+    if (maxInFlightPerUser < 0) {
+      throw new IllegalArgumentException("Maximal in-flight requests per user must not be negative");
+    }
+    if (logFile == null || logFile.isBlank()) {
+      this.logFile = null;
+    } else {
+      this.logFile = Paths.get(logFile);
+      if (!this.logFile.toAbsolutePath().getParent().toFile().exists()) {
+        throw new IllegalArgumentException(
+            "Directory of queue log file " + logFile + " does not exist");
+      }
+    }
+    this.capacity = capacity;
+    this.fair = fair;
+    this.quantum = quantum;
+    this.maxInFlightPerUser = maxInFlightPerUser;
+  }
+
+  /**
+   * The file of the persistent registration queue log, if configured.
+   *
+   * @return the path of the queue log file, or {@link Optional#empty()} if the registration queue
+   * is held in memory only
+   */
+  public Optional<Path> logFile() {
+    return Optional.ofNullable(logFile);
+  }
+
+  /**
+   * The capacity of the queue, which applies per user in case of a fair queue.
+   *
+   * @return the maximal number of pending requests
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  public boolean fair() {
+    return fair;
+  }
+
+  public int quantum() {
+    return quantum;
+  }
+
+  public int maxInFlightPerUser() {
+    return maxInFlightPerUser;
+  }
+}
@@ -13,11 +13,26 @@ public class RegistrationWorkersConfig {
 
   private final String metadataFileName;
 
+  private final int batchSize;
+
+  private final int bulkWorkers;
+
+  private final int measurementParallelism;
+
   public RegistrationWorkersConfig(int threads, String workingDirectory, String targetDirectory,
-      String metadataFileName) {
+      String metadataFileName, int batchSize, int bulkThreads, int measurementParallelism) {
     if (threads < 1) {
       throw new IllegalArgumentException("Number of threads must be greater than 0");
     }
+    if (bulkThreads < 0) {
+      throw new IllegalArgumentException("Number of bulk threads must not be negative");
+    }
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be greater than 0");
+    }
+    if (measurementParallelism < 1) {
+      throw new IllegalArgumentException("Measurement parallelism must be greater than 0");
+    }
     Path directory = Paths.get(workingDirectory);
     if (!directory.toFile().exists()) {
       throw new IllegalArgumentException("Directory " + directory + " does not exist");
@@ -30,6 +45,9 @@ public class RegistrationWorkersConfig {
     this.amountOfWorkers = threads;
     this.targetDirectory = targetDirectoryPath;
     this.metadataFileName = metadataFileName;
+    this.batchSize = batchSize;
+    this.bulkWorkers = bulkThreads;
+    this.measurementParallelism = measurementParallelism;
   }
 
   public int amountOfWorkers() {
@@ -47,4 +65,16 @@ public class RegistrationWorkersConfig {
   public String metadataFileName() {
     return this.metadataFileName;
   }
+
+  public int batchSize() {
+    return this.batchSize;
+  }
+
+  public int amountOfBulkWorkers() {
+    return bulkWorkers;
+  }
+
+  public int measurementParallelism() {
+    return measurementParallelism;
+  }
 }
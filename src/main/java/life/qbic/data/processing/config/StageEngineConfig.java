@@ -0,0 +1,28 @@
+package life.qbic.data.processing.config;
+
+import life.qbic.data.processing.stage.ThreadMode;
+
+/**
+ * <b>Stage Engine Config</b>
+ * <p>
+ * Settings of the engine running the workers of all process steps.
+ *
+ * @since 1.0.0
+ */
+public class StageEngineConfig {
+
+  private final ThreadMode threadMode;
+
+  public StageEngineConfig(String threadMode) {
+    this.threadMode = ThreadMode.from(threadMode);
+  }
+
+  /**
+   * The kind of threads the workers run on.
+   *
+   * @return the thread mode of the workers
+   */
+  public ThreadMode threadMode() {
+    return threadMode;
+  }
+}
@@ -0,0 +1,120 @@
+package life.qbic.data.processing.config;
+
+import java.util.Arrays;
+import java.util.List;
+import life.qbic.data.processing.evaluation.TargetSelection;
+
+/**
+ * <b>Target Selection Config</b>
+ * <p>
+ * Settings for selecting the target directory of evaluated datasets.
+ *
+ * @since 1.0.0
+ */
+public class TargetSelectionConfig {
+
+  private final TargetSelection selection;
+
+  private final List<Integer> weights;
+
+  private final long minFreeSpace;
+
+  private final int failureThreshold;
+
+  private final long openDuration;
+
+  private final long slowThroughput;
+
+  public TargetSelectionConfig(String selection, List<Integer> weights, long minFreeSpace,
+      int failureThreshold, long openDuration, long slowThroughput) {
+    if (weights.stream().anyMatch(weight -> weight < 1)) {
+      throw new IllegalArgumentException("Weights of target directories must be greater than 0");
+    }
+    if (minFreeSpace < 0) {
+      throw new IllegalArgumentException("Minimal free space must not be negative");
+    }
+    if (failureThreshold < 1) {
+      throw new IllegalArgumentException("Failure threshold must be greater than 0");
+    }
+    if (openDuration < 1) {
+      throw new IllegalArgumentException("Open duration must be greater than 0");
+    }
+    if (slowThroughput < 0) {
+      throw new IllegalArgumentException("Slow throughput must not be negative");
+    }
+    this.selection = TargetSelection.from(selection);
+    this.weights = List.copyOf(weights);
+    this.minFreeSpace = minFreeSpace;
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+    this.slowThroughput = slowThroughput;
+  }
+
+  /**
+   * The strategy of selecting target directories.
+   *
+   * @return the target selection
+   */
+  public TargetSelection selection() {
+    return selection;
+  }
+
+  /**
+   * The weights of the target directories, in the order of the target directories. Without
+   * configured weights, every target directory has the weight 1.
+   *
+   * @param targetDirectories the number of target directories
+   * @return the weight of every target directory
+   * @throws IllegalArgumentException if weights are configured, but not for every target directory
+   */
+  public int[] weights(int targetDirectories) {
+    if (weights.isEmpty()) {
+      int[] defaultWeights = new int[targetDirectories];
+      Arrays.fill(defaultWeights, 1);
+      return defaultWeights;
+    }
+    if (weights.size() != targetDirectories) {
+      throw new IllegalArgumentException(
+          "Expected %d target directory weights, but got %d".formatted(targetDirectories,
+              weights.size()));
+    }
+    return weights.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * The usable space (bytes) a target directory needs to be selected.
+   *
+   * @return the minimal free space
+   */
+  public long minFreeSpace() {
+    return minFreeSpace;
+  }
+
+  /**
+   * The number of failures in a row that take a target directory out of rotation.
+   *
+   * @return the failure threshold
+   */
+  public int failureThreshold() {
+    return failureThreshold;
+  }
+
+  /**
+   * The time (milliseconds) a target directory stays out of rotation, before it is tried again.
+   *
+   * @return the open duration
+   */
+  public long openDuration() {
+    return openDuration;
+  }
+
+  /**
+   * The copy throughput (bytes/s) below which a copy to a target directory counts as failure,
+   * <code>0</code> if slow copies do not count as failures.
+   *
+   * @return the slow throughput
+   */
+  public long slowThroughput() {
+    return slowThroughput;
+  }
+}
@@ -0,0 +1,44 @@
+package life.qbic.data.processing.config;
+
+/**
+ * <b>Transfer Config</b>
+ * <p>
+ * Settings for moving and copying datasets between the directories of the process steps.
+ *
+ * @since 1.0.0
+ */
+public class TransferConfig {
+
+  private final int parallelism;
+
+  private final long chunkSize;
+
+  public TransferConfig(int parallelism, long chunkSize) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Transfer parallelism must be greater than 0");
+    }
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Transfer chunk size must be greater than 0");
+    }
+    this.parallelism = parallelism;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * The maximal number of file chunks that are copied in parallel.
+   *
+   * @return the transfer parallelism
+   */
+  public int parallelism() {
+    return parallelism;
+  }
+
+  /**
+   * The size of the chunks (bytes) large files are split into for copying.
+   *
+   * @return the chunk size
+   */
+  public long chunkSize() {
+    return chunkSize;
+  }
+}
@@ -0,0 +1,123 @@
+package life.qbic.data.processing.evaluation;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import life.qbic.data.processing.config.TargetSelectionConfig;
+import life.qbic.data.processing.transfer.TransferResult;
+import life.qbic.data.processing.transfer.TransferResult.Method;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Abstract Target Selector</b>
+ * <p>
+ * Guards every target directory with a {@link CircuitBreaker}. Failed publications count as
+ * failures, as well as copies that are slower than the configured minimal throughput.
+ * <p>
+ * Target directories that have reached their high watermark of pending datasets (see
+ * {@link BackpressureController}) are not selected either, so datasets are diverted to the other
+ * target directories.
+ *
+ * @since 1.0.0
+ */
+abstract class AbstractTargetSelector implements TargetSelector {
+
+  /**
+   * Copies smaller than this (bytes) are dominated by per-file overhead and are not judged by
+   * their throughput.
+   */
+  static final long MIN_BYTES_FOR_THROUGHPUT = 64L * 1024 * 1024;
+  private static final Logger log = getLogger(AbstractTargetSelector.class);
+  private final List<Path> targetDirectories;
+  private final Map<Path, CircuitBreaker> circuitBreakers = new LinkedHashMap<>();
+  private final long slowThroughput;
+  private final BackpressureController backpressure;
+
+  AbstractTargetSelector(List<Path> targetDirectories, TargetSelectionConfig config,
+      BackpressureController backpressure) {
+    if (targetDirectories == null || targetDirectories.isEmpty()) {
+      throw new IllegalArgumentException("Target directories must not be null or empty");
+    }
+    this.targetDirectories = List.copyOf(targetDirectories);
+    this.targetDirectories.forEach(targetDirectory -> circuitBreakers.put(targetDirectory,
+        new CircuitBreaker(targetDirectory.toString(), config.failureThreshold(),
+            config.openDuration())));
+    this.slowThroughput = config.slowThroughput();
+    this.backpressure = backpressure;
+  }
+
+  List<Path> targetDirectories() {
+    return targetDirectories;
+  }
+
+  BackpressureController backpressure() {
+    return backpressure;
+  }
+
+  /**
+   * Checks if a target directory can be selected, without admitting it.
+   *
+   * @param targetDirectory the target directory
+   * @return <code>true</code>, if the target directory accepts datasets and is in rotation
+   */
+  boolean isAvailable(Path targetDirectory) {
+    return backpressure.isAccepting(targetDirectory)
+        && circuitBreaker(targetDirectory).isAvailable();
+  }
+
+  /**
+   * Admits a target directory, if it accepts datasets and is in rotation.
+   *
+   * @param targetDirectory the target directory
+   * @return <code>true</code>, if the target directory has been admitted, else <code>false</code>
+   */
+  boolean tryAcquire(Path targetDirectory) {
+    return backpressure.isAccepting(targetDirectory)
+        && circuitBreaker(targetDirectory).tryAcquire();
+  }
+
+  CircuitBreaker circuitBreaker(Path targetDirectory) {
+    var circuitBreaker = circuitBreakers.get(targetDirectory);
+    if (circuitBreaker == null) {
+      throw new IllegalArgumentException("Unknown target directory: " + targetDirectory);
+    }
+    return circuitBreaker;
+  }
+
+  /**
+   * Used in case all target directories are out of rotation. Publishing is attempted anyway, since
+   * there is no better alternative.
+   *
+   * @param targetDirectory the target directory to fall back to
+   * @return the target directory to fall back to
+   */
+  Path fallback(Path targetDirectory) {
+    log.warn("No target directory is available, falling back to {}", targetDirectory);
+    return targetDirectory;
+  }
+
+  @Override
+  public void published(Path targetDirectory, TransferResult result) {
+    backpressure.published(targetDirectory);
+    if (isSlow(result)) {
+      log.warn("Publishing to {} was slow ({} bytes/s)", targetDirectory,
+          Math.round(result.bytesPerSecond()));
+      circuitBreaker(targetDirectory).recordFailure();
+      return;
+    }
+    circuitBreaker(targetDirectory).recordSuccess();
+  }
+
+  @Override
+  public void failed(Path targetDirectory) {
+    circuitBreaker(targetDirectory).recordFailure();
+  }
+
+  private boolean isSlow(TransferResult result) {
+    return slowThroughput > 0 && result.method() == Method.COPY
+        && result.bytes() >= MIN_BYTES_FOR_THROUGHPUT && result.bytesPerSecond() < slowThroughput;
+  }
+}
@@ -0,0 +1,179 @@
+package life.qbic.data.processing.evaluation;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Backpressure Controller</b>
+ * <p>
+ * Keeps track of the datasets published to every target directory, that the openBIS ETL has not
+ * consumed yet, i.e. whose marker file (<code>.MARKER_is_finished_*</code>) is still present.
+ * <p>
+ * A target directory stops accepting datasets, once its pending datasets reach the high watermark,
+ * and accepts datasets again, once they have dropped to the low watermark. If no target directory
+ * accepts datasets, the controller is saturated and publishing has to pause.
+ * <p>
+ * Marker files are counted at most every {@link #REFRESH_INTERVAL} milliseconds per target
+ * directory. Datasets published in between are added to the count.
+ *
+ * @since 1.0.0
+ */
+public class BackpressureController {
+
+  /**
+   * The time interval (milliseconds) in which the marker files of a target directory are counted.
+   */
+  public static final long REFRESH_INTERVAL = 5_000;
+  private static final String MARKER_FILE_PATTERN = ".MARKER_is_finished_*";
+  private static final Logger log = getLogger(BackpressureController.class);
+  private final Map<Path, TargetBacklog> targetBacklogs = new LinkedHashMap<>();
+  private final int highWatermark;
+  private final int lowWatermark;
+
+  /**
+   * @param targetDirectories the target directories
+   * @param highWatermark     the number of pending datasets from which on a target directory does
+   *                          not accept datasets, <code>0</code> disables backpressure
+   * @param lowWatermark      the number of pending datasets at which a target directory accepts
+   *                          datasets again
+   * @since 1.0.0
+   */
+  public BackpressureController(List<Path> targetDirectories, int highWatermark,
+      int lowWatermark) {
+    if (highWatermark < 0) {
+      throw new IllegalArgumentException("High watermark must not be negative");
+    }
+    if (lowWatermark < 0 || (highWatermark > 0 && lowWatermark >= highWatermark)) {
+      throw new IllegalArgumentException(
+          "Low watermark must not be negative and lower than the high watermark");
+    }
+    targetDirectories.forEach(
+        targetDirectory -> targetBacklogs.put(targetDirectory, new TargetBacklog(targetDirectory)));
+    this.highWatermark = highWatermark;
+    this.lowWatermark = lowWatermark;
+  }
+
+  /**
+   * The number of datasets published to a target directory, that have not been consumed yet.
+   *
+   * @param targetDirectory the target directory
+   * @return the number of pending datasets
+   * @since 1.0.0
+   */
+  public int pending(Path targetDirectory) {
+    return targetBacklog(targetDirectory).pending();
+  }
+
+  /**
+   * Checks if a target directory accepts datasets.
+   *
+   * @param targetDirectory the target directory
+   * @return <code>true</code>, if the target directory is below its high watermark, else
+   * <code>false</code>
+   * @since 1.0.0
+   */
+  public boolean isAccepting(Path targetDirectory) {
+    return highWatermark == 0 || targetBacklog(targetDirectory).isAccepting();
+  }
+
+  /**
+   * Checks if every target directory has reached its high watermark.
+   *
+   * @return <code>true</code>, if publishing has to pause, else <code>false</code>
+   * @since 1.0.0
+   */
+  public boolean isSaturated() {
+    if (highWatermark == 0) {
+      return false;
+    }
+    return targetBacklogs.values().stream().noneMatch(TargetBacklog::isAccepting);
+  }
+
+  /**
+   * Reports a dataset published to a target directory.
+   *
+   * @param targetDirectory the target directory
+   * @since 1.0.0
+   */
+  public void published(Path targetDirectory) {
+    targetBacklog(targetDirectory).published();
+  }
+
+  private TargetBacklog targetBacklog(Path targetDirectory) {
+    var targetBacklog = targetBacklogs.get(targetDirectory);
+    if (targetBacklog == null) {
+      throw new IllegalArgumentException("Unknown target directory: " + targetDirectory);
+    }
+    return targetBacklog;
+  }
+
+  private class TargetBacklog {
+
+    private final Path targetDirectory;
+    private int pending = 0;
+    private boolean accepting = true;
+    private long lastRefresh = 0;
+
+    private TargetBacklog(Path targetDirectory) {
+      this.targetDirectory = targetDirectory;
+    }
+
+    private synchronized int pending() {
+      refresh();
+      return pending;
+    }
+
+    private synchronized boolean isAccepting() {
+      refresh();
+      return accepting;
+    }
+
+    private synchronized void published() {
+      pending++;
+      updateAccepting();
+    }
+
+    private void refresh() {
+      long now = System.currentTimeMillis();
+      if (now - lastRefresh < REFRESH_INTERVAL) {
+        return;
+      }
+      lastRefresh = now;
+      int markers = 0;
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(targetDirectory,
+          MARKER_FILE_PATTERN)) {
+        for (Path ignored : stream) {
+          markers++;
+        }
+      } catch (IOException e) {
+        log.warn("Cannot count marker files of target {}", targetDirectory, e);
+        return;
+      }
+      pending = markers;
+      updateAccepting();
+    }
+
+    private void updateAccepting() {
+      if (highWatermark == 0) {
+        return;
+      }
+      if (accepting && pending >= highWatermark) {
+        accepting = false;
+        log.warn("Target {} has {} pending datasets, pausing publishing to it", targetDirectory,
+            pending);
+      } else if (!accepting && pending <= lowWatermark) {
+        accepting = true;
+        log.info("Target {} has {} pending datasets, resuming publishing to it", targetDirectory,
+            pending);
+      }
+    }
+  }
+}
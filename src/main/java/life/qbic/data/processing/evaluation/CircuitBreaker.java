@@ -0,0 +1,92 @@
+package life.qbic.data.processing.evaluation;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Circuit Breaker</b>
+ * <p>
+ * Takes a target directory out of rotation after consecutive failures.
+ * <p>
+ * The breaker opens after a configured number of failures in a row. While open, the target is not
+ * available. After the open duration, a single trial is admitted: if it succeeds, the breaker
+ * closes again, otherwise it stays open for another open duration.
+ *
+ * @since 1.0.0
+ */
+class CircuitBreaker {
+
+  private static final Logger log = getLogger(CircuitBreaker.class);
+  private final String name;
+  private final int failureThreshold;
+  private final long openDuration;
+  private State state = State.CLOSED;
+  private int consecutiveFailures = 0;
+  private long openedAt = 0;
+
+  /**
+   * @param name             the name of the guarded target, used for logging
+   * @param failureThreshold the number of consecutive failures that open the breaker
+   * @param openDuration     the time (milliseconds) the breaker stays open before a trial
+   * @since 1.0.0
+   */
+  CircuitBreaker(String name, int failureThreshold, long openDuration) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+  }
+
+  /**
+   * Checks if the target would be admitted, without admitting it.
+   *
+   * @return <code>true</code>, if the target is in rotation or due for a trial
+   * @since 1.0.0
+   */
+  synchronized boolean isAvailable() {
+    return switch (state) {
+      case CLOSED -> true;
+      case OPEN -> System.currentTimeMillis() - openedAt >= openDuration;
+      case TRIAL -> false;
+    };
+  }
+
+  /**
+   * Admits the target, if it is in rotation or due for a trial.
+   *
+   * @return <code>true</code>, if the target has been admitted, else <code>false</code>
+   * @since 1.0.0
+   */
+  synchronized boolean tryAcquire() {
+    if (!isAvailable()) {
+      return false;
+    }
+    if (state == State.OPEN) {
+      log.info("Trying target {} again", name);
+      state = State.TRIAL;
+    }
+    return true;
+  }
+
+  synchronized void recordSuccess() {
+    if (state != State.CLOSED) {
+      log.info("Target {} recovered, taking it back into rotation", name);
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+  }
+
+  synchronized void recordFailure() {
+    consecutiveFailures++;
+    if (state == State.TRIAL || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      log.warn("Taking target {} out of rotation for {} ms after {} failures in a row", name,
+          openDuration, consecutiveFailures);
+      state = State.OPEN;
+      openedAt = System.currentTimeMillis();
+    }
+  }
+
+  private enum State {
+    CLOSED, OPEN, TRIAL
+  }
+}
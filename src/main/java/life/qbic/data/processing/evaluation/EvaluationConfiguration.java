@@ -4,9 +4,12 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.List;
 import life.qbic.data.processing.AccessRightsEvaluation;
 import life.qbic.data.processing.GlobalConfig;
-import life.qbic.data.processing.config.RoundRobinDraw;
+import life.qbic.data.processing.ProvenanceCodec;
+import life.qbic.data.processing.config.BackpressureConfig;
+import life.qbic.data.processing.config.TargetSelectionConfig;
 
 /**
  * <b>Evaluation Configuration</b>
@@ -18,12 +21,18 @@ import life.qbic.data.processing.config.RoundRobinDraw;
 public class EvaluationConfiguration {
 
   private final Path workingDirectory;
-  private final Collection<Path> targetDirectories;
+  private final List<Path> targetDirectories;
   private final Path usersErrorDirectory;
-  private final RoundRobinDraw<Path> targetDirectoriesRoundRobinDraw;
+  private final TargetSelector targetSelector;
+  private final BackpressureController backpressure;
+  private final PublishMode publishMode;
+  private final boolean verifyPublish;
+  private final ProvenanceCodec provenanceCodec;
 
   public EvaluationConfiguration(String workingDirectory, Collection<Path> targetDirectories,
-      GlobalConfig globalConfig) throws IOException {
+      GlobalConfig globalConfig, PublishMode publishMode,
+      TargetSelectionConfig targetSelectionConfig, BackpressureConfig backpressureConfig,
+      boolean verifyPublish) throws IOException {
     this.workingDirectory = Paths.get(workingDirectory);
     AccessRightsEvaluation.evaluateExistenceAndDirectory(this.workingDirectory);
     AccessRightsEvaluation.evaluateWriteAndExecutablePermission(this.workingDirectory);
@@ -32,20 +41,46 @@ public class EvaluationConfiguration {
       AccessRightsEvaluation.evaluateExistenceAndDirectory(targetDirectory);
       AccessRightsEvaluation.evaluateWriteAndExecutablePermission(targetDirectory);
     }
-    this.targetDirectoriesRoundRobinDraw = RoundRobinDraw.create(targetDirectories);
+    this.backpressure = new BackpressureController(this.targetDirectories,
+        backpressureConfig.highWatermark(), backpressureConfig.lowWatermark());
+    this.targetSelector = switch (targetSelectionConfig.selection()) {
+      case ROUND_ROBIN -> new WeightedRoundRobinSelector(this.targetDirectories,
+          targetSelectionConfig, backpressure);
+      case LEAST_LOADED ->
+          new LeastLoadedSelector(this.targetDirectories, targetSelectionConfig, backpressure);
+    };
     this.usersErrorDirectory = globalConfig.usersErrorDirectory();
+    this.provenanceCodec = globalConfig.provenanceCodec();
+    this.publishMode = publishMode;
+    this.verifyPublish = verifyPublish;
   }
 
   public Path workingDirectory() {
     return workingDirectory;
   }
 
-  public RoundRobinDraw<Path> targetDirectories() {
-    return targetDirectoriesRoundRobinDraw;
+  public TargetSelector targetSelector() {
+    return targetSelector;
+  }
+
+  public BackpressureController backpressure() {
+    return backpressure;
   }
 
   public Path usersErrorDirectory() {
     return usersErrorDirectory;
   }
 
+  public PublishMode publishMode() {
+    return publishMode;
+  }
+
+  public boolean verifyPublish() {
+    return verifyPublish;
+  }
+
+  public ProvenanceCodec provenanceCodec() {
+    return provenanceCodec;
+  }
+
 }
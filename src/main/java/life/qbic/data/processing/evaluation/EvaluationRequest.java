@@ -2,23 +2,34 @@ package life.qbic.data.processing.evaluation;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
 import life.qbic.data.processing.ErrorSummary;
+import life.qbic.data.processing.Lane;
 import life.qbic.data.processing.Provenance;
 import life.qbic.data.processing.Provenance.ProvenanceException;
-import life.qbic.data.processing.config.RoundRobinDraw;
+import life.qbic.data.processing.ProvenanceCodec;
+import life.qbic.data.processing.ProvenanceHistory;
+import life.qbic.data.processing.TaskChannel;
+import life.qbic.data.processing.TaskJournal;
+import life.qbic.data.processing.TaskJournal.Step;
+import life.qbic.data.processing.TaskJournal.Task;
+import life.qbic.data.processing.processing.ChecksumManifest;
+import life.qbic.data.processing.processing.ChecksumManifest.Entry;
+import life.qbic.data.processing.stage.Stage;
+import life.qbic.data.processing.transfer.ExpectedChecksums;
+import life.qbic.data.processing.transfer.TransferEngine;
+import life.qbic.data.processing.transfer.TransferResult;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.Logger;
 
@@ -30,97 +41,145 @@ import org.apache.logging.log4j.Logger;
  * ID and moves the dataset to the openBIS ETL. After successful transfer, an openBIS marker-file is
  * created, to integrate the dataset registration with openBIS ETL.
  * <p>
+ * The dataset is handed over according to the {@link PublishMode}: within the same file system as
+ * the target directory, it is renamed or hard linked instead of copied. Otherwise, the copy is
+ * verified on the fly against the {@link ChecksumManifest} of the task, if present, or against the
+ * source files.
+ * <p>
  * If none is present, or the identifier does not match the requirements, it is moved back to the
  * users error folder.
  *
  * @since 1.0.0
  */
-public class EvaluationRequest extends Thread {
+public class EvaluationRequest implements Stage<Path> {
 
-  private static final String THREAD_NAME = "Evaluation-%s";
-  private static final String INTERVENTION_DIRECTORY = "interventions";
+  public static final String INTERVENTION_DIRECTORY = "interventions";
+  private static final String STAGE_NAME = "Evaluation-%s";
   private static final Logger LOG = getLogger(EvaluationRequest.class);
-  private static final Set<String> ACTIVE_TASKS = new HashSet<>();
-  private static final ReentrantLock LOCK = new ReentrantLock();
-  private static int threadNumber = 1;
+  private static final String JOURNAL_STAGE = "evaluation";
+  private static final String PUBLISHED_DIRECTORY = "publishedDirectory";
+  private final String name;
   private final Path interventionDirectory;
-  private final AtomicBoolean active = new AtomicBoolean(false);
-  private final AtomicBoolean terminated = new AtomicBoolean(false);
   private final Path workingDirectory;
   private final Path usersErrorDirectory;
-  private final RoundRobinDraw<Path> targetDirectories;
-  private Path assignedTargetDirectory;
+  private final TargetSelector targetSelector;
+  private final TaskChannel taskChannel;
+  private final TransferEngine transferEngine;
+  private final PublishMode publishMode;
+  private final boolean verifyPublish;
+  private final TaskJournal journal;
+  private final ProvenanceCodec provenanceCodec;
 
-  public EvaluationRequest(Path workingDirectory, RoundRobinDraw<Path> targetDirectories,
-      Path usersErrorDirectory) {
-    this.setName(THREAD_NAME.formatted(nextThreadNumber()));
-    this.workingDirectory = workingDirectory;
-    this.targetDirectories = targetDirectories;
+  public EvaluationRequest(EvaluationConfiguration evaluationConfiguration, Lane lane,
+      TransferEngine transferEngine, TaskJournal journal) {
+    this.transferEngine = transferEngine;
+    this.journal = journal;
+    this.provenanceCodec = evaluationConfiguration.provenanceCodec();
+    this.publishMode = evaluationConfiguration.publishMode();
+    this.verifyPublish = evaluationConfiguration.verifyPublish();
+    this.name = STAGE_NAME.formatted(lane);
+    var workingDirectory = evaluationConfiguration.workingDirectory();
+    this.workingDirectory = lane.resolve(workingDirectory);
+    if (!this.workingDirectory.toFile().mkdir() && !this.workingDirectory.toFile().exists()) {
+      throw new RuntimeException(
+          "Could not create lane directory for evaluation request at " + this.workingDirectory);
+    }
+    this.targetSelector = evaluationConfiguration.targetSelector();
     if (!workingDirectory.resolve(INTERVENTION_DIRECTORY).toFile().mkdir()
         && !workingDirectory.resolve(
         INTERVENTION_DIRECTORY).toFile().exists()) {
       throw new RuntimeException(
           "Could not create intervention directory for processing request at " + workingDirectory);
     }
-    this.usersErrorDirectory = usersErrorDirectory;
+    this.usersErrorDirectory = evaluationConfiguration.usersErrorDirectory();
     this.interventionDirectory = workingDirectory.resolve(INTERVENTION_DIRECTORY);
+    this.taskChannel = TaskChannel.forDirectory(this.workingDirectory);
   }
 
-  public EvaluationRequest(EvaluationConfiguration evaluationConfiguration) {
-    this(evaluationConfiguration.workingDirectory(), evaluationConfiguration.targetDirectories(),
-        evaluationConfiguration.usersErrorDirectory());
+  /**
+   * Resumes or rolls back the publications interrupted by a crash, as recorded in the task
+   * journal. A task that is complete in its target directory gets its marker file, the remains of
+   * its task directory are deleted. Otherwise, the incomplete target is deleted and the task is
+   * evaluated again.
+   * <p>
+   * Recovers the tasks of all lanes, so it must be called once on start-up, before the workers
+   * start.
+   *
+   * @since 1.0.0
+   */
+  public void recover() {
+    for (var task : journal.inFlight(JOURNAL_STAGE)) {
+      try {
+        recover(task);
+      } catch (IOException | RuntimeException e) {
+        LOG.error("Cannot recover interrupted publication of task {}", task.task(), e);
+      }
+    }
   }
 
-  private static int nextThreadNumber() {
-    return threadNumber++;
+  private void recover(Task task) throws IOException {
+    var taskDir = Paths.get(task.task());
+    var publishedDir = Paths.get(task.attribute(PUBLISHED_DIRECTORY));
+    // a rename completes the publication at once, without recording the checkpoint in time
+    boolean published = task.step() == Step.PUBLISHED
+        || !Files.exists(taskDir) && Files.exists(publishedDir);
+    if (!published) {
+      if (Files.exists(publishedDir)) {
+        LOG.warn("Deleting incomplete publication: {}", publishedDir);
+        FileUtils.deleteDirectory(publishedDir.toFile());
+      }
+      journal.record(JOURNAL_STAGE, task.task(), Step.ROLLED_BACK);
+      LOG.info("Rolled back interrupted publication of task {}", taskDir);
+      return;
+    }
+    if (Files.exists(taskDir)) {
+      cleanup(taskDir.toFile());
+    }
+    createMarkerFile(publishedDir.getParent(), publishedDir.getFileName().toString());
+    journal.record(JOURNAL_STAGE, task.task(), Step.COMPLETED);
+    LOG.info("Completed interrupted publication of task {} to {}", taskDir, publishedDir);
   }
 
-  private static boolean push(String taskId) {
-    LOCK.lock();
-    boolean notActiveYet;
+  private void recordStep(File taskDir, Step step, Map<String, String> attributes) {
     try {
-      notActiveYet = ACTIVE_TASKS.add(taskId);
-    } finally {
-      LOCK.unlock();
+      journal.record(JOURNAL_STAGE, taskDir.getAbsolutePath(), step, attributes);
+    } catch (IOException e) {
+      LOG.error("Cannot record step {} of task {} in the task journal", step,
+          taskDir.getAbsolutePath(), e);
     }
-    return notActiveYet;
+  }
+
+  private void recordStep(File taskDir, Step step) {
+    recordStep(taskDir, step, Map.of());
   }
 
   @Override
-  public void run() {
-    while (true) {
-      active.set(true);
-      for (File taskDir : tasks()) {
-        if (push(taskDir.getAbsolutePath()) && taskDir.exists()) {
-          assignedTargetDirectory = getAssignedTargetDir();
-          evaluateDirectory(taskDir);
-          removeTask(taskDir);
-        }
-      }
-      active.set(false);
-      if (terminated.get()) {
-        LOG.warn("Thread {} terminated", Thread.currentThread().getName());
-        break;
-      }
-      try {
-        Thread.sleep(100);
-      } catch (InterruptedException e) {
-        // We don't want to interrupt the thread here, only explicit to enable graceful shutdown
-        // via its interrupt() method
-      }
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public Optional<Path> next(long timeout, TimeUnit unit) {
+    if (taskChannel.claimReconciliation()) {
+      taskChannel.reconcile(tasks().stream().map(File::toPath).toList());
     }
+    return taskChannel.poll(timeout, unit);
   }
 
-  private Path getAssignedTargetDir() {
-    return targetDirectories.next();
+  @Override
+  public long backlog() {
+    return taskChannel.size();
   }
 
-  private void removeTask(File taskDir) {
-    LOCK.lock();
+  @Override
+  public void process(Path task) {
+    var taskDir = task.toFile();
     try {
-      ACTIVE_TASKS.remove(taskDir.getAbsolutePath());
+      if (taskDir.exists()) {
+        evaluateDirectory(taskDir);
+      }
     } finally {
-      LOCK.unlock();
+      taskChannel.complete(task);
     }
   }
 
@@ -145,32 +204,42 @@ public class EvaluationRequest extends Thread {
         provenance.qbicMeasurementID == null || provenance.qbicMeasurementID.isBlank()
             ? Optional.empty() : Optional.of(provenance.qbicMeasurementID);
     if (measurementIdResult.isPresent()) {
-      provenance.addToHistory(taskDir.getAbsolutePath());
       try {
-        updateProvenanceFile(provenanceSearch.get(), provenance);
+        ProvenanceHistory.materialize(taskDir.toPath(), provenance, name, provenanceCodec);
       } catch (IOException e) {
         LOG.error("Could not update provenance file: {}", taskDir.getAbsolutePath(), e);
         moveToSystemIntervention(taskDir, e.getMessage());
+        return;
       }
+      // selected as late as possible, so the selection reflects the current load of the targets
+      var assignedTargetDirectory = targetSelector.next();
+      // every selection must be reported, also when the publication ends with an exception
+      boolean published = false;
       try {
-        copyToTargetDir(taskDir);
-      } catch (IOException e) {
-        LOG.error("Could not copy to target directory: {}", taskDir.getAbsolutePath(), e);
-        moveToSystemIntervention(taskDir,
-            "Cannot copy task to target directory: %s".formatted(assignedTargetDirectory));
+        var transferResult = publish(taskDir, assignedTargetDirectory);
+        if (transferResult.isEmpty()) {
+          return;
+        }
+        published = true;
+        targetSelector.published(assignedTargetDirectory, transferResult.get());
+      } finally {
+        if (!published) {
+          targetSelector.failed(assignedTargetDirectory);
+        }
       }
-      try {
-        createMarkerFile(assignedTargetDirectory, taskDir.getName());
-      } catch (IOException e) {
-        LOG.error("Could not create marker file in: {}", assignedTargetDirectory, e);
-        moveToSystemIntervention(taskDir, e.getMessage());
+      if (publishMode == PublishMode.MOVE) {
+        recordStep(taskDir, Step.COMPLETED);
+        return;
       }
       try {
         cleanup(taskDir);
       } catch (IOException e) {
         LOG.error("Could not clean up task directory: {}", taskDir.getAbsolutePath(), e);
         moveToSystemIntervention(taskDir, e.getMessage());
+        recordStep(taskDir, Step.ROLLED_BACK);
+        return;
       }
+      recordStep(taskDir, Step.COMPLETED);
       return;
     }
     var errorMessage = ErrorSummary.createSimple(taskDir.getName(),
@@ -183,16 +252,44 @@ public class EvaluationRequest extends Thread {
     moveBackToOrigin(taskDir, provenance, errorMessage.toString());
   }
 
+  /**
+   * Publishes a task to the assigned target directory. A task that cannot be published is moved to
+   * the intervention directory.
+   *
+   * @return the result of the transfer, or an empty result, if the task has not been published
+   */
+  private Optional<TransferResult> publish(File taskDir, Path assignedTargetDirectory) {
+    var publishedDir = assignedTargetDirectory.resolve(taskDir.getName());
+    recordStep(taskDir, Step.STARTED,
+        Map.of(PUBLISHED_DIRECTORY, publishedDir.toAbsolutePath().toString()));
+    TransferResult transferResult;
+    try {
+      transferResult = publishToTargetDir(taskDir, publishedDir);
+    } catch (IOException e) {
+      LOG.error("Could not publish to target directory: {}", taskDir.getAbsolutePath(), e);
+      moveToSystemIntervention(taskDir,
+          "Cannot publish task to target directory: %s".formatted(assignedTargetDirectory));
+      recordStep(taskDir, Step.ROLLED_BACK);
+      return Optional.empty();
+    }
+    try {
+      createMarkerFile(assignedTargetDirectory, taskDir.getName());
+    } catch (IOException e) {
+      LOG.error("Could not create marker file in: {}", assignedTargetDirectory, e);
+      // a moved task only exists in the target directory anymore
+      moveToSystemIntervention(
+          publishMode == PublishMode.MOVE ? publishedDir.toFile() : taskDir, e.getMessage());
+      recordStep(taskDir, Step.ROLLED_BACK);
+      return Optional.empty();
+    }
+    return Optional.of(transferResult);
+  }
+
   private void cleanup(File taskDir) throws IOException {
     LOG.info("Deleting task directory: {}", taskDir.getAbsolutePath());
     FileUtils.deleteDirectory(taskDir);
   }
 
-  private void updateProvenanceFile(File provenanceFile, Provenance provenance) throws IOException {
-    var mapper = new ObjectMapper();
-    mapper.writerWithDefaultPrettyPrinter().writeValue(provenanceFile, provenance);
-  }
-
   private boolean createMarkerFile(Path targetDirectory, String name) throws IOException {
     Path markerFileName = Paths.get(".MARKER_is_finished_" + name);
     return targetDirectory.resolve(markerFileName).toFile().createNewFile();
@@ -203,7 +300,8 @@ public class EvaluationRequest extends Thread {
       var errorFile = taskDir.toPath().resolve("error.txt").toFile();
       errorFile.createNewFile();
       Files.writeString(errorFile.toPath(), reason);
-      Files.move(taskDir.toPath(), interventionDirectory.resolve(taskDir.getName()));
+      // a moved task has left the working directory and may be on another file store
+      transferEngine.move(taskDir.toPath(), interventionDirectory.resolve(taskDir.getName()));
     } catch (IOException e) {
       throw new RuntimeException("Cannot move task to intervention: %s".formatted(taskDir), e);
     }
@@ -217,7 +315,7 @@ public class EvaluationRequest extends Thread {
       errorFile.createNewFile();
       Files.writeString(errorFile.toPath(), reason);
       Paths.get(provenance.userWorkDirectoryPath).resolve(usersErrorDirectory).toFile().mkdir();
-      Files.move(taskDir.toPath(),
+      transferEngine.move(taskDir.toPath(),
           Paths.get(provenance.userWorkDirectoryPath).resolve(usersErrorDirectory)
               .resolve(taskDir.getName()));
     } catch (IOException e) {
@@ -227,30 +325,55 @@ public class EvaluationRequest extends Thread {
     }
   }
 
-  private void copyToTargetDir(File taskDir) throws IOException {
-    LOG.info(
-        "Copying %s to target directory %s".formatted(taskDir.getAbsolutePath(),
-            assignedTargetDirectory));
-    FileUtils.copyDirectory(taskDir, assignedTargetDirectory.resolve(taskDir.getName()).toFile());
-  }
-
-  private List<File> tasks() {
-    return Arrays.stream(workingDirectory.toFile().listFiles()).filter(File::isDirectory)
-        .filter(file -> !file.getName().equals(INTERVENTION_DIRECTORY)).toList();
+  private TransferResult publishToTargetDir(File taskDir, Path target) throws IOException {
+    LOG.info("Publishing ({}) {} to {}", publishMode, taskDir.getAbsolutePath(), target);
+    if (target.toFile().exists()) {
+      // without marker file, the target has not been picked up yet and is an incomplete copy
+      LOG.warn("Replacing incomplete copy in target directory: {}", target);
+      FileUtils.deleteDirectory(target.toFile());
+    }
+    var expectedChecksums = verifyPublish ? expectedChecksums(taskDir.toPath()) : null;
+    if (publishMode == PublishMode.MOVE) {
+      return transferEngine.move(taskDir.toPath(), target, expectedChecksums,
+          () -> recordStep(taskDir, Step.PUBLISHED));
+    }
+    var result = transferEngine.copy(taskDir.toPath(), target, expectedChecksums);
+    recordStep(taskDir, Step.PUBLISHED);
+    return result;
   }
 
-  public void interrupt() {
-    terminated.set(true);
-    while (active.get()) {
-      LOG.debug("Thread is still active...");
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException e) {
-        // we don't want to interrupt the worker thread before its task is done, since it might
-        // render the application in a non-recoverable state
+  /**
+   * The checksums of the checksum manifest, computed earlier in the pipeline. Files missing in the
+   * manifest (e.g. the provenance file) are verified against a second read of the source.
+   */
+  private static ExpectedChecksums expectedChecksums(Path taskDir) {
+    var manifestFile = taskDir.resolve(ChecksumManifest.FILE_NAME);
+    if (!Files.exists(manifestFile)) {
+      return ExpectedChecksums.unknown();
+    }
+    Map<Path, Long> checksums = new HashMap<>();
+    try {
+      for (Entry entry : ChecksumManifest.read(manifestFile).files()) {
+        checksums.put(taskDir.resolve(entry.path()).toAbsolutePath().normalize(),
+            Long.parseLong(entry.crc32c(), 16));
       }
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Cannot read checksum manifest {}, verifying against the source files",
+          manifestFile, e);
+      return ExpectedChecksums.unknown();
     }
-    LOG.debug("Task has been finished");
+    return file -> {
+      var checksum = checksums.get(file.toAbsolutePath().normalize());
+      return checksum == null ? OptionalLong.empty() : OptionalLong.of(checksum);
+    };
+  }
+
+  private List<File> tasks() {
+    return Arrays.stream(workingDirectory.toFile().listFiles()).filter(File::isDirectory)
+        // transfers in progress are hidden until they are complete
+        .filter(file -> !file.isHidden())
+        .filter(file -> !file.getName().equals(INTERVENTION_DIRECTORY))
+        .filter(file -> !Lane.isLaneDirectory(file.getName())).toList();
   }
 
 }
@@ -0,0 +1,175 @@
+package life.qbic.data.processing.evaluation;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import life.qbic.data.processing.config.TargetSelectionConfig;
+import life.qbic.data.processing.transfer.TransferResult;
+import life.qbic.data.processing.transfer.TransferResult.Method;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Least Loaded Selector</b>
+ * <p>
+ * Selects the target directory with the least pending datasets relative to its weight. Pending are
+ * the datasets whose openBIS marker file (<code>.MARKER_is_finished_*</code>) is still present, as
+ * well as the datasets currently being published to the target. Ties are broken in favour of the
+ * target with the higher recent copy throughput, then with more usable space.
+ * <p>
+ * Targets with less usable space than configured are not selected, as well as targets taken out of
+ * rotation by their {@link CircuitBreaker}.
+ * <p>
+ * The marker files are counted by the {@link BackpressureController}, which also takes target
+ * directories out of rotation that have reached their high watermark. The usable space is looked up
+ * at most every {@link #REFRESH_INTERVAL} milliseconds per target.
+ *
+ * @since 1.0.0
+ */
+public class LeastLoadedSelector extends AbstractTargetSelector {
+
+  /**
+   * The time interval (milliseconds) in which the usable space of a target is looked up.
+   */
+  public static final long REFRESH_INTERVAL = 5_000;
+  /**
+   * Weight of the latest copy throughput in the recent copy throughput.
+   */
+  private static final double THROUGHPUT_SMOOTHING = 0.3;
+  private static final Logger log = getLogger(LeastLoadedSelector.class);
+  private final Map<Path, TargetLoad> targetLoads = new LinkedHashMap<>();
+  private final long minFreeSpace;
+
+  /**
+   * @param targetDirectories the target directories
+   * @param config            the weights of the target directories, the minimal usable space and
+   *                          the circuit breaker settings
+   * @param backpressure      the pending datasets of the target directories
+   * @since 1.0.0
+   */
+  public LeastLoadedSelector(List<Path> targetDirectories, TargetSelectionConfig config,
+      BackpressureController backpressure) {
+    super(targetDirectories, config, backpressure);
+    int[] weights = config.weights(targetDirectories.size());
+    for (int i = 0; i < targetDirectories().size(); i++) {
+      targetLoads.put(targetDirectories().get(i),
+          new TargetLoad(targetDirectories().get(i), weights[i]));
+    }
+    this.minFreeSpace = config.minFreeSpace();
+  }
+
+  @Override
+  public Path next() {
+    List<Candidate> candidates = new ArrayList<>();
+    for (TargetLoad targetLoad : targetLoads.values()) {
+      targetLoad.refresh();
+      if (targetLoad.usableSpace() < minFreeSpace) {
+        log.debug("Target {} has too little usable space", targetLoad.targetDirectory);
+        continue;
+      }
+      if (isAvailable(targetLoad.targetDirectory)) {
+        // snapshot, the load changes concurrently
+        double load = (double) (backpressure().pending(targetLoad.targetDirectory)
+            + targetLoad.inFlight.get()) / targetLoad.weight;
+        candidates.add(new Candidate(targetLoad, load, targetLoad.throughput(),
+            targetLoad.usableSpace()));
+      }
+    }
+    candidates.sort(Comparator.comparingDouble(Candidate::load)
+        .thenComparing(Comparator.comparingDouble(Candidate::throughput).reversed())
+        .thenComparing(Comparator.comparingLong(Candidate::usableSpace).reversed()));
+    for (Candidate candidate : candidates) {
+      var targetLoad = candidate.targetLoad();
+      if (tryAcquire(targetLoad.targetDirectory)) {
+        targetLoad.inFlight.incrementAndGet();
+        return targetLoad.targetDirectory;
+      }
+    }
+    var mostSpace = targetLoads.values().stream()
+        .max(Comparator.comparingLong(TargetLoad::usableSpace)).orElseThrow();
+    mostSpace.inFlight.incrementAndGet();
+    return fallback(mostSpace.targetDirectory);
+  }
+
+  @Override
+  public void published(Path targetDirectory, TransferResult result) {
+    var targetLoad = targetLoad(targetDirectory);
+    targetLoad.inFlight.decrementAndGet();
+    if (result.method() == Method.COPY && result.bytes() > 0) {
+      targetLoad.recordThroughput(result.bytesPerSecond());
+    }
+    super.published(targetDirectory, result);
+  }
+
+  @Override
+  public void failed(Path targetDirectory) {
+    targetLoad(targetDirectory).inFlight.decrementAndGet();
+    super.failed(targetDirectory);
+  }
+
+  private TargetLoad targetLoad(Path targetDirectory) {
+    var targetLoad = targetLoads.get(targetDirectory);
+    if (targetLoad == null) {
+      throw new IllegalArgumentException("Unknown target directory: " + targetDirectory);
+    }
+    return targetLoad;
+  }
+
+  private record Candidate(TargetLoad targetLoad, double load, double throughput,
+                           long usableSpace) {
+
+  }
+
+  private static class TargetLoad {
+
+    private final Path targetDirectory;
+    private final int weight;
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private volatile long usableSpace = Long.MAX_VALUE;
+    private volatile double throughput = 0;
+    private long lastRefresh = 0;
+
+    private TargetLoad(Path targetDirectory, int weight) {
+      this.targetDirectory = targetDirectory;
+      this.weight = weight;
+    }
+
+    private synchronized void refresh() {
+      long now = System.currentTimeMillis();
+      if (now - lastRefresh < REFRESH_INTERVAL) {
+        return;
+      }
+      lastRefresh = now;
+      try {
+        usableSpace = Files.getFileStore(targetDirectory).getUsableSpace();
+      } catch (IOException e) {
+        log.warn("Cannot determine usable space of target {}", targetDirectory, e);
+        usableSpace = 0;
+      }
+    }
+
+    private synchronized void recordThroughput(double bytesPerSecond) {
+      throughput = throughput == 0 ? bytesPerSecond
+          : THROUGHPUT_SMOOTHING * bytesPerSecond + (1 - THROUGHPUT_SMOOTHING) * throughput;
+    }
+
+    /**
+     * The recent copy throughput, unknown throughput is assumed to be high, so the target gets
+     * measured.
+     */
+    private double throughput() {
+      return throughput == 0 ? Double.MAX_VALUE : throughput;
+    }
+
+    private long usableSpace() {
+      return usableSpace;
+    }
+  }
+}
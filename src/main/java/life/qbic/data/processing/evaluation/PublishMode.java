@@ -0,0 +1,38 @@
+package life.qbic.data.processing.evaluation;
+
+/**
+ * <b>Publish Mode</b>
+ * <p>
+ * How an evaluated dataset is handed over to its target directory (e.g. an openBIS dropbox).
+ * <ul>
+ *   <li>{@link #MOVE}: the task directory is moved into the target directory. Within the same file
+ *   system, this is an atomic rename, no matter the size of the dataset.</li>
+ *   <li>{@link #COPY}: the task directory is copied into the target directory and deleted
+ *   afterwards. Within the same file system, the copy consists of hard links.</li>
+ * </ul>
+ * Between file systems, both modes copy the data.
+ *
+ * @since 1.0.0
+ */
+public enum PublishMode {
+
+  MOVE, COPY;
+
+  /**
+   * Parses the publish mode from its configuration value.
+   *
+   * @param value the configuration value, case-insensitive
+   * @return the matching publish mode
+   * @throws IllegalArgumentException if the value is not a known publish mode
+   * @since 1.0.0
+   */
+  public static PublishMode from(String value) {
+    for (PublishMode publishMode : values()) {
+      if (publishMode.name().equalsIgnoreCase(value.strip())) {
+        return publishMode;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Unknown publish mode '%s', must be 'move' or 'copy'".formatted(value));
+  }
+}
@@ -0,0 +1,40 @@
+package life.qbic.data.processing.evaluation;
+
+/**
+ * <b>Target Selection</b>
+ * <p>
+ * The strategies of selecting the target directory of an evaluated dataset.
+ *
+ * @since 1.0.0
+ */
+public enum TargetSelection {
+
+  /**
+   * Rotates through the target directories in proportion to their weights, see
+   * {@link WeightedRoundRobinSelector}.
+   */
+  ROUND_ROBIN,
+  /**
+   * Selects the target directory with the least pending datasets, see
+   * {@link LeastLoadedSelector}.
+   */
+  LEAST_LOADED;
+
+  /**
+   * Parses the target selection from its configuration value.
+   *
+   * @param value the configuration value, case-insensitive, e.g. <code>round-robin</code>
+   * @return the matching target selection
+   * @throws IllegalArgumentException if the value is not a known target selection
+   * @since 1.0.0
+   */
+  public static TargetSelection from(String value) {
+    for (TargetSelection targetSelection : values()) {
+      if (targetSelection.name().equalsIgnoreCase(value.strip().replace('-', '_'))) {
+        return targetSelection;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Unknown target selection '%s', must be 'round-robin' or 'least-loaded'".formatted(value));
+  }
+}
@@ -0,0 +1,42 @@
+package life.qbic.data.processing.evaluation;
+
+import java.nio.file.Path;
+import life.qbic.data.processing.transfer.TransferResult;
+
+/**
+ * <b>Target Selector</b>
+ * <p>
+ * Selects the target directory (e.g. an openBIS dropbox) an evaluated dataset is published to.
+ * <p>
+ * Every selection must be followed by exactly one call of {@link #published(Path, TransferResult)}
+ * or {@link #failed(Path)}, so the selector can keep track of the health and load of its targets.
+ *
+ * @since 1.0.0
+ */
+public interface TargetSelector {
+
+  /**
+   * Selects the target directory for the next dataset.
+   *
+   * @return the selected target directory
+   * @since 1.0.0
+   */
+  Path next();
+
+  /**
+   * Reports a dataset that has been published to a target directory successfully.
+   *
+   * @param targetDirectory the target directory returned by {@link #next()}
+   * @param result          the transfer of the dataset into the target directory
+   * @since 1.0.0
+   */
+  void published(Path targetDirectory, TransferResult result);
+
+  /**
+   * Reports a dataset that could not be published to a target directory.
+   *
+   * @param targetDirectory the target directory returned by {@link #next()}
+   * @since 1.0.0
+   */
+  void failed(Path targetDirectory);
+}
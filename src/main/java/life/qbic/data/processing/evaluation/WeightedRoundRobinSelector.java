@@ -0,0 +1,83 @@
+package life.qbic.data.processing.evaluation;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import life.qbic.data.processing.config.TargetSelectionConfig;
+
+/**
+ * <b>Weighted Round Robin Selector</b>
+ * <p>
+ * Rotates through the target directories, selecting every target directory in proportion to its
+ * weight. The selections of a target are spread evenly over a rotation (e.g. weights 2 and 1 yield
+ * <code>A, B, A</code>), instead of selecting the same target several times in a row.
+ * <p>
+ * The position in the rotation is an atomic counter, so concurrent workers do not block each other.
+ * Targets taken out of rotation by their {@link CircuitBreaker} or by their
+ * {@link BackpressureController} are skipped.
+ *
+ * @since 1.0.0
+ */
+public class WeightedRoundRobinSelector extends AbstractTargetSelector {
+
+  private final Path[] rotation;
+  private final AtomicLong position = new AtomicLong(0);
+
+  /**
+   * @param targetDirectories the target directories
+   * @param config            the weights of the target directories and the circuit breaker
+   *                          settings
+   * @param backpressure      the pending datasets of the target directories
+   * @since 1.0.0
+   */
+  public WeightedRoundRobinSelector(List<Path> targetDirectories, TargetSelectionConfig config,
+      BackpressureController backpressure) {
+    super(targetDirectories, config, backpressure);
+    this.rotation = createRotation(targetDirectories(), config.weights(targetDirectories.size()));
+  }
+
+  /**
+   * Creates an evenly spread rotation, where every target occurs as often as its weight (smooth
+   * weighted round robin).
+   */
+  private static Path[] createRotation(List<Path> targetDirectories, int[] weights) {
+    int totalWeight = 0;
+    for (int weight : weights) {
+      totalWeight += weight;
+    }
+    List<Path> rotation = new ArrayList<>(totalWeight);
+    int[] currentWeights = new int[weights.length];
+    for (int slot = 0; slot < totalWeight; slot++) {
+      int selected = 0;
+      for (int i = 0; i < weights.length; i++) {
+        currentWeights[i] += weights[i];
+        if (currentWeights[i] > currentWeights[selected]) {
+          selected = i;
+        }
+      }
+      currentWeights[selected] -= totalWeight;
+      rotation.add(targetDirectories.get(selected));
+    }
+    return rotation.toArray(Path[]::new);
+  }
+
+  @Override
+  public Path next() {
+    Path first = rotation[slot(position.getAndIncrement())];
+    if (tryAcquire(first)) {
+      return first;
+    }
+    for (int attempt = 1; attempt < rotation.length; attempt++) {
+      Path candidate = rotation[slot(position.getAndIncrement())];
+      if (tryAcquire(candidate)) {
+        return candidate;
+      }
+    }
+    return fallback(first);
+  }
+
+  private int slot(long position) {
+    return (int) Math.floorMod(position, (long) rotation.length);
+  }
+}
@@ -0,0 +1,59 @@
+package life.qbic.data.processing.processing;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <b>Buffer Pool</b>
+ * <p>
+ * A fixed number of equally sized byte arrays, that are reused instead of allocated per file. A
+ * caller that finds no free buffer waits until another caller releases one, which also limits the
+ * amount of data in flight.
+ *
+ * @since 1.0.0
+ */
+class BufferPool {
+
+  private final BlockingQueue<byte[]> buffers;
+  private final int bufferSize;
+
+  /**
+   * @param buffers    the number of buffers
+   * @param bufferSize the size of every buffer in bytes
+   * @since 1.0.0
+   */
+  BufferPool(int buffers, int bufferSize) {
+    if (buffers < 1) {
+      throw new IllegalArgumentException("buffers must be greater than 0");
+    }
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("bufferSize must be greater than 0");
+    }
+    this.buffers = new ArrayBlockingQueue<>(buffers);
+    this.bufferSize = bufferSize;
+    for (int i = 0; i < buffers; i++) {
+      this.buffers.add(new byte[bufferSize]);
+    }
+  }
+
+  int bufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Takes a buffer from the pool, waiting for one to become available.
+   *
+   * @return a buffer, that has to be released after use
+   * @throws InterruptedException if interrupted while waiting
+   * @since 1.0.0
+   */
+  byte[] acquire() throws InterruptedException {
+    return buffers.take();
+  }
+
+  void release(byte[] buffer) {
+    if (buffer.length != bufferSize || !buffers.offer(buffer)) {
+      throw new IllegalArgumentException("Buffer does not belong to the pool");
+    }
+  }
+}
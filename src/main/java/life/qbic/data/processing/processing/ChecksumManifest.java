@@ -0,0 +1,89 @@
+package life.qbic.data.processing.processing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <b>Checksum Manifest</b>
+ * <p>
+ * Lists the size, last modification time and checksums of every file of a dataset. The manifest is
+ * stored as {@link #FILE_NAME} in the task directory, next to the provenance file. Like the
+ * provenance file (see {@link life.qbic.data.processing.ProvenanceCodec}), it is written with a
+ * shared Jackson writer and replaced atomically.
+ *
+ * @param files the files of the dataset, ordered by their path
+ * @since 1.0.0
+ */
+public record ChecksumManifest(@JsonProperty("files") List<Entry> files) {
+
+  public static final String FILE_NAME = "checksums.json";
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectReader READER = MAPPER.readerFor(ChecksumManifest.class);
+  // the channel must stay open until it has been forced to disk
+  private static final ObjectWriter WRITER = MAPPER.writerFor(ChecksumManifest.class)
+      .withDefaultPrettyPrinter().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+  public static ChecksumManifest read(Path manifestFile) throws IOException {
+    try (var channel = FileChannel.open(manifestFile, StandardOpenOption.READ);
+        var input = Channels.newInputStream(channel)) {
+      return READER.readValue(input);
+    }
+  }
+
+  /**
+   * Replaces a manifest file atomically.
+   *
+   * @param manifestFile the manifest file, replaced if it exists
+   * @throws IOException if the manifest cannot be written, the previous file is kept then
+   * @since 1.0.0
+   */
+  public void write(Path manifestFile) throws IOException {
+    var temporaryFile = manifestFile.resolveSibling(
+        ".%s.%s.tmp".formatted(manifestFile.getFileName(), UUID.randomUUID()));
+    try {
+      try (var channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.WRITE)) {
+        WRITER.writeValue(Channels.newOutputStream(channel), this);
+        channel.force(false);
+      }
+      Files.move(temporaryFile, manifestFile, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporaryFile);
+      throw e;
+    }
+  }
+
+  /**
+   * A file of the dataset.
+   *
+   * @param path         the path of the file, relative to the task directory
+   * @param size         the size of the file in bytes
+   * @param lastModified the last modification time of the file in milliseconds since the epoch
+   * @param crc32c       the CRC32C checksum of the file
+   * @param md5          the MD5 digest of the file
+   * @param sha256       the SHA-256 digest of the file
+   * @since 1.0.0
+   */
+  public record Entry(@JsonProperty("path") String path, @JsonProperty("size") long size,
+                      @JsonProperty("lastModified") long lastModified,
+                      @JsonProperty("crc32c") String crc32c, @JsonProperty("md5") String md5,
+                      @JsonProperty("sha256") String sha256) {
+
+    public FileDigests digests() {
+      return new FileDigests(crc32c, md5, sha256);
+    }
+  }
+}
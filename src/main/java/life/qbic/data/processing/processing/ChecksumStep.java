@@ -0,0 +1,196 @@
+package life.qbic.data.processing.processing;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import life.qbic.data.processing.Provenance;
+import life.qbic.data.processing.processing.ChecksumManifest.Entry;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Checksum Step</b>
+ * <p>
+ * Computes the CRC32C, MD5 and SHA-256 checksums of every file of a dataset and writes them to a
+ * {@link ChecksumManifest} next to the provenance file.
+ * <p>
+ * Every file is read once, all checksums are computed from the same large direct buffer. The files
+ * are hashed in parallel on a pool shared by all workers of the step, so the step is limited by the
+ * disk bandwidth rather than by a single core.
+ * <p>
+ * Checksum files provided by the user are verified against the computed checksums. Supported are
+ * files named <code>*.md5</code>, <code>*.sha256</code>, <code>*.crc32c</code>,
+ * <code>md5sum(s).txt</code>, <code>sha256sum(s).txt</code> and <code>checksums.txt</code>, in the
+ * format of <code>md5sum</code> (<code>&lt;checksum&gt;  &lt;file&gt;</code>, paths relative to
+ * the checksum file). A <code>&lt;file&gt;.md5</code> file may contain the checksum only. If a
+ * checksum does not match or a listed file is missing, the dataset is invalid and the task is moved
+ * back to the error directory of the user. A checksum file that cannot be read requires a manual
+ * intervention.
+ *
+ * @since 1.0.0
+ */
+public class ChecksumStep implements ProcessingStep {
+
+  /**
+   * The size of the read buffer per thread (8 MiB).
+   */
+  static final int BUFFER_SIZE = 8 * 1024 * 1024;
+  private static final Logger log = getLogger(ChecksumStep.class);
+  private static final Pattern CHECKSUM_LINE = Pattern.compile(
+      "^([0-9a-fA-F]{8}|[0-9a-fA-F]{32}|[0-9a-fA-F]{64})(?:\\s+\\*?(.+))?$");
+  private static final Pattern SINGLE_CHECKSUM_FILE = Pattern.compile(
+      "(?i)^.+\\.(md5|sha256|crc32c)$");
+  private static final Pattern CHECKSUM_FILE = Pattern.compile(
+      "(?i)^(.+\\.(md5|sha256|crc32c)|(md5|sha256)sums?\\.txt|checksums\\.txt)$");
+  private static final AtomicInteger threadNumber = new AtomicInteger(1);
+  private final ThreadPoolExecutor hashExecutor;
+  private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(
+      () -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+  public ChecksumStep() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param threads the number of files hashed in parallel
+   * @since 1.0.0
+   */
+  public ChecksumStep(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be greater than 0");
+    }
+    this.hashExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), runnable -> {
+      var thread = new Thread(runnable, "Checksum-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.hashExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  static boolean isChecksumFile(Path file) {
+    return CHECKSUM_FILE.matcher(file.getFileName().toString()).matches();
+  }
+
+  @Override
+  public void process(Path taskDirectory, Provenance provenance) throws ProcessingException {
+    long start = System.nanoTime();
+    List<Path> files = DatasetFiles.list(taskDirectory);
+    var manifest = new ChecksumManifest(hashAll(taskDirectory, files));
+    try {
+      manifest.write(taskDirectory.resolve(ChecksumManifest.FILE_NAME));
+    } catch (IOException e) {
+      throw new ProcessingException("Cannot write checksum manifest", e);
+    }
+    long bytes = manifest.files().stream().mapToLong(Entry::size).sum();
+    long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+    log.info("Computed checksums of {} files ({} bytes) of {} in {} ms, {} bytes/s", files.size(),
+        bytes, taskDirectory, millis, bytes * 1000 / millis);
+    verifyChecksumFiles(taskDirectory, files, manifest);
+  }
+
+  private List<Entry> hashAll(Path taskDirectory, List<Path> files) {
+    List<Future<Entry>> entries = new ArrayList<>(files.size());
+    for (Path file : files) {
+      entries.add(hashExecutor.submit(() -> hash(taskDirectory, file)));
+    }
+    List<Entry> result = new ArrayList<>(files.size());
+    try {
+      for (Future<Entry> entry : entries) {
+        result.add(entry.get());
+      }
+    } catch (ExecutionException e) {
+      entries.forEach(entry -> entry.cancel(false));
+      throw new ProcessingException("Cannot compute checksums", e.getCause());
+    } catch (InterruptedException e) {
+      entries.forEach(entry -> entry.cancel(false));
+      Thread.currentThread().interrupt();
+      throw new ProcessingException("Interrupted while computing checksums", e);
+    }
+    result.sort(Comparator.comparing(Entry::path));
+    return result;
+  }
+
+  private Entry hash(Path taskDirectory, Path file) {
+    try {
+      var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      var digests = FileDigests.compute(file, buffers.get());
+      return new Entry(taskDirectory.relativize(file).toString(), attributes.size(),
+          attributes.lastModifiedTime().toMillis(), digests.crc32c(), digests.md5(),
+          digests.sha256());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read %s".formatted(file), e);
+    }
+  }
+
+  private static void verifyChecksumFiles(Path taskDirectory, List<Path> files,
+      ChecksumManifest manifest) {
+    Map<Path, FileDigests> digests = new HashMap<>();
+    manifest.files().forEach(entry -> digests.put(
+        taskDirectory.resolve(entry.path()).normalize(), entry.digests()));
+    List<String> failures = new ArrayList<>();
+    for (Path checksumFile : files.stream().filter(ChecksumStep::isChecksumFile).toList()) {
+      List<String> lines;
+      try {
+        lines = Files.readAllLines(checksumFile);
+      } catch (IOException e) {
+        throw new ProcessingException("Cannot read checksum file %s".formatted(checksumFile), e);
+      }
+      for (String line : lines) {
+        verifyLine(checksumFile, line.strip(), digests, failures);
+      }
+    }
+    if (!failures.isEmpty()) {
+      throw new InvalidDatasetException("Checksum mismatch",
+          "Checksum verification failed, please upload the files again: %s".formatted(
+              String.join("; ", failures)));
+    }
+  }
+
+  private static void verifyLine(Path checksumFile, String line, Map<Path, FileDigests> digests,
+      List<String> failures) {
+    if (line.isEmpty() || line.startsWith("#")) {
+      return;
+    }
+    var matcher = CHECKSUM_LINE.matcher(line);
+    if (!matcher.matches()) {
+      log.warn("Ignoring unknown line in checksum file {}: {}", checksumFile, line);
+      return;
+    }
+    String name = checksumFile.getFileName().toString();
+    Path file;
+    if (matcher.group(2) != null) {
+      file = checksumFile.resolveSibling(matcher.group(2).strip()).normalize();
+    } else if (SINGLE_CHECKSUM_FILE.matcher(name).matches()) {
+      // <file>.md5 containing the checksum only
+      file = checksumFile.resolveSibling(name.substring(0, name.lastIndexOf('.'))).normalize();
+    } else {
+      log.warn("Ignoring checksum without file name in checksum file {}", checksumFile);
+      return;
+    }
+    var fileDigests = digests.get(file);
+    if (fileDigests == null) {
+      failures.add("%s is listed in %s, but missing".formatted(file.getFileName(),
+          checksumFile.getFileName()));
+    } else if (!fileDigests.matches(matcher.group(1))) {
+      failures.add("%s does not match its checksum in %s".formatted(file.getFileName(),
+          checksumFile.getFileName()));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package life.qbic.data.processing.processing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import life.qbic.data.processing.Provenance;
+import life.qbic.data.processing.ProvenanceHistory;
+import life.qbic.data.processing.processing.ProcessingStep.ProcessingException;
+
+/**
+ * <b>Dataset Files</b>
+ * <p>
+ * Lists the files of the dataset of a task. The dataset is everything in the task directory,
+ * except the files the process steps keep next to it: the provenance file, its history log, the
+ * checksum manifest, the error description of a failed task and temporary files of writes that
+ * have been interrupted by a crash.
+ *
+ * @since 1.0.0
+ */
+final class DatasetFiles {
+
+  private static final String ERROR_FILE_NAME = "error.txt";
+
+  private DatasetFiles() {
+  }
+
+  /**
+   * Checks, if an entry of the task directory belongs to the task instead of the dataset.
+   *
+   * @param fileName the name of an entry in the task directory
+   * @return <code>true</code>, if the entry is no part of the dataset, else <code>false</code>
+   * @since 1.0.0
+   */
+  static boolean isTaskMetadata(String fileName) {
+    return fileName.equals(Provenance.FILE_NAME) || fileName.equals(ChecksumManifest.FILE_NAME)
+        || fileName.equals(ProvenanceHistory.FILE_NAME) || fileName.equals(ERROR_FILE_NAME)
+        || fileName.startsWith("." + Provenance.FILE_NAME)
+        || fileName.startsWith("." + ChecksumManifest.FILE_NAME);
+  }
+
+  /**
+   * Lists all regular files of the dataset of a task, in all directories of the dataset.
+   *
+   * @param taskDirectory the task directory
+   * @return the files of the dataset, sorted by path
+   * @throws ProcessingException if the task directory cannot be listed
+   * @since 1.0.0
+   */
+  static List<Path> list(Path taskDirectory) throws ProcessingException {
+    try (Stream<Path> entries = Files.list(taskDirectory)) {
+      return entries.filter(entry -> !isTaskMetadata(entry.getFileName().toString()))
+          .flatMap(DatasetFiles::walk).filter(Files::isRegularFile).sorted().toList();
+    } catch (IOException e) {
+      throw new ProcessingException("Cannot list files of task %s".formatted(taskDirectory), e);
+    }
+  }
+
+  private static Stream<Path> walk(Path entry) {
+    try (Stream<Path> paths = Files.walk(entry)) {
+      return paths.toList().stream();
+    } catch (IOException e) {
+      throw new ProcessingException("Cannot list files of dataset %s".formatted(entry), e);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package life.qbic.data.processing.processing;
+
+/**
+ * <b>FASTQ Parser</b>
+ * <p>
+ * Collects {@link FastqStatistics} from the content of a FASTQ file, that is passed in chunks of
+ * any size. The parser keeps its state between chunks and does not allocate any memory per record
+ * or line, so it is limited by the speed of reading the file.
+ * <p>
+ * Records consist of four lines: the header starting with '@', the sequence, the separator
+ * starting with '+' and the quality scores, which must be as long as the sequence. Line endings
+ * may be '\n' or '\r\n', empty lines between records are ignored.
+ * <p>
+ * A parser is used for a single file and is not thread-safe.
+ *
+ * @since 1.0.0
+ */
+class FastqParser {
+
+  private static final int HEADER = 0;
+  private static final int SEQUENCE = 1;
+  private static final int SEPARATOR = 2;
+  private static final int QUALITY = 3;
+  private int line = HEADER;
+  private boolean lineStart = true;
+  private int sequenceLength = 0;
+  private int qualityLength = 0;
+  private long reads = 0;
+  private long bases = 0;
+  private int minReadLength = Integer.MAX_VALUE;
+  private int maxReadLength = 0;
+  private int minQuality = Integer.MAX_VALUE;
+  private int maxQuality = 0;
+
+  /**
+   * Parses the next chunk of the file.
+   *
+   * @param buffer the buffer holding the chunk
+   * @param offset the start of the chunk in the buffer
+   * @param length the length of the chunk
+   * @throws FastqFormatException if the content is no valid FASTQ
+   * @since 1.0.0
+   */
+  void parse(byte[] buffer, int offset, int length) throws FastqFormatException {
+    int end = offset + length;
+    int position = offset;
+    while (position < end) {
+      if (lineStart) {
+        byte first = buffer[position];
+        if (line == HEADER && (first == '\n' || first == '\r')) {
+          position++;
+          continue;
+        }
+        if (line == HEADER && first != '@') {
+          throw new FastqFormatException(
+              "record %d does not start with '@'".formatted(reads + 1));
+        }
+        if (line == SEPARATOR && first != '+') {
+          throw new FastqFormatException(
+              "record %d has no '+' separator line".formatted(reads + 1));
+        }
+        lineStart = false;
+      }
+      position = switch (line) {
+        case SEQUENCE -> scanSequence(buffer, position, end);
+        case QUALITY -> scanQuality(buffer, position, end);
+        default -> skipLine(buffer, position, end);
+      };
+    }
+  }
+
+  /**
+   * Completes the parsing after the last chunk.
+   *
+   * @return the statistics of the file
+   * @throws FastqFormatException if the last record is incomplete
+   * @since 1.0.0
+   */
+  FastqStatistics finish() throws FastqFormatException {
+    if (line == QUALITY && !lineStart) {
+      // no line break after the last record
+      endLine();
+    }
+    if (line != HEADER || !lineStart) {
+      throw new FastqFormatException(
+          "record %d is incomplete, the file is truncated".formatted(reads + 1));
+    }
+    if (reads == 0) {
+      return FastqStatistics.EMPTY;
+    }
+    return new FastqStatistics(reads, bases, minReadLength, maxReadLength, minQuality,
+        maxQuality);
+  }
+
+  private int skipLine(byte[] buffer, int position, int end) throws FastqFormatException {
+    for (int i = position; i < end; i++) {
+      if (buffer[i] == '\n') {
+        endLine();
+        return i + 1;
+      }
+    }
+    return end;
+  }
+
+  private int scanSequence(byte[] buffer, int position, int end) throws FastqFormatException {
+    int length = sequenceLength;
+    for (int i = position; i < end; i++) {
+      byte current = buffer[i];
+      if (current == '\n') {
+        sequenceLength = length;
+        endLine();
+        return i + 1;
+      }
+      if (current != '\r') {
+        length++;
+      }
+    }
+    sequenceLength = length;
+    return end;
+  }
+
+  private int scanQuality(byte[] buffer, int position, int end) throws FastqFormatException {
+    int length = qualityLength;
+    int min = minQuality;
+    int max = maxQuality;
+    int i = position;
+    for (; i < end; i++) {
+      int current = buffer[i];
+      if (current == '\n') {
+        break;
+      }
+      if (current != '\r') {
+        length++;
+        min = Math.min(min, current);
+        max = Math.max(max, current);
+      }
+    }
+    qualityLength = length;
+    minQuality = min;
+    maxQuality = max;
+    if (i < end) {
+      endLine();
+      return i + 1;
+    }
+    return end;
+  }
+
+  private void endLine() throws FastqFormatException {
+    if (line == QUALITY) {
+      if (qualityLength != sequenceLength) {
+        throw new FastqFormatException(
+            "record %d has %d quality scores for %d bases".formatted(reads + 1, qualityLength,
+                sequenceLength));
+      }
+      reads++;
+      bases += sequenceLength;
+      minReadLength = Math.min(minReadLength, sequenceLength);
+      maxReadLength = Math.max(maxReadLength, sequenceLength);
+      sequenceLength = 0;
+      qualityLength = 0;
+    }
+    line = (line + 1) % 4;
+    lineStart = true;
+  }
+
+  /**
+   * Thrown if a file is not a valid FASTQ file.
+   *
+   * @since 1.0.0
+   */
+  static class FastqFormatException extends Exception {
+
+    FastqFormatException(String message) {
+      super(message);
+    }
+  }
+}
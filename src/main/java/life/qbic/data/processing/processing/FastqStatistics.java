@@ -0,0 +1,97 @@
+package life.qbic.data.processing.processing;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * <b>FASTQ Statistics</b>
+ * <p>
+ * Basic quality control numbers of one or more FASTQ files: the number of reads and bases, the
+ * read lengths and the encoding of the quality scores.
+ *
+ * @param reads         the number of reads
+ * @param bases         the number of bases of all reads
+ * @param minReadLength the length of the shortest read, 0 if there are no reads
+ * @param maxReadLength the length of the longest read, 0 if there are no reads
+ * @param minQuality    the lowest quality character found, {@link Integer#MAX_VALUE} if there are
+ *                      no quality scores
+ * @param maxQuality    the highest quality character found, 0 if there are no quality scores
+ * @since 1.0.0
+ */
+public record FastqStatistics(long reads, long bases, int minReadLength, int maxReadLength,
+                              @JsonIgnore int minQuality, @JsonIgnore int maxQuality) {
+
+  /**
+   * The name of the section in the provenance.
+   */
+  public static final String PROVENANCE_SECTION = "fastqStatistics";
+
+  /**
+   * Statistics of files without reads.
+   */
+  public static final FastqStatistics EMPTY = new FastqStatistics(0, 0, 0, 0, Integer.MAX_VALUE,
+      0);
+
+  /**
+   * The highest quality character of the Phred+33 encoding used by current Illumina instruments
+   * ('J', Q41).
+   */
+  private static final int MAX_PHRED_33 = 'J';
+  /**
+   * The lowest quality character of the Solexa+64 encoding (';', Q-5).
+   */
+  private static final int MIN_SOLEXA_64 = ';';
+  /**
+   * The lowest quality character of the Phred+64 encoding ('@', Q0).
+   */
+  private static final int MIN_PHRED_64 = '@';
+
+  @JsonProperty("meanReadLength")
+  public double meanReadLength() {
+    return reads == 0 ? 0 : (double) bases / reads;
+  }
+
+  /**
+   * Guesses the encoding of the quality scores from the range of quality characters. Files that
+   * fit several encodings are reported as Phred+33, the encoding of all current instruments.
+   *
+   * @return the quality encoding
+   * @since 1.0.0
+   */
+  @JsonProperty("qualityEncoding")
+  public QualityEncoding qualityEncoding() {
+    if (minQuality > maxQuality) {
+      return QualityEncoding.UNKNOWN;
+    }
+    if (minQuality < MIN_SOLEXA_64 || maxQuality <= MAX_PHRED_33) {
+      return QualityEncoding.PHRED_33;
+    }
+    return minQuality < MIN_PHRED_64 ? QualityEncoding.SOLEXA_64 : QualityEncoding.PHRED_64;
+  }
+
+  /**
+   * Combines the statistics of two sets of files.
+   *
+   * @param other the statistics of other files
+   * @return the statistics of all files
+   * @since 1.0.0
+   */
+  public FastqStatistics plus(FastqStatistics other) {
+    if (other.reads == 0) {
+      return reads == 0 ? EMPTY : this;
+    }
+    if (reads == 0) {
+      return other;
+    }
+    return new FastqStatistics(reads + other.reads, bases + other.bases,
+        Math.min(minReadLength, other.minReadLength), Math.max(maxReadLength, other.maxReadLength),
+        Math.min(minQuality, other.minQuality), Math.max(maxQuality, other.maxQuality));
+  }
+
+  public enum QualityEncoding {
+    PHRED_33,
+    PHRED_64,
+    SOLEXA_64,
+    UNKNOWN
+  }
+}
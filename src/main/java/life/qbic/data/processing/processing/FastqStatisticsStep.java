@@ -0,0 +1,178 @@
+package life.qbic.data.processing.processing;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+import life.qbic.data.processing.Provenance;
+import life.qbic.data.processing.processing.FastqParser.FastqFormatException;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>FASTQ Statistics Step</b>
+ * <p>
+ * Collects {@link FastqStatistics} of every FASTQ file of a dataset (<code>*.fastq</code>,
+ * <code>*.fq</code>, optionally gzip compressed) and records them in the section
+ * {@value FastqStatistics#PROVENANCE_SECTION} of the provenance, per file and in total. The total
+ * covers all files of the task, e.g. both files of paired-end reads.
+ * <p>
+ * The files are parsed in parallel on a pool shared by all workers of the step. Every file is read
+ * once into a buffer of a {@link BufferPool} and parsed by a {@link FastqParser}, which does not
+ * allocate memory per record.
+ * <p>
+ * If a file is no valid FASTQ, the dataset is invalid and the task is moved back to the error
+ * directory of the user.
+ *
+ * @since 1.0.0
+ */
+public class FastqStatisticsStep implements ProcessingStep {
+
+  /**
+   * The size of the read buffer per file (1 MiB).
+   */
+  static final int BUFFER_SIZE = 1024 * 1024;
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+  private static final Logger log = getLogger(FastqStatisticsStep.class);
+  private static final AtomicInteger threadNumber = new AtomicInteger(1);
+  private final ThreadPoolExecutor parseExecutor;
+  private final BufferPool buffers;
+
+  public FastqStatisticsStep() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param threads the number of files parsed in parallel
+   * @since 1.0.0
+   */
+  public FastqStatisticsStep(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be greater than 0");
+    }
+    this.parseExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), runnable -> {
+      var thread = new Thread(runnable, "Fastq-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.parseExecutor.allowCoreThreadTimeOut(true);
+    // one buffer per thread, a running task never waits for a buffer
+    this.buffers = new BufferPool(threads, BUFFER_SIZE);
+  }
+
+  static boolean isFastqFile(Path file) {
+    var name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    if (name.endsWith(".gz")) {
+      name = name.substring(0, name.length() - 3);
+    }
+    return name.endsWith(".fastq") || name.endsWith(".fq");
+  }
+
+  @Override
+  public void process(Path taskDirectory, Provenance provenance) throws ProcessingException {
+    long start = System.nanoTime();
+    List<Path> files = DatasetFiles.list(taskDirectory).stream()
+        .filter(FastqStatisticsStep::isFastqFile).toList();
+    if (files.isEmpty()) {
+      return;
+    }
+    List<Future<FastqStatistics>> results = new ArrayList<>(files.size());
+    for (Path file : files) {
+      results.add(parseExecutor.submit(() -> parse(file)));
+    }
+    Map<String, FastqStatistics> fileStatistics = new LinkedHashMap<>();
+    List<String> failures = new ArrayList<>();
+    var total = FastqStatistics.EMPTY;
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        var relativePath = taskDirectory.relativize(files.get(i)).toString();
+        try {
+          var statistics = results.get(i).get();
+          fileStatistics.put(relativePath, statistics);
+          total = total.plus(statistics);
+        } catch (ExecutionException e) {
+          if (!(e.getCause() instanceof FastqFormatException)) {
+            throw new ProcessingException("Cannot read %s".formatted(files.get(i)), e.getCause());
+          }
+          failures.add("%s: %s".formatted(relativePath, e.getCause().getMessage()));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessingException("Interrupted while parsing FASTQ files", e);
+    } finally {
+      results.forEach(result -> result.cancel(false));
+    }
+    if (!failures.isEmpty()) {
+      throw new InvalidDatasetException("Invalid FASTQ file",
+          "FASTQ files could not be parsed, please check the files: %s".formatted(
+              String.join("; ", failures)));
+    }
+    provenance.putExtension(FastqStatistics.PROVENANCE_SECTION,
+        new FastqStatisticsSection(fileStatistics, total));
+    long bytes = files.stream().mapToLong(file -> file.toFile().length()).sum();
+    long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+    log.info("Parsed {} FASTQ files ({} bytes, {} reads) of {} in {} ms, {} bytes/s", files.size(),
+        bytes, total.reads(), taskDirectory, millis, bytes * 1000 / millis);
+  }
+
+  private FastqStatistics parse(Path file) throws FastqFormatException, InterruptedException {
+    byte[] buffer = buffers.acquire();
+    try (InputStream input = open(file)) {
+      var parser = new FastqParser();
+      int read;
+      while ((read = input.read(buffer)) >= 0) {
+        parser.parse(buffer, 0, read);
+      }
+      return parser.finish();
+    } catch (ZipException | EOFException e) {
+      throw new FastqFormatException("corrupt gzip compression (%s)".formatted(e.getMessage()));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read %s".formatted(file), e);
+    } finally {
+      buffers.release(buffer);
+    }
+  }
+
+  private static InputStream open(Path file) throws IOException {
+    var input = Files.newInputStream(file);
+    if (!file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+      return input;
+    }
+    try {
+      return new GZIPInputStream(input, GZIP_BUFFER_SIZE);
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
+  }
+
+  /**
+   * The section of the provenance written by this step.
+   *
+   * @param files the statistics of every FASTQ file, by path relative to the task directory
+   * @param total the statistics of all FASTQ files
+   * @since 1.0.0
+   */
+  public record FastqStatisticsSection(Map<String, FastqStatistics> files,
+                                       FastqStatistics total) {
+
+  }
+}
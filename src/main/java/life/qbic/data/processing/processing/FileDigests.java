@@ -0,0 +1,82 @@
+package life.qbic.data.processing.processing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+
+/**
+ * <b>File Digests</b>
+ * <p>
+ * The CRC32C, MD5 and SHA-256 checksums of a file, as lower case hex strings.
+ *
+ * @param crc32c the CRC32C checksum
+ * @param md5    the MD5 digest
+ * @param sha256 the SHA-256 digest
+ * @since 1.0.0
+ */
+public record FileDigests(String crc32c, String md5, String sha256) {
+
+  private static final HexFormat HEX = HexFormat.of();
+
+  /**
+   * Computes all checksums of a file in a single pass over its content.
+   *
+   * @param file   the file
+   * @param buffer the buffer to read the file with, preferably a large direct buffer
+   * @return the checksums of the file
+   * @throws IOException if the file cannot be read
+   * @since 1.0.0
+   */
+  public static FileDigests compute(Path file, ByteBuffer buffer) throws IOException {
+    var crc32c = new CRC32C();
+    var md5 = messageDigest("MD5");
+    var sha256 = messageDigest("SHA-256");
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer.clear();
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        crc32c.update(buffer.duplicate());
+        md5.update(buffer.duplicate());
+        sha256.update(buffer);
+        buffer.clear();
+      }
+    }
+    return new FileDigests("%08x".formatted(crc32c.getValue()), HEX.formatHex(md5.digest()),
+        HEX.formatHex(sha256.digest()));
+  }
+
+  private static MessageDigest messageDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform must support MD5 and SHA-256
+      throw new IllegalStateException("Missing message digest " + algorithm, e);
+    }
+  }
+
+  /**
+   * Looks up a checksum by its length: 8 hex digits are a CRC32C checksum, 32 an MD5 and 64 a
+   * SHA-256 digest.
+   *
+   * @param checksum the expected checksum, in hex
+   * @return <code>true</code>, if the checksum of the same kind matches, else <code>false</code>
+   * @throws IllegalArgumentException if the checksum has an unknown length
+   * @since 1.0.0
+   */
+  public boolean matches(String checksum) {
+    var expected = checksum.strip().toLowerCase();
+    return switch (expected.length()) {
+      case 8 -> expected.equals(crc32c);
+      case 32 -> expected.equals(md5);
+      case 64 -> expected.equals(sha256);
+      default -> throw new IllegalArgumentException(
+          "Unknown kind of checksum with %d digits".formatted(expected.length()));
+    };
+  }
+}
@@ -0,0 +1,141 @@
+package life.qbic.data.processing.processing;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import life.qbic.data.processing.Provenance;
+import life.qbic.data.processing.processing.GzipValidator.GzipFormatException;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Gzip Step</b>
+ * <p>
+ * Verifies the integrity of every gzip compressed file of a dataset (<code>*.gz</code>,
+ * <code>*.bgz</code>, <code>*.gzip</code>), e.g. FASTQ files, by inflating all of their members
+ * and checking the CRC32 checksums and sizes in the member trailers, see {@link GzipValidator}.
+ * <p>
+ * The files are validated in parallel on a pool shared by all workers of the step. Files in the
+ * BGZF format are additionally split into their blocks, which are validated in parallel, so large
+ * BGZF files do not keep a single core busy.
+ * <p>
+ * If a file is truncated or corrupt, the dataset is invalid and the task is moved back to the error
+ * directory of the user.
+ *
+ * @since 1.0.0
+ */
+public class GzipStep implements ProcessingStep {
+
+  /**
+   * The size of a batch of BGZF blocks read at once (1 MiB).
+   */
+  static final int BATCH_SIZE = 1024 * 1024;
+  private static final Logger log = getLogger(GzipStep.class);
+  private static final AtomicInteger threadNumber = new AtomicInteger(1);
+  private final ThreadPoolExecutor inflateExecutor;
+  private final GzipValidator validator;
+
+  public GzipStep() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param threads the number of files or BGZF batches inflated in parallel
+   * @since 1.0.0
+   */
+  public GzipStep(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be greater than 0");
+    }
+    this.inflateExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), runnable -> {
+      var thread = new Thread(runnable, "Gzip-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.inflateExecutor.allowCoreThreadTimeOut(true);
+    // two batches per thread, so the next batch can be read while one is inflated
+    this.validator = new GzipValidator(inflateExecutor, new BufferPool(2 * threads, BATCH_SIZE));
+  }
+
+  static boolean isGzipFile(Path file) {
+    var name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    return name.endsWith(".gz") || name.endsWith(".bgz") || name.endsWith(".gzip");
+  }
+
+  @Override
+  public void process(Path taskDirectory, Provenance provenance) throws ProcessingException {
+    long start = System.nanoTime();
+    List<Path> files = DatasetFiles.list(taskDirectory).stream().filter(GzipStep::isGzipFile)
+        .toList();
+    if (files.isEmpty()) {
+      return;
+    }
+    Map<Path, List<Future<?>>> validations = new LinkedHashMap<>();
+    Map<Path, String> failures = new LinkedHashMap<>();
+    try {
+      for (Path file : files) {
+        var results = new ArrayList<Future<?>>();
+        validations.put(file, results);
+        try {
+          validator.submit(file, results);
+        } catch (GzipFormatException e) {
+          failures.put(file, e.getMessage());
+        }
+      }
+      for (var validation : validations.entrySet()) {
+        awaitValidation(validation.getKey(), validation.getValue(), failures);
+      }
+    } catch (IOException e) {
+      // cancelled BGZF batches return their buffers to the pool, even if they never started
+      validations.values().forEach(results -> results.forEach(result -> result.cancel(false)));
+      throw new ProcessingException("Cannot validate gzip files of %s".formatted(taskDirectory), e);
+    }
+    if (!failures.isEmpty()) {
+      throw new InvalidDatasetException("Corrupt gzip file",
+          "Gzip validation failed, please upload the files again: %s".formatted(
+              failures.entrySet().stream().map(failure -> "%s: %s".formatted(
+                  taskDirectory.relativize(failure.getKey()), failure.getValue())).collect(
+                  Collectors.joining("; "))));
+    }
+    long bytes = files.stream().mapToLong(file -> file.toFile().length()).sum();
+    long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+    log.info("Validated {} gzip files ({} bytes) of {} in {} ms, {} bytes/s", files.size(), bytes,
+        taskDirectory, millis, bytes * 1000 / millis);
+  }
+
+  /**
+   * Waits for the validation tasks of a file. Only the first failure of a file is reported.
+   */
+  private static void awaitValidation(Path file, List<Future<?>> results,
+      Map<Path, String> failures) throws IOException {
+    for (Future<?> result : results) {
+      try {
+        result.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof GzipFormatException formatException) {
+          failures.putIfAbsent(file, formatException.getMessage());
+        } else if (e.getCause() instanceof IOException ioException) {
+          throw ioException;
+        } else {
+          throw new ProcessingException("Cannot validate %s".formatted(file), e.getCause());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ProcessingException("Interrupted while validating gzip files", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,481 @@
+package life.qbic.data.processing.processing;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <b>Gzip Validator</b>
+ * <p>
+ * Verifies the integrity of gzip files by inflating every member and comparing its CRC32 checksum
+ * and size with the member trailer. Truncated files, corrupt deflate data and trailing garbage are
+ * detected.
+ * <p>
+ * Plain gzip files are inflated sequentially, since a deflate stream cannot be split. BGZF files
+ * (blocked gzip, e.g. written by <code>bgzip</code>) consist of independent gzip members of at
+ * most 64 KiB, which are read in batches and inflated in parallel. A BGZF file must end with the
+ * empty end-of-file block, otherwise it is considered truncated.
+ * <p>
+ * Batches are read into buffers of a {@link BufferPool}, inflaters and other buffers are reused per
+ * thread, so validating a file does not allocate any buffers.
+ *
+ * @since 1.0.0
+ */
+class GzipValidator {
+
+  private static final int GZIP_MAGIC_1 = 0x1f;
+  private static final int GZIP_MAGIC_2 = 0x8b;
+  private static final int DEFLATE = 8;
+  private static final int FLAG_HEADER_CRC = 2;
+  private static final int FLAG_EXTRA = 4;
+  private static final int FLAG_NAME = 8;
+  private static final int FLAG_COMMENT = 16;
+  private static final int FLAGS_RESERVED = 0xe0;
+  private static final int TRAILER_SIZE = 8;
+  /**
+   * Size of the fixed part of a gzip header, up to and including XLEN.
+   */
+  private static final int FIXED_HEADER_SIZE = 12;
+  private static final int NEED_MORE_DATA = -1;
+  private static final int NOT_BGZF = -2;
+  private static final int INPUT_BUFFER_SIZE = 256 * 1024;
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+  private final ExecutorService executor;
+  private final BufferPool batchBuffers;
+  private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+  private final ThreadLocal<byte[]> inputBuffers = ThreadLocal.withInitial(
+      () -> new byte[INPUT_BUFFER_SIZE]);
+  private final ThreadLocal<byte[]> outputBuffers = ThreadLocal.withInitial(
+      () -> new byte[OUTPUT_BUFFER_SIZE]);
+
+  /**
+   * @param executor     the executor inflating files and BGZF batches, must not be used for
+   *                     anything waiting on these tasks
+   * @param batchBuffers the buffers for batches of BGZF blocks
+   * @since 1.0.0
+   */
+  GzipValidator(ExecutorService executor, BufferPool batchBuffers) {
+    this.executor = executor;
+    this.batchBuffers = batchBuffers;
+  }
+
+  /**
+   * Submits the validation of a gzip file. Plain gzip files are validated by a single task, BGZF
+   * files by one task per batch of blocks. The blocks are read by the calling thread.
+   *
+   * @param file    the gzip file
+   * @param results the list the validation tasks are added to. A task fails with a
+   *                {@link GzipFormatException}, if the file is invalid
+   * @throws GzipFormatException if the structure of the file is invalid
+   * @throws IOException         if the file cannot be read
+   * @since 1.0.0
+   */
+  void submit(Path file, List<Future<?>> results) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var header = ByteBuffer.allocate(FIXED_HEADER_SIZE + 6);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // read the first header
+      }
+      if (bgzfBlockSize(header.array(), 0, header.position()) < 0) {
+        results.add(executor.submit(() -> {
+          validateMembers(file);
+          return null;
+        }));
+        return;
+      }
+      submitBgzf(channel, results);
+    }
+  }
+
+  private void validateMembers(Path file) throws IOException {
+    var inflater = inflaters.get();
+    var output = outputBuffers.get();
+    var crc = new CRC32();
+    try (var input = new Input(FileChannel.open(file, StandardOpenOption.READ),
+        inputBuffers.get())) {
+      for (int member = 1; ; member++) {
+        int first = input.read();
+        if (first == -1 && member > 1) {
+          return;
+        }
+        if (first == 0 && member > 1 && input.skipZeros()) {
+          // padding with zeros after the last member
+          return;
+        }
+        if (first != GZIP_MAGIC_1 || input.read() != GZIP_MAGIC_2) {
+          throw new GzipFormatException(member == 1 ? "not in gzip format"
+              : "unexpected data after gzip member %d".formatted(member - 1));
+        }
+        readHeader(input, member);
+        inflater.reset();
+        crc.reset();
+        long size = 0;
+        while (!inflater.finished()) {
+          if (inflater.needsInput()) {
+            if (!input.fill()) {
+              throw new GzipFormatException(
+                  "unexpected end of file in gzip member %d, the file is truncated".formatted(
+                      member));
+            }
+            inflater.setInput(input.buffer, input.position, input.limit - input.position);
+            input.position = input.limit;
+          }
+          int inflated = inflate(inflater, output, member);
+          crc.update(output, 0, inflated);
+          size += inflated;
+        }
+        input.position -= inflater.getRemaining();
+        long expectedCrc = input.readIntLE(member);
+        long expectedSize = input.readIntLE(member);
+        verifyTrailer(crc.getValue(), size, expectedCrc, expectedSize,
+            "gzip member %d".formatted(member));
+      }
+    }
+  }
+
+  private static int inflate(Inflater inflater, byte[] output, int member)
+      throws GzipFormatException {
+    try {
+      int inflated = inflater.inflate(output);
+      if (inflated == 0 && !inflater.finished() && !inflater.needsInput()) {
+        throw new GzipFormatException("corrupt deflate data in gzip member %d".formatted(member));
+      }
+      return inflated;
+    } catch (DataFormatException e) {
+      throw new GzipFormatException(
+          "corrupt deflate data in gzip member %d: %s".formatted(member, e.getMessage()));
+    }
+  }
+
+  private static void verifyTrailer(long crc, long size, long expectedCrc, long expectedSize,
+      String location) throws GzipFormatException {
+    if (crc != expectedCrc) {
+      throw new GzipFormatException(
+          "CRC32 mismatch in %s (%08x instead of %08x)".formatted(location, crc, expectedCrc));
+    }
+    if ((size & 0xffffffffL) != expectedSize) {
+      throw new GzipFormatException(
+          "size mismatch in %s (%d instead of %d)".formatted(location, size & 0xffffffffL,
+              expectedSize));
+    }
+  }
+
+  private static void readHeader(Input input, int member) throws IOException {
+    if (input.readByte(member) != DEFLATE) {
+      throw new GzipFormatException("unknown compression method in gzip member %d".formatted(
+          member));
+    }
+    int flags = input.readByte(member);
+    if ((flags & FLAGS_RESERVED) != 0) {
+      throw new GzipFormatException("reserved flags set in gzip member %d".formatted(member));
+    }
+    // modification time, extra flags and operating system
+    input.skip(6, member);
+    if ((flags & FLAG_EXTRA) != 0) {
+      input.skip(input.readByte(member) | input.readByte(member) << 8, member);
+    }
+    if ((flags & FLAG_NAME) != 0) {
+      input.skipZeroTerminated(member);
+    }
+    if ((flags & FLAG_COMMENT) != 0) {
+      input.skipZeroTerminated(member);
+    }
+    if ((flags & FLAG_HEADER_CRC) != 0) {
+      input.skip(2, member);
+    }
+  }
+
+  /**
+   * Reads the size of a BGZF block from its header.
+   *
+   * @return the size of the block including header and trailer, {@link #NEED_MORE_DATA} if the
+   * header is incomplete, {@link #NOT_BGZF} if the data is no BGZF block
+   */
+  private static int bgzfBlockSize(byte[] buffer, int offset, int available) {
+    if (available < FIXED_HEADER_SIZE) {
+      return NEED_MORE_DATA;
+    }
+    if ((buffer[offset] & 0xff) != GZIP_MAGIC_1 || (buffer[offset + 1] & 0xff) != GZIP_MAGIC_2
+        || buffer[offset + 2] != DEFLATE || buffer[offset + 3] != FLAG_EXTRA) {
+      return NOT_BGZF;
+    }
+    int extraLength = unsignedShort(buffer, offset + 10);
+    if (available < FIXED_HEADER_SIZE + extraLength) {
+      return NEED_MORE_DATA;
+    }
+    int subfield = offset + FIXED_HEADER_SIZE;
+    int end = subfield + extraLength;
+    while (subfield + 4 <= end) {
+      int length = unsignedShort(buffer, subfield + 2);
+      if (buffer[subfield] == 'B' && buffer[subfield + 1] == 'C' && length == 2
+          && subfield + 6 <= end) {
+        return unsignedShort(buffer, subfield + 4) + 1;
+      }
+      subfield += 4 + length;
+    }
+    return NOT_BGZF;
+  }
+
+  private static int unsignedShort(byte[] buffer, int offset) {
+    return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8;
+  }
+
+  private static long unsignedInt(byte[] buffer, int offset) {
+    return (unsignedShort(buffer, offset) | (long) unsignedShort(buffer, offset + 2) << 16);
+  }
+
+  private void submitBgzf(FileChannel channel, List<Future<?>> results) throws IOException {
+    long fileSize = channel.size();
+    long offset = 0;
+    boolean endOfFileBlock = false;
+    while (offset < fileSize) {
+      byte[] batch = acquireBatchBuffer();
+      List<int[]> blocks = new ArrayList<>();
+      int read;
+      try {
+        read = readFully(channel, batch, offset);
+        int position = 0;
+        while (true) {
+          int blockSize = bgzfBlockSize(batch, position, read - position);
+          if (blockSize == NOT_BGZF) {
+            throw new GzipFormatException(
+                "invalid BGZF block at offset %d".formatted(offset + position));
+          }
+          if (blockSize == NEED_MORE_DATA || position + blockSize > read) {
+            break;
+          }
+          blocks.add(new int[]{position, blockSize});
+          position += blockSize;
+        }
+        if (blocks.isEmpty()) {
+          throw new GzipFormatException(
+              "incomplete BGZF block at offset %d, the file is truncated".formatted(offset));
+        }
+      } catch (IOException | RuntimeException e) {
+        batchBuffers.release(batch);
+        throw e;
+      }
+      int[] lastBlock = blocks.get(blocks.size() - 1);
+      endOfFileBlock = unsignedInt(batch, lastBlock[0] + lastBlock[1] - 4) == 0;
+      var validation = new BatchValidation(batch, blocks, offset);
+      executor.execute(validation);
+      results.add(validation);
+      offset += lastBlock[0] + lastBlock[1];
+    }
+    if (!endOfFileBlock) {
+      throw new GzipFormatException(
+          "BGZF end-of-file block is missing, the file is truncated");
+    }
+  }
+
+  private byte[] acquireBatchBuffer() throws InterruptedIOException {
+    try {
+      return batchBuffers.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a buffer");
+    }
+  }
+
+  private static int readFully(FileChannel channel, byte[] buffer, long offset)
+      throws IOException {
+    var wrapped = ByteBuffer.wrap(buffer);
+    while (wrapped.hasRemaining()) {
+      if (channel.read(wrapped, offset + wrapped.position()) < 0) {
+        break;
+      }
+    }
+    return wrapped.position();
+  }
+
+  private void validateBgzfBlock(byte[] batch, int start, int size, long batchOffset)
+      throws GzipFormatException {
+    long blockOffset = batchOffset + start;
+    int headerSize = FIXED_HEADER_SIZE + unsignedShort(batch, start + 10);
+    int dataSize = size - headerSize - TRAILER_SIZE;
+    if (dataSize < 0) {
+      throw new GzipFormatException("invalid BGZF block at offset %d".formatted(blockOffset));
+    }
+    var inflater = inflaters.get();
+    var output = outputBuffers.get();
+    var crc = new CRC32();
+    inflater.reset();
+    inflater.setInput(batch, start + headerSize, dataSize);
+    long inflatedSize = 0;
+    try {
+      while (!inflater.finished()) {
+        int inflated = inflater.inflate(output);
+        if (inflated == 0 && !inflater.finished()
+            && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new GzipFormatException(
+              "incomplete deflate data in BGZF block at offset %d".formatted(blockOffset));
+        }
+        crc.update(output, 0, inflated);
+        inflatedSize += inflated;
+      }
+    } catch (DataFormatException e) {
+      throw new GzipFormatException(
+          "corrupt deflate data in BGZF block at offset %d: %s".formatted(blockOffset,
+              e.getMessage()));
+    }
+    if (inflater.getRemaining() != 0) {
+      throw new GzipFormatException(
+          "unexpected data in BGZF block at offset %d".formatted(blockOffset));
+    }
+    int trailer = start + size - TRAILER_SIZE;
+    verifyTrailer(crc.getValue(), inflatedSize, unsignedInt(batch, trailer),
+        unsignedInt(batch, trailer + 4), "BGZF block at offset %d".formatted(blockOffset));
+  }
+
+  /**
+   * Thrown if a file is not a valid gzip file.
+   *
+   * @since 1.0.0
+   */
+  static class GzipFormatException extends IOException {
+
+    GzipFormatException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * The validation of a batch of BGZF blocks, which returns its buffer to the pool exactly once:
+   * when it has run, or when it has been cancelled before it started.
+   */
+  private class BatchValidation extends FutureTask<Void> {
+
+    private final byte[] batch;
+    private final AtomicBoolean claimed;
+
+    private BatchValidation(byte[] batch, List<int[]> blocks, long batchOffset) {
+      this(batch, blocks, batchOffset, new AtomicBoolean());
+    }
+
+    private BatchValidation(byte[] batch, List<int[]> blocks, long batchOffset,
+        AtomicBoolean claimed) {
+      super(() -> {
+        if (!claimed.compareAndSet(false, true)) {
+          // cancelled right before it started, the buffer has been released already
+          return null;
+        }
+        try {
+          for (int[] block : blocks) {
+            validateBgzfBlock(batch, block[0], block[1], batchOffset);
+          }
+        } finally {
+          batchBuffers.release(batch);
+        }
+        return null;
+      });
+      this.batch = batch;
+      this.claimed = claimed;
+    }
+
+    @Override
+    protected void done() {
+      // a validation cancelled while running still uses the buffer and releases it itself
+      if (isCancelled() && claimed.compareAndSet(false, true)) {
+        batchBuffers.release(batch);
+      }
+    }
+  }
+
+  /**
+   * Buffered sequential reading of a file channel.
+   */
+  private static class Input implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final byte[] buffer;
+    private int position = 0;
+    private int limit = 0;
+
+    private Input(FileChannel channel, byte[] buffer) {
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+    /**
+     * Reads more data, keeping the unread data.
+     *
+     * @return <code>true</code>, if unread data is available, <code>false</code> at the end of
+     * the file
+     */
+    private boolean fill() throws IOException {
+      if (position > 0) {
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+      }
+      int read = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit));
+      if (read > 0) {
+        limit += read;
+      }
+      return position < limit;
+    }
+
+    private int read() throws IOException {
+      if (position >= limit && !fill()) {
+        return -1;
+      }
+      return buffer[position++] & 0xff;
+    }
+
+    private int readByte(int member) throws IOException {
+      int value = read();
+      if (value == -1) {
+        throw new GzipFormatException(
+            "unexpected end of file in gzip member %d, the file is truncated".formatted(member));
+      }
+      return value;
+    }
+
+    private long readIntLE(int member) throws IOException {
+      return readByte(member) | (long) readByte(member) << 8 | (long) readByte(member) << 16
+          | (long) readByte(member) << 24;
+    }
+
+    private void skip(int bytes, int member) throws IOException {
+      for (int i = 0; i < bytes; i++) {
+        readByte(member);
+      }
+    }
+
+    private void skipZeroTerminated(int member) throws IOException {
+      while (readByte(member) != 0) {
+        // skip the zero-terminated string
+      }
+    }
+
+    /**
+     * Skips the rest of the file, if it consists of zeros only.
+     *
+     * @return <code>true</code>, if only zeros were left, else <code>false</code>
+     */
+    private boolean skipZeros() throws IOException {
+      int value;
+      while ((value = read()) == 0) {
+        // skip padding
+      }
+      return value == -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -2,7 +2,11 @@ package life.qbic.data.processing.processing;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
 import life.qbic.data.processing.AccessRightsEvaluation;
+import life.qbic.data.processing.Lane;
+import life.qbic.data.processing.ProvenanceCodec;
 
 /**
  * <b>Processing Configuration</b>
@@ -10,6 +14,11 @@ import life.qbic.data.processing.AccessRightsEvaluation;
  * <p>Holds processing worker configuration settings, such as the working directory of the process
  * and the next target directory the dataset will be moved to, after a successful task
  * performance.</p>
+ * <p>
+ * The processing consists of one or more {@link ProcessingStep}s, that are performed one after
+ * another. The first step works in the working directory, every further step in a sub-directory of
+ * the working directory named after the step. The last step moves the tasks to the target
+ * directory.
  *
  * @since 1.0.0
  */
@@ -19,13 +28,45 @@ public class ProcessingConfiguration {
 
   private final Path targetDirectory;
 
-  public ProcessingConfiguration(Path workingDirectory, Path targetDirectory) throws IOException {
+  private final List<String> steps;
+
+  private final Path usersErrorDirectory;
+
+  private final ProvenanceCodec provenanceCodec;
+
+  /**
+   * @param workingDirectory    the working directory of the first processing step
+   * @param targetDirectory     the directory the last processing step moves tasks to
+   * @param steps               the names of the processing steps, in the order of execution
+   * @param usersErrorDirectory the directory in the user's directory for tasks with invalid
+   *                            datasets
+   * @param provenanceCodec     the codec to write provenance files with
+   * @throws IOException if a directory is not accessible
+   * @since 1.0.0
+   */
+  public ProcessingConfiguration(Path workingDirectory, Path targetDirectory, List<String> steps,
+      Path usersErrorDirectory, ProvenanceCodec provenanceCodec) throws IOException {
     this.workingDirectory = workingDirectory;
     AccessRightsEvaluation.evaluateExistenceAndDirectory(this.workingDirectory);
     AccessRightsEvaluation.evaluateWriteAndExecutablePermission(this.workingDirectory);
     this.targetDirectory = targetDirectory;
     AccessRightsEvaluation.evaluateExistenceAndDirectory(this.targetDirectory);
     AccessRightsEvaluation.evaluateWriteAndExecutablePermission(this.workingDirectory);
+    if (steps.isEmpty()) {
+      throw new IllegalArgumentException("At least one processing step is required");
+    }
+    if (new HashSet<>(steps).size() != steps.size()) {
+      throw new IllegalArgumentException("Processing steps must be unique: " + steps);
+    }
+    for (String step : steps) {
+      if (Lane.isLaneDirectory(step) || step.equals(ProcessingRequest.INTERVENTION_DIRECTORY)) {
+        throw new IllegalArgumentException("Reserved name for processing step: " + step);
+      }
+      ProcessingSteps.create(step);
+    }
+    this.steps = List.copyOf(steps);
+    this.usersErrorDirectory = usersErrorDirectory;
+    this.provenanceCodec = provenanceCodec;
   }
 
   public Path getWorkingDirectory() {
@@ -35,4 +76,62 @@ public class ProcessingConfiguration {
   public Path getTargetDirectory() {
     return targetDirectory;
   }
+
+  /**
+   * The directory in the user's directory, that tasks with invalid datasets are moved back to.
+   *
+   * @return the users error directory, relative to the user's directory
+   */
+  public Path usersErrorDirectory() {
+    return usersErrorDirectory;
+  }
+
+  /**
+   * The codec the processing steps write provenance files with.
+   *
+   * @return the provenance codec
+   */
+  public ProvenanceCodec provenanceCodec() {
+    return provenanceCodec;
+  }
+
+  /**
+   * The names of the processing steps, in the order of execution.
+   *
+   * @return the processing steps
+   */
+  public List<String> steps() {
+    return steps;
+  }
+
+  /**
+   * The working directory of a processing step.
+   *
+   * @param step the index of the processing step
+   * @return the working directory of the step
+   */
+  public Path stepWorkingDirectory(int step) {
+    return step == 0 ? workingDirectory : workingDirectory.resolve(steps.get(step));
+  }
+
+  /**
+   * The directory a processing step moves its finished tasks to.
+   *
+   * @param step the index of the processing step
+   * @return the working directory of the next step, or the target directory for the last step
+   */
+  public Path stepTargetDirectory(int step) {
+    return step == steps.size() - 1 ? targetDirectory : stepWorkingDirectory(step + 1);
+  }
+
+  /**
+   * Checks if a directory in the working directory is the working directory of a subsequent
+   * processing step.
+   *
+   * @param name the name of the directory
+   * @return <code>true</code>, if the directory belongs to a processing step
+   */
+  public boolean isStepDirectory(String name) {
+    return steps.indexOf(name) > 0;
+  }
 }
@@ -2,21 +2,26 @@ package life.qbic.data.processing.processing;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeUnit;
+import life.qbic.data.processing.ErrorSummary;
+import life.qbic.data.processing.Lane;
 import life.qbic.data.processing.Provenance;
 import life.qbic.data.processing.Provenance.ProvenanceException;
+import life.qbic.data.processing.ProvenanceHistory;
+import life.qbic.data.processing.TaskChannel;
+import life.qbic.data.processing.processing.ProcessingStep.InvalidDatasetException;
+import life.qbic.data.processing.processing.ProcessingStep.ProcessingException;
+import life.qbic.data.processing.stage.Stage;
+import life.qbic.data.processing.transfer.TransferEngine;
 import org.apache.logging.log4j.Logger;
 
 /**
@@ -30,75 +35,87 @@ import org.apache.logging.log4j.Logger;
  *   <li>the provenance file can be parsed and the content passes the sanity check</li>
  *   <li>package a dataset properly, if it is a file</li>
  * </ul>
+ * <p>
+ * Afterwards, the {@link ProcessingStep} of the stage is performed. The processing can consist of
+ * several steps (see {@link ProcessingConfiguration}), every step is an own {@link Stage}.
  *
  * @since 1.0.0
  */
-public class ProcessingRequest extends Thread {
+public class ProcessingRequest implements Stage<Path> {
 
+  public static final String INTERVENTION_DIRECTORY = "interventions";
   private static final Logger LOG = getLogger(ProcessingRequest.class);
-  private static final String THREAD_NAME = "Processing-%s";
-  private static final Set<String> ACTIVE_TASKS = new HashSet<>();
-  private static final ReentrantLock LOCK = new ReentrantLock();
-  private static final String INTERVENTION_DIRECTORY = "interventions";
-  private static int threadNumber = 1;
+  private static final String STAGE_NAME = "Processing-%s-%s";
+  private final String name;
+  private final ProcessingConfiguration processingConfiguration;
+  private final ProcessingStep processingStep;
   private final Path workingDirectory;
   private final Path targetDirectory;
-  private final AtomicBoolean active = new AtomicBoolean(false);
-  private final AtomicBoolean terminated = new AtomicBoolean(false);
   private final Path interventionDirectory;
+  private final TaskChannel taskChannel;
+  private final TransferEngine transferEngine;
 
-  public ProcessingRequest(ProcessingConfiguration processingConfiguration) {
-    this.setName(THREAD_NAME.formatted(nextThreadNumber()));
-    this.workingDirectory = processingConfiguration.getWorkingDirectory();
-    this.targetDirectory = processingConfiguration.getTargetDirectory();
-    if (!workingDirectory.resolve(INTERVENTION_DIRECTORY).toFile().mkdir()
-        && !workingDirectory.resolve(
+  /**
+   * @param processingConfiguration the processing configuration
+   * @param step                    the index of the processing step to perform
+   * @param lane                    the lane of the tasks to process
+   * @param transferEngine          the transfer engine to move tasks to the next process step
+   * @since 1.0.0
+   */
+  public ProcessingRequest(ProcessingConfiguration processingConfiguration, int step, Lane lane,
+      TransferEngine transferEngine) {
+    this.transferEngine = transferEngine;
+    var stepName = processingConfiguration.steps().get(step);
+    this.name = STAGE_NAME.formatted(stepName, lane);
+    this.processingConfiguration = processingConfiguration;
+    this.processingStep = ProcessingSteps.create(stepName);
+    var stageDirectory = processingConfiguration.getWorkingDirectory();
+    this.workingDirectory = lane.resolve(processingConfiguration.stepWorkingDirectory(step));
+    this.targetDirectory = lane.resolve(processingConfiguration.stepTargetDirectory(step));
+    if (!stageDirectory.resolve(INTERVENTION_DIRECTORY).toFile().mkdir()
+        && !stageDirectory.resolve(
         INTERVENTION_DIRECTORY).toFile().exists()) {
       throw new RuntimeException(
-          "Could not create intervention directory for processing request at " + workingDirectory);
+          "Could not create intervention directory for processing request at " + stageDirectory);
     }
-    this.interventionDirectory = workingDirectory.resolve(INTERVENTION_DIRECTORY);
+    for (Path directory : List.of(workingDirectory, targetDirectory)) {
+      if (!directory.toFile().mkdirs() && !directory.toFile().exists()) {
+        throw new RuntimeException(
+            "Could not create lane directory for processing request at " + directory);
+      }
+    }
+    this.interventionDirectory = stageDirectory.resolve(INTERVENTION_DIRECTORY);
+    this.taskChannel = TaskChannel.forDirectory(workingDirectory);
   }
 
-  private static int nextThreadNumber() {
-    return threadNumber++;
+  @Override
+  public String name() {
+    return name;
   }
 
-  private boolean push(String taskId) {
-    LOCK.lock();
-    boolean notActiveYet;
-    try {
-      notActiveYet = ACTIVE_TASKS.add(taskId);
-    } finally {
-      LOCK.unlock();
+  @Override
+  public Optional<Path> next(long timeout, TimeUnit unit) {
+    if (taskChannel.claimReconciliation()) {
+      taskChannel.reconcile(tasks().stream().map(File::toPath).toList());
     }
-    return notActiveYet;
+    return taskChannel.poll(timeout, unit);
   }
 
   @Override
-  public void run() {
-    while (true) {
-      active.set(true);
-      for (File taskDir : tasks()) {
-        if (push(taskDir.getAbsolutePath()) && taskDir.exists()) {
-          LOG.info("Registering task " + taskDir.getAbsolutePath());
-          processFile(taskDir);
-          clearTask(taskDir);
-        } else {
-          clearTask(taskDir);
-        }
-      }
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException e) {
-        // This thread will only handle interrupted signals via its explicit
-        // API method call
-      }
-      active.set(false);
-      if (terminated.get()) {
-        LOG.warn("Thread {} terminated", Thread.currentThread().getName());
-        break;
+  public long backlog() {
+    return taskChannel.size();
+  }
+
+  @Override
+  public void process(Path task) {
+    var taskDir = task.toFile();
+    try {
+      if (taskDir.exists()) {
+        LOG.info("Registering task " + taskDir.getAbsolutePath());
+        processFile(taskDir);
       }
+    } finally {
+      taskChannel.complete(task);
     }
   }
 
@@ -134,24 +151,42 @@ public class ProcessingRequest extends Thread {
       return;
     }
 
-    Provenance finalProvenance = provenance;
-    taskDirContent.stream().filter(file -> !file.getName().equals(Provenance.FILE_NAME)).findFirst()
-        .ifPresent(file -> {
-          finalProvenance.addToHistory(taskDir.getAbsolutePath());
-          try {
-            writeProvenance(provenanceFileSearch.get(), finalProvenance);
-          } catch (IOException e) {
-            LOG.error("Could not write provenance file {}", file.getAbsolutePath(), e);
-            moveToSystemIntervention(taskDir, "Writing provenance file failed");
-          }
-          try {
-            moveToTargetFolder(taskDir);
-          } catch (IOException e) {
-            LOG.error("Could not move task {} to target location", file.getAbsolutePath(),
-                e);
-            moveToSystemIntervention(taskDir, "Writing task directory failed");
-          }
-        });
+    if (taskDirContent.stream().allMatch(file -> DatasetFiles.isTaskMetadata(file.getName()))) {
+      return;
+    }
+    // the step is called once for the whole dataset, it lists the dataset files itself
+    try {
+      processingStep.process(taskDir.toPath(), provenance);
+    } catch (InvalidDatasetException e) {
+      LOG.error("Invalid dataset in task {} at stage {}: {}", taskDir.getAbsolutePath(), name,
+          e.getMessage());
+      var errorMessage = ErrorSummary.createSimple(taskDir.getName(),
+          String.join(", ", provenance.datasetFiles), e.reason(), e.getMessage());
+      moveBackToOrigin(taskDir, provenance, errorMessage.toString());
+      return;
+    } catch (ProcessingException e) {
+      LOG.error("Processing step of stage {} failed for task {}", name, taskDir.getAbsolutePath(),
+          e);
+      moveToSystemIntervention(taskDir, e.getMessage());
+      return;
+    }
+    try {
+      // the provenance is written again only, if the step has added a section
+      if (provenance.isExtended()) {
+        writeProvenance(provenanceFileSearch.get(), provenance);
+      }
+      ProvenanceHistory.append(taskDir.toPath(), name);
+    } catch (IOException e) {
+      LOG.error("Could not write provenance file of task {}", taskDir.getAbsolutePath(), e);
+      moveToSystemIntervention(taskDir, "Writing provenance file failed");
+      return;
+    }
+    try {
+      moveToTargetFolder(taskDir);
+    } catch (IOException e) {
+      LOG.error("Could not move task {} to target location", taskDir.getAbsolutePath(), e);
+      moveToSystemIntervention(taskDir, "Writing task directory failed");
+    }
   }
 
   private Optional<File> findProvenanceFile(List<File> taskDirContent) {
@@ -163,7 +198,6 @@ public class ProcessingRequest extends Thread {
   private boolean checkForEmpty(File taskDir, List<File> taskDirContent) {
     if (taskDirContent.isEmpty()) {
       LOG.error("Task {} has no files", taskDir.getAbsolutePath());
-      clearTask(taskDir);
       taskDir.delete();
       LOG.info("Empty task {} deleted", taskDir.getAbsolutePath());
       return true;
@@ -173,12 +207,13 @@ public class ProcessingRequest extends Thread {
 
   private void moveToTargetFolder(File taskDir) throws IOException {
     LOG.info("Moving task {} to target folder", taskDir.getAbsolutePath());
-    Files.move(taskDir.toPath(), targetDirectory.resolve(taskDir.getName()));
+    var target = targetDirectory.resolve(taskDir.getName());
+    transferEngine.move(taskDir.toPath(), target);
+    TaskChannel.forDirectory(targetDirectory).publish(target);
   }
 
   private void writeProvenance(File provenanceFile, Provenance provenance) throws IOException {
-    var mapper = new ObjectMapper();
-    mapper.writerWithDefaultPrettyPrinter().writeValue(provenanceFile, provenance);
+    processingConfiguration.provenanceCodec().write(provenance, provenanceFile.toPath());
   }
 
   private void moveToSystemIntervention(File taskDir, String reason) {
@@ -192,31 +227,29 @@ public class ProcessingRequest extends Thread {
     }
   }
 
-  private void clearTask(File taskDir) {
-    LOCK.lock();
+  private void moveBackToOrigin(File taskDir, Provenance provenance, String reason) {
+    var usersErrorDirectory = Paths.get(provenance.userWorkDirectoryPath)
+        .resolve(processingConfiguration.usersErrorDirectory());
+    LOG.info("Moving back to original user directory: {}", usersErrorDirectory);
     try {
-      ACTIVE_TASKS.remove(taskDir.getAbsolutePath());
-    } finally {
-      LOCK.unlock();
+      var errorFile = taskDir.toPath().resolve("error.txt").toFile();
+      errorFile.createNewFile();
+      Files.writeString(errorFile.toPath(), reason);
+      usersErrorDirectory.toFile().mkdir();
+      transferEngine.move(taskDir.toPath(), usersErrorDirectory.resolve(taskDir.getName()));
+    } catch (IOException e) {
+      LOG.error("Cannot move task to user intervention: %s".formatted(usersErrorDirectory), e);
+      moveToSystemIntervention(taskDir, e.getMessage());
     }
   }
 
   private List<File> tasks() {
     return Arrays.stream(workingDirectory.toFile().listFiles()).filter(File::isDirectory)
-        .filter(file -> !file.getName().equals(INTERVENTION_DIRECTORY)).toList();
+        // transfers in progress are hidden until they are complete
+        .filter(file -> !file.isHidden())
+        .filter(file -> !file.getName().equals(INTERVENTION_DIRECTORY))
+        .filter(file -> !Lane.isLaneDirectory(file.getName()))
+        .filter(file -> !processingConfiguration.isStepDirectory(file.getName())).toList();
   }
 
-  public void interrupt() {
-    terminated.set(true);
-    while (active.get()) {
-      LOG.debug("Thread is still active...");
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException e) {
-        // we don't want to interrupt the worker thread before its task is done, since it might
-        // render the application in a non-recoverable state
-      }
-    }
-    LOG.debug("Task has been finished");
-  }
 }
@@ -0,0 +1,74 @@
+package life.qbic.data.processing.processing;
+
+import java.nio.file.Path;
+import life.qbic.data.processing.Provenance;
+
+/**
+ * <b>Processing Step</b>
+ * <p>
+ * The actual work of a processing step, e.g. checksum validation. The {@link ProcessingRequest}
+ * running the step takes care of the simple checks every task has to pass, of the provenance
+ * history and of moving the task to the next process step.
+ * <p>
+ * Processing steps are configured by name in the order of execution, see
+ * {@link ProcessingSteps}. A single instance serves all workers of a step, so implementations must
+ * be thread-safe.
+ *
+ * @since 1.0.0
+ */
+public interface ProcessingStep {
+
+  /**
+   * Processes the dataset of a task.
+   * <p>
+   * The step is called once per task. The dataset consists of all files of the task directory,
+   * except the task metadata like the provenance file (see {@link DatasetFiles}).
+   * <p>
+   * Implementations can add information to the provenance, which is persisted by the
+   * {@link ProcessingRequest} afterwards.
+   *
+   * @param taskDirectory the task directory, containing the dataset and the provenance file
+   * @param provenance    the provenance of the task
+   * @throws ProcessingException if the task cannot be processed and requires a manual
+   *                             intervention, or an {@link InvalidDatasetException} if the user
+   *                             has to fix the dataset
+   * @since 1.0.0
+   */
+  void process(Path taskDirectory, Provenance provenance) throws ProcessingException;
+
+  class ProcessingException extends RuntimeException {
+
+    public ProcessingException(String message) {
+      super(message);
+    }
+
+    public ProcessingException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+
+  /**
+   * Thrown if the dataset itself is invalid, e.g. a corrupt file. The task is moved back to the
+   * error directory of the user instead of the system intervention directory.
+   *
+   * @since 1.0.0
+   */
+  class InvalidDatasetException extends ProcessingException {
+
+    private final String reason;
+
+    /**
+     * @param reason      a short reason for the user, e.g. "Corrupt gzip file"
+     * @param description a description of the problem and how to fix it
+     * @since 1.0.0
+     */
+    public InvalidDatasetException(String reason, String description) {
+      super(description);
+      this.reason = reason;
+    }
+
+    public String reason() {
+      return reason;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package life.qbic.data.processing.processing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * <b>Processing Steps</b>
+ * <p>
+ * The processing steps available for the <code>processing.steps</code> setting.
+ *
+ * <ul>
+ *   <li><code>checks</code>: only the simple checks every processing step performs</li>
+ *   <li><code>checksums</code>: computes the checksums of every file and verifies checksum files
+ *   provided by the user, see {@link ChecksumStep}</li>
+ *   <li><code>gzip</code>: verifies the integrity of gzip and BGZF compressed files, see
+ *   {@link GzipStep}</li>
+ *   <li><code>fastq-stats</code>: records read and base counts, read lengths and the quality
+ *   encoding of FASTQ files in the provenance, see {@link FastqStatisticsStep}</li>
+ * </ul>
+ *
+ * @since 1.0.0
+ */
+public final class ProcessingSteps {
+
+  /**
+   * The name of the processing step that is used, if no steps are configured.
+   */
+  public static final String DEFAULT_STEP = "checks";
+  private static final Map<String, Supplier<ProcessingStep>> STEPS = new LinkedHashMap<>();
+
+  static {
+    STEPS.put(DEFAULT_STEP, () -> (taskDirectory, provenance) -> {
+    });
+    STEPS.put("checksums", ChecksumStep::new);
+    STEPS.put("gzip", GzipStep::new);
+    STEPS.put("fastq-stats", FastqStatisticsStep::new);
+  }
+
+  private ProcessingSteps() {
+  }
+
+  /**
+   * Creates the processing step with the given name.
+   *
+   * @param name the name of the processing step
+   * @return a new instance of the processing step
+   * @throws IllegalArgumentException if there is no processing step with the given name
+   * @since 1.0.0
+   */
+  public static ProcessingStep create(String name) {
+    var step = STEPS.get(name);
+    if (step == null) {
+      throw new IllegalArgumentException(
+          "Unknown processing step '%s', available steps: %s".formatted(name, names()));
+    }
+    return step.get();
+  }
+
+  public static Set<String> names() {
+    return Collections.unmodifiableSet(STEPS.keySet());
+  }
+}
@@ -0,0 +1,80 @@
+package life.qbic.data.processing.registration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * <b>Metadata Parser</b>
+ * <p>
+ * Reads the metadata file of a registration request line by line. Every non-blank row holds the
+ * measurement ID and the file name, separated by a tab, further columns are ignored.
+ * <p>
+ * Rows are split by searching the tabs directly, without regular expressions, and the file is
+ * never held in memory as a whole, so metadata files with hundreds of thousands of rows are parsed
+ * in a single pass. All malformed rows are reported with their line numbers, so the user can fix
+ * them at once.
+ *
+ * @since 1.0.0
+ */
+final class MetadataParser {
+
+  /**
+   * The maximal number of malformed rows listed in the error message.
+   */
+  static final int MAX_REPORTED_ROWS = 10;
+
+  private MetadataParser() {
+  }
+
+  /**
+   * Parses a metadata file.
+   *
+   * @param metadataFile the metadata file of a registration request
+   * @return the metadata entries in the order of the file
+   * @throws IOException         if the file cannot be read
+   * @throws ValidationException with {@link ErrorCode#INCOMPLETE_METADATA}, if there are malformed
+   *                             rows
+   * @since 1.0.0
+   */
+  static List<RegistrationMetadata> parse(Path metadataFile) throws IOException {
+    List<RegistrationMetadata> entries = new ArrayList<>();
+    List<String> malformedRows = new ArrayList<>();
+    long malformed = 0;
+    try (var reader = Files.newBufferedReader(metadataFile)) {
+      long lineNumber = 0;
+      String row;
+      while ((row = reader.readLine()) != null) {
+        lineNumber++;
+        if (row.isBlank()) {
+          continue;
+        }
+        int firstTab = row.indexOf('\t');
+        int secondTab = firstTab < 0 ? -1 : row.indexOf('\t', firstTab + 1);
+        int fileEnd = secondTab < 0 ? row.length() : secondTab;
+        String problem = firstTab < 0 ? "no tab between measurement ID and file"
+            : firstTab == 0 ? "empty measurement ID"
+                : fileEnd == firstTab + 1 ? "empty file name" : null;
+        if (problem != null) {
+          if (malformed++ < MAX_REPORTED_ROWS) {
+            malformedRows.add("line %d (%s)".formatted(lineNumber, problem));
+          }
+          continue;
+        }
+        entries.add(new RegistrationMetadata(row.substring(0, firstTab),
+            row.substring(firstTab + 1, fileEnd)));
+      }
+    }
+    if (malformed > 0) {
+      var message = malformedRows.stream().collect(Collectors.joining(", ",
+          "Cannot parse metadata entries: ",
+          malformed > MAX_REPORTED_ROWS ? " and %d more".formatted(malformed - MAX_REPORTED_ROWS)
+              : ""));
+      throw new ValidationException(message, ErrorCode.INCOMPLETE_METADATA);
+    }
+    return entries;
+  }
+}
@@ -2,26 +2,42 @@ package life.qbic.data.processing.registration;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import life.qbic.data.processing.ConcurrentRegistrationQueue;
 import life.qbic.data.processing.GlobalConfig;
+import life.qbic.data.processing.Lane;
+import life.qbic.data.processing.RegistrationQueue;
 import life.qbic.data.processing.Provenance;
+import life.qbic.data.processing.ProvenanceCodec;
+import life.qbic.data.processing.TaskChannel;
+import life.qbic.data.processing.TaskJournal;
+import life.qbic.data.processing.TaskJournal.Step;
+import life.qbic.data.processing.TaskJournal.Task;
+import life.qbic.data.processing.stage.Stage;
+import life.qbic.data.processing.stage.ThreadMode;
+import life.qbic.data.processing.transfer.TransferEngine;
 import org.apache.logging.log4j.Logger;
 import org.springframework.lang.NonNull;
 
@@ -31,8 +47,12 @@ import org.springframework.lang.NonNull;
  * This must be the first process of handling a new incoming dataset. It will consume a processing
  * request item, that is then used to prepare the dataset for the following downstream processes.
  * <p>
- * The process polls the {@link life.qbic.data.processing.ConcurrentRegistrationQueue} shared with
- * the scanning thread.
+ * The process is a {@link Stage}, its workers take batches of registration requests from the
+ * {@link life.qbic.data.processing.RegistrationQueue} shared with the scanning thread.
+ * <p>
+ * The steps of every request and of every measurement task are recorded in the
+ * {@link TaskJournal}, so {@link #recover()} can resume or roll back the tasks interrupted by a
+ * crash.
  *
  * <p>
  * The process will do the following tasks:
@@ -44,32 +64,61 @@ import org.springframework.lang.NonNull;
  *
  * @since 1.0.0
  */
-public class ProcessRegistrationRequest extends Thread {
+public class ProcessRegistrationRequest implements Stage<List<RegistrationRequest>> {
 
   private static final Logger log = getLogger(ProcessRegistrationRequest.class);
-  private static final String threadName = "Registration-%s";
-  private static int threadNumber = 1;
-  private final ConcurrentRegistrationQueue registrationQueue;
+  private static final String STAGE_NAME = "Registration-%s";
+  private static final String REQUEST_JOURNAL_STAGE = "registration";
+  private static final String MEASUREMENT_JOURNAL_STAGE = "registration-measurement";
+  private static final String SOURCE = "source";
+  private static final String TARGET = "target";
+  private static final String ORIGIN = "origin";
+  private static final String USER_PATH = "userPath";
+  private static final String TIMESTAMP = "timestamp";
+  private static final String LAST_MODIFIED = "lastModified";
+  private static final String FILES = "files";
+  private static final String VALIDATED = "validated";
+  private final String name;
+  private final RegistrationQueue registrationQueue;
   private final Path workingDirectory;
   private final Path targetDirectory;
   private final String metadataFileName;
   private final Path userErrorDirectory;
   private final Pattern measurementIdPattern;
-  private final AtomicBoolean active = new AtomicBoolean(false);
+  private final int batchSize;
+  private final TransferEngine transferEngine;
+  private final int measurementParallelism;
+  private final ExecutorService measurementExecutor;
+  private final TaskJournal journal;
+  private final ProvenanceCodec provenanceCodec;
 
-  public ProcessRegistrationRequest(@NonNull ConcurrentRegistrationQueue registrationQueue,
-      @NonNull RegistrationConfiguration configuration, @NonNull GlobalConfig globalConfig) {
-    this.setName(threadName.formatted(nextThreadNumber()));
+  /**
+   * @param threadMode the kind of threads the measurements are registered on, falls back to
+   *                   {@link ThreadMode#PLATFORM} if not supported by the Java runtime
+   */
+  public ProcessRegistrationRequest(@NonNull RegistrationQueue registrationQueue,
+      @NonNull RegistrationConfiguration configuration, @NonNull GlobalConfig globalConfig,
+      @NonNull Lane lane, @NonNull TransferEngine transferEngine, @NonNull TaskJournal journal,
+      @NonNull ThreadMode threadMode) {
+    this.name = STAGE_NAME.formatted(lane);
+    this.transferEngine = transferEngine;
+    this.journal = journal;
     this.registrationQueue = registrationQueue;
     this.workingDirectory = configuration.workingDirectory();
-    this.targetDirectory = configuration.targetDirectory();
+    this.targetDirectory = lane.resolve(configuration.targetDirectory());
+    if (!targetDirectory.toFile().mkdir() && !targetDirectory.toFile().exists()) {
+      throw new RuntimeException(
+          "Could not create lane directory for registration request at " + targetDirectory);
+    }
     this.metadataFileName = configuration.metadataFileName();
+    this.batchSize = configuration.batchSize();
     this.userErrorDirectory = globalConfig.usersErrorDirectory();
     this.measurementIdPattern = globalConfig.qbicMeasurementIdPattern();
-  }
-
-  private static int nextThreadNumber() {
-    return threadNumber++;
+    this.provenanceCodec = globalConfig.provenanceCodec();
+    this.measurementParallelism = configuration.measurementParallelism();
+    // grows with the number of workers, every request limits its own measurements
+    this.measurementExecutor = (threadMode.isSupported() ? threadMode : ThreadMode.PLATFORM)
+        .newExecutor();
   }
 
   private static void cleanup(Path workingTargetDir) throws IOException {
@@ -78,17 +127,93 @@ public class ProcessRegistrationRequest extends Thread {
     }
   }
 
-  private static void processMeasurement(String measurementId,
-      Map<String, List<RegistrationMetadata>> aggregatedFilesByMeasurementId, Path workingTargetDir,
-      Path taskDir) throws IOException {
-    for (RegistrationMetadata metadataEntry : aggregatedFilesByMeasurementId.get(
-        measurementId)) {
-      Files.move(workingTargetDir.resolve(metadataEntry.file()),
-          taskDir.resolve(metadataEntry.file()));
+  /**
+   * Registers the files of a single measurement as an own task. If the registration fails, the
+   * files are put back to the request, so the user receives them with the rest of the request.
+   */
+  private void registerMeasurement(String measurementId, List<RegistrationMetadata> files,
+      Path workingTargetDir, RegistrationRequest request) throws IOException {
+    // We now create individual task directories for every measurement dataset
+    Path taskDir = createTaskDirectory();
+    var target = targetDirectory.resolve(taskDir.getFileName());
+    var fileNames = files.stream().map(RegistrationMetadata::file).toList();
+    recordStep(MEASUREMENT_JOURNAL_STAGE, taskDir, Step.STARTED,
+        Map.of(SOURCE, workingTargetDir.toString(), TARGET, target.toString(), FILES,
+            String.join("\n", fileNames)));
+    try {
+      for (String file : fileNames) {
+        transferEngine.move(workingTargetDir.resolve(file), taskDir.resolve(file));
+      }
+      writeProvenanceInformation(taskDir, targetDirectory, request, measurementId, fileNames);
+      recordStep(MEASUREMENT_JOURNAL_STAGE, taskDir, Step.PROVENANCE_WRITTEN);
+      transferEngine.move(taskDir, target, null,
+          () -> recordStep(MEASUREMENT_JOURNAL_STAGE, taskDir, Step.PUBLISHED));
+      TaskChannel.forDirectory(targetDirectory).publish(target);
+      recordStep(MEASUREMENT_JOURNAL_STAGE, taskDir, Step.COMPLETED);
+    } catch (IOException | RuntimeException e) {
+      // if the files cannot be put back, the task stays in flight and is recovered on next start
+      if (rollbackMeasurement(taskDir, fileNames, workingTargetDir)) {
+        recordStep(MEASUREMENT_JOURNAL_STAGE, taskDir, Step.ROLLED_BACK);
+      }
+      throw e;
     }
   }
 
-  private void moveBackToOrigin(Path target, Path usersHomePath, String reason) {
+  /**
+   * Puts the files of a measurement task back to the request and deletes the task directory.
+   *
+   * @return <code>true</code>, if all files have been put back, else <code>false</code>
+   */
+  private boolean rollbackMeasurement(Path taskDir, List<String> fileNames,
+      Path workingTargetDir) {
+    try {
+      for (String fileName : fileNames) {
+        var file = taskDir.resolve(fileName);
+        if (Files.exists(file)) {
+          Files.move(file, workingTargetDir.resolve(fileName));
+        }
+      }
+      if (Files.exists(taskDir)) {
+        cleanup(taskDir);
+      }
+      return true;
+    } catch (IOException e) {
+      log.error("Cannot put back files of task {} to {}", taskDir, workingTargetDir, e);
+      return false;
+    }
+  }
+
+  /**
+   * Rolls back a request that failed for another reason than its validation. A dataset that is
+   * still in the user directory is left there, otherwise it is moved to the error directory of the
+   * user.
+   *
+   * @return <code>true</code>, if the request has been rolled back, else <code>false</code>
+   */
+  private boolean rollbackRequest(Path intermediateTaskDir, Path workingTargetDir,
+      RegistrationRequest request, Exception cause) {
+    if (Files.exists(workingTargetDir)) {
+      return moveBackToOrigin(intermediateTaskDir, request.userPath(),
+          "Registration failed: %s".formatted(cause.getMessage()));
+    }
+    try {
+      // the dataset has not left the user directory, the scanner submits it again
+      if (Files.exists(intermediateTaskDir)) {
+        cleanup(intermediateTaskDir);
+      }
+      return true;
+    } catch (IOException e) {
+      log.error("Cannot remove task directory {}", intermediateTaskDir, e);
+      return false;
+    }
+  }
+
+  /**
+   * Moves a task to the error directory of the user, together with the reason of the failure.
+   *
+   * @return <code>true</code>, if the task has been moved, else <code>false</code>
+   */
+  private boolean moveBackToOrigin(Path target, Path usersHomePath, String reason) {
     log.info("Moving back to original user directory: {}", usersHomePath);
     try {
       Path taskDir = createTaskDirectory();
@@ -97,27 +222,43 @@ public class ProcessRegistrationRequest extends Thread {
       errorFile.createNewFile();
       Files.writeString(errorFile.toPath(), reason);
       usersHomePath.resolve(userErrorDirectory).toFile().mkdir();
-      Files.move(taskDir,
+      transferEngine.move(taskDir,
           usersHomePath.resolve(userErrorDirectory)
               .resolve(taskDir.toFile().getName()));
+      return true;
     } catch (IOException e) {
       log.error("Cannot move task to user intervention: %s".formatted(
           usersHomePath.resolve(userErrorDirectory)), e);
+      return false;
     }
   }
 
+  /**
+   * Checks that every file of the metadata exists and every file of the dataset is described by the
+   * metadata. The request directory is listed once, both checks are hash set lookups.
+   */
   private void validateFileEntries(Collection<RegistrationMetadata> metadata, Path request)
       throws ValidationException {
+    var physicalFiles = Objects.requireNonNull(request.toFile().listFiles(),
+        "Request directory must not be null: " + request);
+    Set<String> physicalFileNames = new HashSet<>(physicalFiles.length * 2);
+    for (File file : physicalFiles) {
+      physicalFileNames.add(file.getName());
+    }
+    Set<String> filesInMetadata = new HashSet<>(metadata.size() * 2);
     for (RegistrationMetadata metadataEntry : metadata) {
-      if (!request.resolve(Paths.get(metadataEntry.file())).toFile().exists()) {
+      var file = metadataEntry.file();
+      filesInMetadata.add(file);
+      // entries with a path are checked on the file system, they are rare
+      boolean exists = file.indexOf(File.separatorChar) < 0 ? physicalFileNames.contains(file)
+          : request.resolve(Paths.get(file)).toFile().exists();
+      if (!exists) {
         throw new ValidationException(
-            "Unknown file reference in metadata: %s".formatted(metadataEntry.file()),
+            "Unknown file reference in metadata: %s".formatted(file),
             ErrorCode.FILE_NOT_FOUND);
       }
     }
     // To save the user from any trouble, let's also check if all dataset files are described by a metadata entry
-    var filesInMetadata = metadata.stream().map(RegistrationMetadata::file).toList();
-    var physicalFiles = request.toFile().listFiles();
     for (File file : physicalFiles) {
       // we ignore hidden files
       if (file.isHidden()) {
@@ -140,27 +281,12 @@ public class ProcessRegistrationRequest extends Thread {
       throw new ValidationException("Metadata file does not exist",
           ErrorCode.METADATA_FILE_NOT_FOUND);
     }
-
-    List<String> content;
     try {
-      content = Files.readAllLines(Paths.get(metadataFile.get().getPath())).stream()
-          .filter(row -> !row.isBlank()).toList();
+      return MetadataParser.parse(metadataFile.get().toPath());
     } catch (IOException e) {
       log.error("Error reading metadata file", e);
       throw new ValidationException("Cannot read metadata file", ErrorCode.IO_EXCEPTION);
     }
-
-    return content.stream().map(this::parseMetadataRow).toList();
-  }
-
-  private RegistrationMetadata parseMetadataRow(String value) throws ValidationException {
-    try {
-      var splitValues = value.split("\t");
-      return new RegistrationMetadata(splitValues[0], splitValues[1]);
-    } catch (IndexOutOfBoundsException e) {
-      log.error("Error parsing metadata row: %s".formatted(value), e);
-      throw new ValidationException("Cannot parse metadata entry", ErrorCode.INCOMPLETE_METADATA);
-    }
   }
 
   private Optional<File> findMetadataFile(Path path) {
@@ -184,9 +310,7 @@ public class ProcessRegistrationRequest extends Thread {
     provenance.qbicMeasurementID = measurementId;
     provenance.taskId = taskDir.toFile().getName();
     provenance.addDatasetFiles(datasetFiles);
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.writerWithDefaultPrettyPrinter()
-        .writeValue(taskDir.resolve("provenance.json").toFile(), provenance);
+    provenanceCodec.write(provenance, taskDir.resolve(Provenance.FILE_NAME));
   }
 
   private Path createTaskDirectory() {
@@ -196,60 +320,215 @@ public class ProcessRegistrationRequest extends Thread {
     return workingDirectory.resolve(taskId.toString());
   }
 
-  public void interrupt() {
-    while (active.get()) {
-      log.debug("Thread is still active...");
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException e) {
-        // we don't want to interrupt the worker thread before its task is done, since it might
-        // render the application in a non-recoverable state
-      }
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public Optional<List<RegistrationRequest>> next(long timeout, TimeUnit unit) {
+    List<RegistrationRequest> batch = new ArrayList<>(batchSize);
+    if (registrationQueue.drainTo(batch, batchSize, timeout, unit) == 0) {
+      return Optional.empty();
     }
-    log.debug("Task has been finished");
+    return Optional.of(batch);
+  }
+
+  @Override
+  public long backlog() {
+    return registrationQueue.items();
   }
 
   @Override
-  public void run() {
-    while (true) {
-      var request = registrationQueue.poll();
-      active.set(true);
-      log.info("Processing request: {}", request);
-      var intermediateTaskDir = createTaskDirectory();
+  public void process(List<RegistrationRequest> batch) {
+    batch.forEach(this::register);
+  }
+
+  private void register(RegistrationRequest request) {
+    log.info("Processing request: {}", request);
+    var intermediateTaskDir = createTaskDirectory();
+    var workingTargetDir = intermediateTaskDir.resolve(request.target().getFileName());
+    recordStep(REQUEST_JOURNAL_STAGE, intermediateTaskDir, Step.STARTED,
+        Map.of(SOURCE, request.target().toString(), ORIGIN, request.origin().toString(),
+            USER_PATH, String.valueOf(request.userPath()), TIMESTAMP,
+            request.timestamp().toString(), LAST_MODIFIED, String.valueOf(request.lastModified())));
+    try {
+      // Let's first move the registration request content to the working directory of the process
+      transferEngine.move(request.target(), workingTargetDir, null,
+          () -> recordStep(REQUEST_JOURNAL_STAGE, intermediateTaskDir, Step.FILES_MOVED));
+
+      var registrationMetadata = findAndParseMetadata(workingTargetDir);
+      validateFileEntries(registrationMetadata, workingTargetDir);
+
+      validateMeasurementIds(registrationMetadata);
+      recordStep(REQUEST_JOURNAL_STAGE, intermediateTaskDir, Step.FILES_MOVED,
+          Map.of(VALIDATED, "true"));
+
+      registerAll(registrationMetadata, intermediateTaskDir, workingTargetDir, request);
+    } catch (ValidationException e) {
+      log.error("Failed validation processing request: %s".formatted(request), e);
+      if (moveBackToOrigin(intermediateTaskDir, request.userPath(), e.getMessage())) {
+        recordStep(REQUEST_JOURNAL_STAGE, intermediateTaskDir, Step.ROLLED_BACK);
+      }
+    } catch (RuntimeException | IOException e) {
+      log.error("Error while processing registration request", e);
+      // a request that cannot be rolled back stays in flight and is recovered on next start
+      if (rollbackRequest(intermediateTaskDir, workingTargetDir, request, e)) {
+        recordStep(REQUEST_JOURNAL_STAGE, intermediateTaskDir, Step.ROLLED_BACK);
+      }
+    } finally {
+      registrationQueue.acknowledge(request);
+      log.info("Processing completed: {}", request);
+    }
+  }
+
+  private void registerAll(List<RegistrationMetadata> registrationMetadata,
+      Path intermediateTaskDir, Path workingTargetDir, RegistrationRequest request)
+      throws IOException {
+    var aggregatedFilesByMeasurementId = registrationMetadata.stream().collect(
+        Collectors.groupingBy(RegistrationMetadata::measurementId));
+
+    var failures = processAll(aggregatedFilesByMeasurementId, workingTargetDir, request);
+    if (!failures.isEmpty()) {
+      failures.forEach((measurementId, cause) -> log.error(
+          "Failed to register measurement %s of request %s".formatted(measurementId, request),
+          cause));
+      if (moveBackToOrigin(intermediateTaskDir, request.userPath(),
+          "Registration failed for measurement(s) %s, all other measurements have been registered: %s"
+              .formatted(String.join(", ", failures.keySet()),
+                  failures.values().iterator().next().getMessage()))) {
+        recordStep(REQUEST_JOURNAL_STAGE, intermediateTaskDir, Step.ROLLED_BACK);
+      }
+      return;
+    }
+
+    // Finally clean up the task directory, which should only contain the original metadata file
+    cleanup(workingTargetDir);
+    recordStep(REQUEST_JOURNAL_STAGE, intermediateTaskDir, Step.COMPLETED);
+  }
+
+  private void recordStep(String stage, Path taskDir, Step step, Map<String, String> attributes) {
+    try {
+      journal.record(stage, taskDir.toAbsolutePath().toString(), step, attributes);
+    } catch (IOException e) {
+      log.error("Cannot record step {} of task {} in the task journal", step, taskDir, e);
+    }
+  }
+
+  private void recordStep(String stage, Path taskDir, Step step) {
+    recordStep(stage, taskDir, step, Map.of());
+  }
+
+  /**
+   * Resumes or rolls back the registrations interrupted by a crash, as recorded in the task
+   * journal.
+   * <p>
+   * Measurement tasks with a complete provenance are moved on to the next process step, all others
+   * put their files back to the request. Requests still in the user directory are rolled back and
+   * submitted again by the scanner, the other requests register their remaining measurements in
+   * the lane of this stage.
+   * <p>
+   * Recovers the tasks of all lanes, so it must be called once on start-up, before the scanner and
+   * the workers start.
+   *
+   * @since 1.0.0
+   */
+  public void recover() {
+    for (var task : journal.inFlight(MEASUREMENT_JOURNAL_STAGE)) {
+      try {
+        recoverMeasurement(task);
+      } catch (IOException | RuntimeException e) {
+        log.error("Cannot recover interrupted measurement task {}", task.task(), e);
+      }
+    }
+    for (var task : journal.inFlight(REQUEST_JOURNAL_STAGE)) {
       try {
-        // Let's first move the registration request content to the working directory of the process
-
-        Files.move(request.target(), intermediateTaskDir.resolve(request.target().getFileName()));
-        var workingTargetDir = intermediateTaskDir.resolve(request.target().getFileName());
-
-        var registrationMetadata = findAndParseMetadata(workingTargetDir);
-        validateFileEntries(registrationMetadata, workingTargetDir);
-
-        validateMeasurementIds(registrationMetadata);
-
-        var aggregatedFilesByMeasurementId = registrationMetadata.stream().collect(
-            Collectors.groupingBy(RegistrationMetadata::measurementId));
-
-        processAll(aggregatedFilesByMeasurementId, workingTargetDir, request);
-
-        // Finally clean up the task directory, which should only contain the original metadata file
-        cleanup(workingTargetDir);
-      } catch (ValidationException e) {
-        log.error("Failed validation processing request: %s".formatted(request), e);
-        moveBackToOrigin(intermediateTaskDir, request.userPath(), e.getMessage());
-      } catch (RuntimeException e) {
-        log.error("Error moving task directory", e);
-        // TODO move back to user folder
-      } catch (IOException e) {
-        log.error("Error while processing registration request", e);
-        // TODO move back to user folder
-      } finally {
-        active.set(false);
-        log.info("Processing completed: {}", request);
+        recoverRequest(task);
+      } catch (IOException | RuntimeException e) {
+        log.error("Cannot recover interrupted registration request {}", task.task(), e);
       }
     }
   }
 
+  private void recoverMeasurement(Task task) throws IOException {
+    var taskDir = Paths.get(task.task());
+    var target = Paths.get(task.attribute(TARGET));
+    if (task.step() == Step.STARTED) {
+      if (rollbackMeasurement(taskDir, List.of(task.attribute(FILES).split("\n")),
+          Paths.get(task.attribute(SOURCE)))) {
+        journal.record(MEASUREMENT_JOURNAL_STAGE, task.task(), Step.ROLLED_BACK);
+        log.info("Rolled back interrupted measurement task {}", taskDir);
+      }
+      return;
+    }
+    // a rename completes the move at once, without recording the checkpoint in time
+    boolean published = task.step() == Step.PUBLISHED || !Files.exists(taskDir);
+    if (!published) {
+      if (Files.exists(target)) {
+        cleanup(target);
+      }
+      transferEngine.move(taskDir, target);
+    } else if (Files.exists(taskDir)) {
+      cleanup(taskDir);
+    }
+    if (!Files.exists(target)) {
+      log.error("Measurement task {} is missing in its task directory and target {}", taskDir,
+          target);
+      journal.record(MEASUREMENT_JOURNAL_STAGE, task.task(), Step.ROLLED_BACK);
+      return;
+    }
+    TaskChannel.forDirectory(target.getParent()).publish(target);
+    journal.record(MEASUREMENT_JOURNAL_STAGE, task.task(), Step.COMPLETED);
+    log.info("Completed interrupted measurement task {}", target);
+  }
+
+  private void recoverRequest(Task task) throws IOException {
+    var intermediateTaskDir = Paths.get(task.task());
+    var request = new RegistrationRequest(Instant.parse(task.attribute(TIMESTAMP)),
+        Long.parseLong(task.attribute(LAST_MODIFIED)), Paths.get(task.attribute(ORIGIN)),
+        Paths.get(task.attribute(SOURCE)), Paths.get(task.attribute(USER_PATH)));
+    var workingTargetDir = intermediateTaskDir.resolve(request.target().getFileName());
+    if (task.step() == Step.STARTED && Files.exists(request.target())) {
+      // the dataset has not left the user directory, the scanner submits it again
+      if (Files.exists(intermediateTaskDir)) {
+        cleanup(intermediateTaskDir);
+      }
+      journal.record(REQUEST_JOURNAL_STAGE, task.task(), Step.ROLLED_BACK);
+      log.info("Rolled back interrupted registration request {}", request);
+      return;
+    }
+    if (Files.exists(request.target())) {
+      // the remains of a copied dataset, the complete dataset is in the working directory
+      cleanup(request.target());
+    }
+    if (!Files.exists(workingTargetDir)) {
+      log.error("Dataset of interrupted registration request {} is missing in {}", request,
+          workingTargetDir);
+      journal.record(REQUEST_JOURNAL_STAGE, task.task(), Step.ROLLED_BACK);
+      return;
+    }
+    List<RegistrationMetadata> remaining;
+    try {
+      remaining = findAndParseMetadata(workingTargetDir);
+      if (task.attributes().containsKey(VALIDATED)) {
+        // measurements registered before the crash have taken their files with them
+        remaining = remaining.stream()
+            .filter(entry -> Files.exists(workingTargetDir.resolve(entry.file()))).toList();
+      }
+      validateFileEntries(remaining, workingTargetDir);
+      validateMeasurementIds(remaining);
+    } catch (ValidationException e) {
+      log.error("Failed validation processing request: %s".formatted(request), e);
+      if (moveBackToOrigin(intermediateTaskDir, request.userPath(), e.getMessage())) {
+        journal.record(REQUEST_JOURNAL_STAGE, task.task(), Step.ROLLED_BACK);
+      }
+      return;
+    }
+    log.info("Resuming interrupted registration request {} with {} remaining files", request,
+        remaining.size());
+    registerAll(remaining, intermediateTaskDir, workingTargetDir, request);
+  }
+
   private void validateMeasurementIds(List<RegistrationMetadata> registrationMetadata)
       throws ValidationException {
     registrationMetadata.stream().map(RegistrationMetadata::measurementId)
@@ -268,18 +547,50 @@ public class ProcessRegistrationRequest extends Thread {
     return measurementIdPattern.matcher(measurementId).matches();
   }
 
-  private void processAll(Map<String, List<RegistrationMetadata>> aggregatedFilesByMeasurementId,
-      Path workingTargetDir, RegistrationRequest request) throws IOException {
-    for (String measurementId : aggregatedFilesByMeasurementId.keySet()) {
-      // We now create individual task directories for every measurement dataset
-      Path taskDir = createTaskDirectory();
-      processMeasurement(measurementId, aggregatedFilesByMeasurementId, workingTargetDir, taskDir);
-
-      writeProvenanceInformation(taskDir, targetDirectory, request, measurementId,
-          aggregatedFilesByMeasurementId.get(measurementId).stream()
-              .map(RegistrationMetadata::file).toList());
-      Files.move(taskDir, targetDirectory.resolve(taskDir.getFileName()));
+  /**
+   * Registers the measurements of a request concurrently, at most
+   * {@link RegistrationConfiguration#measurementParallelism()} at a time, and waits until all of
+   * them are done.
+   *
+   * @return the measurements that could not be registered, with the cause of the failure
+   */
+  private Map<String, Throwable> processAll(
+      Map<String, List<RegistrationMetadata>> aggregatedFilesByMeasurementId,
+      Path workingTargetDir, RegistrationRequest request) {
+    Map<String, Future<?>> registrations = new LinkedHashMap<>();
+    var permits = new Semaphore(measurementParallelism);
+    aggregatedFilesByMeasurementId.forEach((measurementId, files) -> {
+      // all submitted measurements are awaited below, so the submission must not be interrupted
+      permits.acquireUninterruptibly();
+      registrations.put(measurementId, measurementExecutor.submit(() -> {
+        try {
+          registerMeasurement(measurementId, files, workingTargetDir, request);
+        } finally {
+          permits.release();
+        }
+        return null;
+      }));
+    });
+    Map<String, Throwable> failures = new LinkedHashMap<>();
+    boolean interrupted = false;
+    for (var registration : registrations.entrySet()) {
+      while (true) {
+        try {
+          registration.getValue().get();
+          break;
+        } catch (ExecutionException e) {
+          failures.put(registration.getKey(), e.getCause());
+          break;
+        } catch (InterruptedException e) {
+          // the request must not be cleaned up while measurements are still being moved
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
     }
+    return failures;
   }
 
 }
@@ -12,9 +12,11 @@ public class RegistrationConfiguration {
   private final Path workingDirectory;
   private final Path targetDirectory;
   private final String metadataFileName;
+  private final int batchSize;
+  private final int measurementParallelism;
 
   public RegistrationConfiguration(String workingDirectory, String targetDirectory,
-      String metadataFileName)
+      String metadataFileName, int batchSize, int measurementParallelism)
       throws IOException {
     this.workingDirectory = Paths.get(
         Objects.requireNonNull(workingDirectory, "workingDirectory must not be null"));
@@ -30,6 +32,16 @@ public class RegistrationConfiguration {
     }
 
     this.metadataFileName = metadataFileName;
+
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize must be greater than 0");
+    }
+    this.batchSize = batchSize;
+
+    if (measurementParallelism < 1) {
+      throw new IllegalArgumentException("measurementParallelism must be greater than 0");
+    }
+    this.measurementParallelism = measurementParallelism;
   }
 
   public Path workingDirectory() {
@@ -43,4 +55,23 @@ public class RegistrationConfiguration {
   public String metadataFileName() {
     return metadataFileName;
   }
+
+  /**
+   * The maximal number of registration requests a worker takes from the queue at once.
+   *
+   * @return the batch size of a registration worker
+   */
+  public int batchSize() {
+    return batchSize;
+  }
+
+  /**
+   * The maximal number of measurements of a registration request, that are registered at the same
+   * time.
+   *
+   * @return the measurement parallelism of a registration request
+   */
+  public int measurementParallelism() {
+    return measurementParallelism;
+  }
 }
@@ -0,0 +1,49 @@
+package life.qbic.data.processing.scanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * <b>Directory State</b>
+ * <p>
+ * Snapshot of a directory's last modification time and file key (e.g. the inode on POSIX systems,
+ * if available). Two equal snapshots indicate that no entry has been added to or removed from the
+ * directory in between.
+ *
+ * @since 1.0.0
+ */
+record DirectoryState(long lastModified, Object fileKey) {
+
+  /**
+   * Time span (milliseconds) in which a modification can still happen within the same
+   * modification timestamp. Snapshots younger than this are never considered up-to-date.
+   */
+  private static final long RACY_INTERVAL_MILLIS = 2000;
+
+  /**
+   * Reads the current state of a directory with a single attribute request.
+   *
+   * @param directory the directory to read the state of
+   * @return the current state of the directory
+   * @throws IOException if the attributes cannot be read, e.g. because the directory is gone
+   * @since 1.0.0
+   */
+  static DirectoryState of(Path directory) throws IOException {
+    var attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+    return new DirectoryState(attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+  }
+
+  /**
+   * Checks, if the state is old enough so that a following modification will result in a
+   * different modification timestamp.
+   *
+   * @param now the current time in milliseconds since the epoch
+   * @return <code>true</code>, if the state can be trusted, else <code>false</code>
+   * @since 1.0.0
+   */
+  boolean isSettled(long now) {
+    return now - lastModified > RACY_INTERVAL_MILLIS;
+  }
+}
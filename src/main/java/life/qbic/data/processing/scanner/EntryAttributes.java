@@ -0,0 +1,115 @@
+package life.qbic.data.processing.scanner;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+/**
+ * <b>Entry Attributes</b>
+ * <p>
+ * Snapshot of all attributes the scanner evaluates for a directory entry, fetched with a single
+ * attribute request.
+ * <p>
+ * On POSIX file systems, the access rights are derived from the permission bits of the snapshot.
+ * Only if the bits do not allow a definite answer (e.g. the application user is not the owner and
+ * the group and others permissions differ), the access is checked against the file system.
+ *
+ * @since 1.0.0
+ */
+record EntryAttributes(Path path, long lastModified, Object fileKey, boolean directory,
+                       boolean hidden, boolean writable, boolean executable) {
+
+  private static final String APPLICATION_USER = System.getProperty("user.name");
+  private static final String SUPER_USER = "root";
+  private static final boolean POSIX_SUPPORTED = Path.of("").getFileSystem()
+      .supportedFileAttributeViews().contains("posix");
+  /**
+   * The principal of the application user, resolved once, <code>null</code> if it cannot be
+   * resolved. In that case, the owner permissions are never applied.
+   */
+  private static final UserPrincipal APPLICATION_PRINCIPAL = lookupApplicationPrincipal();
+
+  private static UserPrincipal lookupApplicationPrincipal() {
+    if (!POSIX_SUPPORTED) {
+      return null;
+    }
+    try {
+      return FileSystems.getDefault().getUserPrincipalLookupService()
+          .lookupPrincipalByName(APPLICATION_USER);
+    } catch (IOException | UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads the attributes of a directory entry.
+   *
+   * @param path the path of the entry
+   * @return the attribute snapshot of the entry
+   * @throws IOException if the attributes cannot be read, e.g. because the entry is gone
+   * @since 1.0.0
+   */
+  static EntryAttributes read(Path path) throws IOException {
+    boolean hidden = isHidden(path);
+    if (POSIX_SUPPORTED) {
+      var attributes = Files.readAttributes(path, PosixFileAttributes.class);
+      var permissions = attributes.permissions();
+      boolean owner = attributes.owner().equals(APPLICATION_PRINCIPAL);
+      return new EntryAttributes(path, attributes.lastModifiedTime().toMillis(),
+          attributes.fileKey(), attributes.isDirectory(), hidden,
+          hasAccess(path, owner, permissions, PosixFilePermission.OWNER_WRITE,
+              PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE),
+          hasAccess(path, owner, permissions, PosixFilePermission.OWNER_EXECUTE,
+              PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.OTHERS_EXECUTE));
+    }
+    var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    return new EntryAttributes(path, attributes.lastModifiedTime().toMillis(),
+        attributes.fileKey(), attributes.isDirectory(), hidden, Files.isWritable(path),
+        Files.isExecutable(path));
+  }
+
+  /**
+   * Entries starting with a '.' are considered hidden, which is the convention on POSIX systems.
+   * The check does not require any file system access.
+   *
+   * @param path the path of the entry
+   * @return <code>true</code>, if the entry is hidden, else <code>false</code>
+   * @since 1.0.0
+   */
+  static boolean isHidden(Path path) {
+    var fileName = path.getFileName();
+    return fileName != null && fileName.toString().startsWith(".");
+  }
+
+  private static boolean hasAccess(Path path, boolean owner, Set<PosixFilePermission> permissions,
+      PosixFilePermission ownerPermission, PosixFilePermission groupPermission,
+      PosixFilePermission othersPermission) {
+    if (owner) {
+      return permissions.contains(ownerPermission);
+    }
+    if (SUPER_USER.equals(APPLICATION_USER)) {
+      return true;
+    }
+    if (permissions.contains(groupPermission) == permissions.contains(othersPermission)) {
+      return permissions.contains(othersPermission);
+    }
+    // The answer depends on the group membership of the application user, which is not
+    // known here, so the file system has to decide
+    return ownerPermission == PosixFilePermission.OWNER_WRITE ? Files.isWritable(path)
+        : Files.isExecutable(path);
+  }
+
+  /**
+   * @return the directory state of the entry's snapshot
+   * @since 1.0.0
+   */
+  DirectoryState state() {
+    return new DirectoryState(lastModified, fileKey);
+  }
+}
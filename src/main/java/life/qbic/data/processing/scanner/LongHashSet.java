@@ -0,0 +1,153 @@
+package life.qbic.data.processing.scanner;
+
+import java.util.Arrays;
+
+/**
+ * <b>Long Hash Set</b>
+ * <p>
+ * Compact set of primitive <code>long</code> values based on open addressing with linear probing.
+ * In contrast to a {@link java.util.HashSet} of {@link Long}, lookups and insertions do not
+ * allocate any objects (apart from an occasional resize).
+ * <p>
+ * The class is not thread-safe.
+ *
+ * @since 1.0.0
+ */
+final class LongHashSet {
+
+  /**
+   * Marks an empty slot. A stored value equal to it is tracked separately.
+   */
+  private static final long EMPTY = 0L;
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final float MAX_LOAD = 0.5f;
+
+  private long[] slots;
+  private int mask;
+  private int size;
+  private boolean containsEmpty;
+
+  LongHashSet() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  LongHashSet(int expectedSize) {
+    allocate(tableSizeFor(expectedSize));
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    int required = (int) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD);
+    return Math.max(DEFAULT_CAPACITY, Integer.highestOneBit(required - 1) << 1);
+  }
+
+  private static int mix(long value) {
+    // 64-bit finalizer of MurmurHash3
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return (int) value;
+  }
+
+  private void allocate(int capacity) {
+    slots = new long[capacity];
+    mask = capacity - 1;
+  }
+
+  /**
+   * Adds a value to the set.
+   *
+   * @param value the value to add
+   * @return <code>true</code>, if the value was not yet present, else <code>false</code>
+   * @since 1.0.0
+   */
+  boolean add(long value) {
+    if (value == EMPTY) {
+      if (containsEmpty) {
+        return false;
+      }
+      containsEmpty = true;
+      size++;
+      return true;
+    }
+    int index = mix(value) & mask;
+    while (slots[index] != EMPTY) {
+      if (slots[index] == value) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+    slots[index] = value;
+    size++;
+    if (size > slots.length * MAX_LOAD) {
+      rehash(slots.length << 1);
+    }
+    return true;
+  }
+
+  boolean contains(long value) {
+    if (value == EMPTY) {
+      return containsEmpty;
+    }
+    int index = mix(value) & mask;
+    while (slots[index] != EMPTY) {
+      if (slots[index] == value) {
+        return true;
+      }
+      index = (index + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Removes all values that are not contained in the other set. The table shrinks accordingly.
+   *
+   * @param other the values to keep
+   * @since 1.0.0
+   */
+  void retainAll(LongHashSet other) {
+    long[] previous = slots;
+    boolean keepEmpty = containsEmpty && other.contains(EMPTY);
+    allocate(tableSizeFor(Math.min(size, other.size())));
+    size = 0;
+    containsEmpty = false;
+    if (keepEmpty) {
+      add(EMPTY);
+    }
+    for (long value : previous) {
+      if (value != EMPTY && other.contains(value)) {
+        add(value);
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void clear() {
+    Arrays.fill(slots, EMPTY);
+    size = 0;
+    containsEmpty = false;
+  }
+
+  private void rehash(int capacity) {
+    long[] previous = slots;
+    allocate(capacity);
+    for (long value : previous) {
+      if (value == EMPTY) {
+        continue;
+      }
+      int index = mix(value) & mask;
+      while (slots[index] != EMPTY) {
+        index = (index + 1) & mask;
+      }
+      slots[index] = value;
+    }
+  }
+}
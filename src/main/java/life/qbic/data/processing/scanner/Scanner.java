@@ -2,22 +2,43 @@ package life.qbic.data.processing.scanner;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
-import java.io.File;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
-import life.qbic.data.processing.ConcurrentRegistrationQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import life.qbic.data.processing.DatasetClassifier;
 import life.qbic.data.processing.GlobalConfig;
+import life.qbic.data.processing.Lane;
+import life.qbic.data.processing.RegistrationQueue;
 import life.qbic.data.processing.registration.RegistrationRequest;
+import life.qbic.data.processing.scanner.ScannerConfiguration.Mode;
 import org.apache.logging.log4j.Logger;
 
 /**
@@ -29,6 +50,11 @@ import org.apache.logging.log4j.Logger;
  * In the current configuration, the scanner detects activity in a directory named "registration"
  * within each user directory. Every event outside this directory is ignored, since data that is
  * currently uploaded must not be processed, which will lead to corrupt data.
+ * <p>
+ * In {@link Mode#WATCH} mode, the scanner registers the scanner directory and every detected
+ * registration directory with a {@link WatchService} and turns creation events (which includes
+ * entries moved into a directory) into registration requests. A full scan is then only performed
+ * as reconciliation in the configured reconciliation interval, or if events have been lost.
  *
  * @since 1.0.0
  */
@@ -39,13 +65,44 @@ public class Scanner extends Thread {
 
   private final Path scannerPath;
   private final int scanInterval;
-  private final HashSet<Path> userProcessDirectories = new HashSet<>();
-  private final ConcurrentRegistrationQueue registrationQueue;
-  private final HashSet<RegistrationRequest> submittedRequests = new HashSet<>();
+  private final Mode mode;
+  private final long reconciliationInterval;
+  private final Set<Path> userDirectories = new HashSet<>();
+  private final Set<Path> userProcessDirectories = new HashSet<>();
+  private final Map<Path, DirectoryState> directoryStates = new ConcurrentHashMap<>();
+  /**
+   * The states of the datasets in every completely listed registration directory. A dataset
+   * receiving new content does not change the state of its registration directory.
+   */
+  private final Map<Path, Map<Path, DirectoryState>> datasetStates = new ConcurrentHashMap<>();
+  private final Map<Lane, RegistrationQueue> registrationQueues = new EnumMap<>(Lane.class);
+  private final DatasetClassifier datasetClassifier;
+  private final SubmittedRequestIndex submittedRequests = new SubmittedRequestIndex();
   private final Set<String> ignoredDirectories = new HashSet<>();
+  private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+  private final List<RegistrationRequest> recoveredRequests = new ArrayList<>();
+  /**
+   * Requests the registration queues could not take yet, per lane and user directory.
+   */
+  private final Map<DeferralKey, Deque<RegistrationRequest>> deferredRequests =
+      new LinkedHashMap<>();
+  private WatchService watchService;
 
+  /**
+   * Creates a scanner that submits registration requests into the queue of the {@link Lane} the
+   * dataset has been classified for.
+   *
+   * @param scannerConfiguration the scanner configuration
+   * @param registrationQueues   the registration queue per lane, must contain a queue for
+   *                             {@link Lane#EXPRESS}
+   * @param datasetClassifier    the classifier to assign datasets to lanes, can be
+   *                             <code>null</code> if only the express lane is used
+   * @param globalConfig         the global configuration
+   * @since 1.0.0
+   */
   public Scanner(ScannerConfiguration scannerConfiguration,
-      ConcurrentRegistrationQueue registrationQueue, GlobalConfig globalConfig) {
+      Map<Lane, RegistrationQueue> registrationQueues, DatasetClassifier datasetClassifier,
+      GlobalConfig globalConfig) {
     this.setName("Scanner-Thread");
     Objects.requireNonNull(scannerConfiguration, "scannerConfiguration must not be null");
     scannerPath = Path.of(scannerConfiguration.scannerDirectory());
@@ -53,8 +110,16 @@ public class Scanner extends Thread {
       throw new RuntimeException("Could not find scanner directory: " + scannerPath);
     }
     this.scanInterval = scannerConfiguration.scanInterval();
-    this.registrationQueue = Objects.requireNonNull(registrationQueue,
-        "registrationQueue must not be null");
+    this.mode = scannerConfiguration.mode();
+    this.reconciliationInterval = scannerConfiguration.reconciliationInterval();
+    this.registrationQueues.putAll(registrationQueues);
+    if (!this.registrationQueues.containsKey(Lane.EXPRESS)) {
+      throw new IllegalArgumentException("A registration queue for the express lane is required");
+    }
+    if (this.registrationQueues.size() > 1 && datasetClassifier == null) {
+      throw new IllegalArgumentException("A dataset classifier is required for multiple lanes");
+    }
+    this.datasetClassifier = datasetClassifier;
     this.ignoredDirectories.addAll(scannerConfiguration.ignore());
     if (!this.ignoredDirectories.isEmpty()) {
       log.info("Ignoring {} directories", ignoredDirectories.size());
@@ -67,110 +132,418 @@ public class Scanner extends Thread {
 
   @Override
   public void run() {
-    log.info("Started scanning '{}'", scannerPath);
+    log.info("Started scanning '{}' in {} mode", scannerPath, mode);
+    resubmitRecoveredRequests();
+    if (mode == Mode.WATCH) {
+      runWatching();
+    } else {
+      runPolling();
+    }
+    log.info("Stopped scanning '{}'", scannerPath);
+  }
+
+  /**
+   * Requests that have been submitted in a previous run of the application, but have not been
+   * finished. They are resubmitted before the first scan, if their dataset is still present.
+   *
+   * @param requests the recovered requests
+   * @since 1.0.0
+   */
+  public void recover(Collection<RegistrationRequest> requests) {
+    recoveredRequests.addAll(requests);
+  }
+
+  private void resubmitRecoveredRequests() {
+    for (RegistrationRequest request : recoveredRequests) {
+      if (Files.exists(request.target())) {
+        log.info("Resubmitting recovered registration request '{}'", request);
+        submit(request);
+      } else {
+        log.warn("Dropping recovered registration request, dataset is gone: '{}'", request);
+        registrationQueues.get(Lane.EXPRESS).acknowledge(request);
+      }
+    }
+    recoveredRequests.clear();
+  }
+
+  private void runPolling() {
     while (!Thread.interrupted()) {
       try {
-        var userFolderIterator = Arrays.stream(
-                Objects.requireNonNull(scannerPath.toFile().listFiles())).filter(File::isDirectory)
-            .filter(file -> notToIgnore(file.getName()))
-            .toList().iterator();
-
-        while (userFolderIterator.hasNext()) {
-          fetchRegistrationDirectory(userFolderIterator.next().toPath()).ifPresent(
-              this::addRegistrationDirectory);
+        scan();
+        Thread.sleep(scanInterval);
+      } catch (InterruptedException e) {
+        interrupt();
+      }
+    }
+  }
+
+  private void runWatching() {
+    try (WatchService service = scannerPath.getFileSystem().newWatchService()) {
+      watchService = service;
+      watch(scannerPath);
+      scan();
+      long nextReconciliation = System.currentTimeMillis() + reconciliationInterval;
+      while (!Thread.interrupted()) {
+        try {
+          retryDeferredRequests();
+          long timeout = nextReconciliation - System.currentTimeMillis();
+          if (!deferredRequests.isEmpty()) {
+            timeout = Math.min(timeout, scanInterval);
+          }
+          WatchKey key = timeout > 0 ? service.poll(timeout, TimeUnit.MILLISECONDS) : null;
+          boolean complete = key == null || processEvents(key);
+          if (!complete || System.currentTimeMillis() >= nextReconciliation) {
+            log.debug("Running reconciliation scan of '{}'", scannerPath);
+            scan();
+            nextReconciliation = System.currentTimeMillis() + reconciliationInterval;
+          }
+        } catch (InterruptedException e) {
+          interrupt();
         }
+      }
+    } catch (IOException e) {
+      log.error("Cannot watch scanner directory '%s', falling back to polling".formatted(
+          scannerPath), e);
+      watchService = null;
+      watchKeys.clear();
+      runPolling();
+    }
+  }
+
+  /**
+   * Performs a full scan of all user directories and submits new registration requests.
+   * <p>
+   * The scan is incremental: every known directory is only listed again, if its state (see
+   * {@link DirectoryState}) or, for registration directories, the state of one of its datasets
+   * changed since the last scan. Vanished directories are removed in the same pass.
+   */
+  private void scan() {
+    retryDeferredRequests();
+    refreshUserDirectories();
+    List<RegistrationRequest> requests = detectDataForRegistration();
+    for (RegistrationRequest request : requests) {
+      submit(request);
+    }
+  }
 
-        List<RegistrationRequest> requests = detectDataForRegistration();
-        for (RegistrationRequest request : requests) {
-          if (submittedRequests.contains(request)) {
-            log.info("Skipping registration request '{}'", request);
-            continue;
+  private void refreshUserDirectories() {
+    long now = System.currentTimeMillis();
+    try {
+      var rootState = DirectoryState.of(scannerPath);
+      if (isModified(scannerPath, rootState, now)) {
+        Set<Path> currentUserDirectories = new HashSet<>();
+        try (DirectoryStream<Path> content = Files.newDirectoryStream(scannerPath)) {
+          for (Path entry : content) {
+            if (notToIgnore(entry.getFileName().toString()) && Files.isDirectory(entry)) {
+              currentUserDirectories.add(entry);
+            }
           }
-          registrationQueue.add(request);
-          submittedRequests.add(request);
-          log.info("New registration requested: {}", request);
         }
-        removePathZombies();
-        Thread.sleep(scanInterval);
-      } catch (InterruptedException e) {
-        interrupt();
+        userDirectories.stream().filter(path -> !currentUserDirectories.contains(path)).toList()
+            .forEach(this::removeUserDirectory);
+        userDirectories.addAll(currentUserDirectories);
+        directoryStates.put(scannerPath, rootState);
       }
+    } catch (IOException | DirectoryIteratorException e) {
+      log.error("Cannot read scanner directory '%s'".formatted(scannerPath), e);
+      return;
+    }
+
+    for (Path userDirectory : List.copyOf(userDirectories)) {
+      try {
+        var state = DirectoryState.of(userDirectory);
+        if (!isModified(userDirectory, state, now)) {
+          continue;
+        }
+        fetchRegistrationDirectory(userDirectory).ifPresentOrElse(this::addRegistrationDirectory,
+            () -> removeRegistrationDirectory(userDirectory.resolve(REGISTRATION_PATH)));
+        directoryStates.put(userDirectory, state);
+      } catch (NoSuchFileException e) {
+        removeUserDirectory(userDirectory);
+      } catch (IOException e) {
+        log.error("Cannot read user directory '%s'".formatted(userDirectory), e);
+      }
+    }
+  }
+
+  private boolean isModified(Path directory, DirectoryState state, long now) {
+    return !state.isSettled(now) || !state.equals(directoryStates.get(directory));
+  }
+
+  /**
+   * Handles all pending events of a watch key.
+   *
+   * @param key the signalled watch key
+   * @return <code>false</code>, if events have been lost and a reconciliation scan is required,
+   * else <code>true</code>
+   */
+  private boolean processEvents(WatchKey key) {
+    Path directory = (Path) key.watchable();
+    boolean complete = true;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        log.warn("Lost file system events for '{}'", directory);
+        complete = false;
+        continue;
+      }
+      Path child = directory.resolve((Path) event.context());
+      if (directory.equals(scannerPath)) {
+        if (notToIgnore(child.getFileName().toString()) && Files.isDirectory(child)) {
+          fetchRegistrationDirectory(child).ifPresent(this::addRegistrationDirectory);
+        }
+        continue;
+      }
+      if (EntryAttributes.isHidden(child)) {
+        continue;
+      }
+      readAttributes(child).filter(this::matchesRegistrationCriteria)
+          .filter(this::matchesAccessRightsCriteria)
+          .ifPresent(attributes -> submit(createRequest(attributes, directory)));
+    }
+    if (!key.reset()) {
+      watchKeys.remove(directory);
+    }
+    return complete;
+  }
+
+  private void submit(RegistrationRequest request) {
+    if (submittedRequests.contains(request)) {
+      log.info("Skipping registration request '{}'", request);
+      return;
+    }
+    submittedRequests.add(request);
+    var lane = classify(request);
+    var deferralKey = new DeferralKey(lane, request.userPath());
+    // preserve the order of detection, if earlier requests of the user are still waiting
+    var deferred = deferredRequests.get(deferralKey);
+    if (deferred != null || !registrationQueues.get(lane).offer(request)) {
+      deferredRequests.computeIfAbsent(deferralKey, key -> new ArrayDeque<>()).add(request);
+      log.debug("Registration queue is full, deferring request '{}'", request);
+      return;
+    }
+    log.info("New registration requested in {} lane: {}", lane, request);
+  }
+
+  private Lane classify(RegistrationRequest request) {
+    if (registrationQueues.size() == 1) {
+      return Lane.EXPRESS;
+    }
+    var lane = datasetClassifier.classify(request.target());
+    return registrationQueues.containsKey(lane) ? lane : Lane.EXPRESS;
+  }
+
+  private void retryDeferredRequests() {
+    var iterator = deferredRequests.entrySet().iterator();
+    while (iterator.hasNext()) {
+      var deferred = iterator.next();
+      retryDeferredRequests(deferred.getKey().lane(), deferred.getValue());
+      if (deferred.getValue().isEmpty()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private void retryDeferredRequests(Lane lane, Deque<RegistrationRequest> deferred) {
+    while (!deferred.isEmpty()) {
+      var request = deferred.peek();
+      if (Files.notExists(request.target())) {
+        log.warn("Dropping deferred registration request, dataset is gone: '{}'", request);
+        deferred.poll();
+        continue;
+      }
+      if (!registrationQueues.get(lane).offer(request)) {
+        return;
+      }
+      deferred.poll();
+      log.info("New registration requested in {} lane: {}", lane, request);
+    }
+  }
+
+  private void watch(Path directory) {
+    if (watchService == null || watchKeys.containsKey(directory)) {
+      return;
+    }
+    try {
+      watchKeys.put(directory, directory.register(watchService, ENTRY_CREATE));
+    } catch (IOException e) {
+      log.error("Cannot watch directory '%s'".formatted(directory), e);
+    }
+  }
+
+  private void unwatch(Path directory) {
+    var key = watchKeys.remove(directory);
+    if (key != null) {
+      key.cancel();
     }
-    log.info("Stopped scanning '{}'", scannerPath);
   }
 
   private List<RegistrationRequest> detectDataForRegistration() {
-    return userProcessDirectories.parallelStream()
-        .map(Path::toFile)
-        .filter(this::matchesAccessRightsCriteria)
-        .filter(this::matchesRegistrationCriteria)
-        .map(processDir -> createRequests(
-            applyFilterForProcessDir(processDir.listFiles()),
-            processDir.toPath()))
-        .flatMap(Collection::stream).toList();
+    long now = System.currentTimeMillis();
+    Queue<Path> zombies = new ConcurrentLinkedQueue<>();
+    var scans = List.copyOf(userProcessDirectories).parallelStream()
+        .map(processDir -> scanRegistrationDirectory(processDir, now, zombies))
+        .flatMap(Optional::stream).toList();
+    zombies.forEach(this::removeRegistrationDirectory);
+    List<RegistrationRequest> requests = new ArrayList<>();
+    for (RegistrationDirectoryScan scan : scans) {
+      submittedRequests.retainAll(scan.processDir(), scan.presentDatasets());
+      requests.addAll(scan.requests());
+    }
+    return requests;
+  }
+
+  private Optional<RegistrationDirectoryScan> scanRegistrationDirectory(Path processDir, long now,
+      Queue<Path> zombies) {
+    EntryAttributes processDirAttributes;
+    try {
+      processDirAttributes = EntryAttributes.read(processDir);
+    } catch (NoSuchFileException e) {
+      zombies.add(processDir);
+      return Optional.empty();
+    } catch (IOException e) {
+      log.error("Cannot read process directory '%s'".formatted(processDir), e);
+      return Optional.empty();
+    }
+    var state = processDirAttributes.state();
+    if (!isModified(processDir, state, now) && !hasModifiedDatasets(processDir, now)) {
+      return Optional.empty();
+    }
+    if (!matchesAccessRightsCriteria(processDirAttributes) || !matchesRegistrationCriteria(
+        processDirAttributes)) {
+      return Optional.empty();
+    }
+    // Entries we have no access to yet are revisited in the next scan, so we only remember the
+    // directory state if every entry has been evaluated completely
+    boolean complete = true;
+    List<RegistrationRequest> requests = new ArrayList<>();
+    LongHashSet presentDatasets = new LongHashSet();
+    Map<Path, DirectoryState> datasets = new HashMap<>();
+    try (DirectoryStream<Path> content = Files.newDirectoryStream(processDir)) {
+      for (Path entry : content) {
+        if (EntryAttributes.isHidden(entry)) {
+          continue;
+        }
+        var attributes = readAttributes(entry);
+        if (attributes.isEmpty() || !matchesRegistrationCriteria(attributes.get())) {
+          continue;
+        }
+        presentDatasets.add(SubmittedRequestIndex.key(entry, attributes.get().lastModified()));
+        datasets.put(entry, attributes.get().state());
+        if (!matchesAccessRightsCriteria(attributes.get())) {
+          complete = false;
+          continue;
+        }
+        requests.add(createRequest(attributes.get(), processDir));
+      }
+    } catch (IOException | DirectoryIteratorException e) {
+      log.error("Cannot list process directory '%s'".formatted(processDir), e);
+      return Optional.empty();
+    }
+    if (complete) {
+      datasetStates.put(processDir, datasets);
+      directoryStates.put(processDir, state);
+    }
+    return Optional.of(new RegistrationDirectoryScan(processDir, requests, presentDatasets));
   }
 
-  private File[] applyFilterForProcessDir(File[] processDirContent) {
-    return Arrays.stream(Objects.requireNonNull(processDirContent))
-        .filter(this::matchesAccessRightsCriteria)
-        .filter(this::matchesRegistrationCriteria).toArray(File[]::new);
+  /**
+   * Checks the datasets of the last listing of a registration directory for modifications, e.g.
+   * files added to a dataset after it has been detected.
+   */
+  private boolean hasModifiedDatasets(Path processDir, long now) {
+    for (var dataset : datasetStates.getOrDefault(processDir, Map.of()).entrySet()) {
+      try {
+        var state = DirectoryState.of(dataset.getKey());
+        if (!state.isSettled(now) || !state.equals(dataset.getValue())) {
+          return true;
+        }
+      } catch (IOException e) {
+        // the dataset has been moved away in the meantime
+        return true;
+      }
+    }
+    return false;
   }
 
-  private boolean matchesAccessRightsCriteria(File file) {
-    if (!file.canWrite()) {
-      log.error("Cannot write to file '{}'", file);
+  private Optional<EntryAttributes> readAttributes(Path entry) {
+    try {
+      return Optional.of(EntryAttributes.read(entry));
+    } catch (NoSuchFileException e) {
+      // the entry has been moved away in the meantime
+      return Optional.empty();
+    } catch (IOException e) {
+      log.error("Cannot read attributes of '%s'".formatted(entry), e);
+      return Optional.empty();
+    }
+  }
+
+  private boolean matchesAccessRightsCriteria(EntryAttributes attributes) {
+    if (!attributes.writable()) {
+      log.error("Cannot write to file '{}'", attributes.path());
       return false;
     }
-    if (!file.canExecute()) {
-      log.error("Cannot execute file '{}'", file);
+    if (!attributes.executable()) {
+      log.error("Cannot execute file '{}'", attributes.path());
       return false;
     }
     return true;
   }
 
-  private boolean matchesRegistrationCriteria(File file) {
-    if (file.isHidden()) {
+  private boolean matchesRegistrationCriteria(EntryAttributes attributes) {
+    if (attributes.hidden()) {
       return false;
     }
-    return file.isDirectory();
+    return attributes.directory();
   }
 
-  private List<RegistrationRequest> createRequests(File[] files, Path userDirectory) {
-    if (files == null || files.length == 0) {
-      return new ArrayList<>();
-    }
-    return Arrays.stream(files).map(file -> createRequest(file, userDirectory)).toList();
+  private RegistrationRequest createRequest(EntryAttributes attributes, Path userDirectory) {
+    return new RegistrationRequest(Instant.now(), attributes.lastModified(),
+        attributes.path().getParent(), attributes.path(), userDirectory.getParent());
   }
 
-  private RegistrationRequest createRequest(File file, Path userDirectory) {
-    return new RegistrationRequest(Instant.now(), file.lastModified(),
-        file.getParentFile().toPath(), file.toPath(), userDirectory.getParent());
+  private void removeUserDirectory(Path userDirectory) {
+    userDirectories.remove(userDirectory);
+    directoryStates.remove(userDirectory);
+    removeRegistrationDirectory(userDirectory.resolve(REGISTRATION_PATH));
   }
 
-  private void removePathZombies() {
-    List<Path> zombies = new LinkedList<>();
-    for (Path processFolder : userProcessDirectories) {
-      if (!processFolder.toFile().exists()) {
-        zombies.add(processFolder);
-      }
+  private void removeRegistrationDirectory(Path processFolder) {
+    directoryStates.remove(processFolder);
+    datasetStates.remove(processFolder);
+    submittedRequests.removeAll(processFolder);
+    if (userProcessDirectories.remove(processFolder)) {
+      unwatch(processFolder);
+      log.warn("Removing orphaned process directory: '%s'".formatted(processFolder));
     }
-
-    zombies.forEach(zombie -> {
-      userProcessDirectories.remove(zombie);
-      log.warn("Removing orphaned process directory: '%s'".formatted(zombie));
-    });
-
   }
 
   private void addRegistrationDirectory(Path path) {
     if (userProcessDirectories.add(path)) {
       log.info("New user process directory found: '{}'", path.toString());
     }
+    watch(path);
   }
 
   public Optional<Path> fetchRegistrationDirectory(Path userDirectory) {
     Path resolvedPath = userDirectory.resolve(REGISTRATION_PATH);
-    return Optional.ofNullable(resolvedPath.toFile().exists() ? resolvedPath : null);
+    return Optional.ofNullable(Files.exists(resolvedPath) ? resolvedPath : null);
+  }
+
+  private record DeferralKey(Lane lane, Path userPath) {
+
+  }
+
+  /**
+   * Result of listing a single registration directory.
+   *
+   * @param processDir      the registration directory
+   * @param requests        registration requests for all datasets ready for registration
+   * @param presentDatasets keys of all datasets present in the directory, see
+   *                        {@link SubmittedRequestIndex#key(Path, long)}
+   */
+  private record RegistrationDirectoryScan(Path processDir, List<RegistrationRequest> requests,
+                                           LongHashSet presentDatasets) {
+
   }
 
   @Override
@@ -5,6 +5,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Locale;
 import java.util.Objects;
 import life.qbic.data.processing.AccessRightsEvaluation;
 
@@ -13,17 +14,24 @@ public class ScannerConfiguration {
   private final Path scannerDirectory;
   private final int scanInterval;
   private final String[] ignore;
+  private final Mode mode;
+  private final long reconciliationInterval;
 
-  public ScannerConfiguration(String scannerDirectory, int interval, String[] ignore)
-      throws IOException {
+  public ScannerConfiguration(String scannerDirectory, int interval, String[] ignore, String mode,
+      long reconciliationInterval) throws IOException {
     this.scannerDirectory = Paths.get(scannerDirectory);
     if (interval <= 0) {
       throw new IllegalArgumentException("Interval must be greater than 0");
     }
+    if (reconciliationInterval <= 0) {
+      throw new IllegalArgumentException("Reconciliation interval must be greater than 0");
+    }
     AccessRightsEvaluation.evaluateExistenceAndDirectory(this.scannerDirectory);
     AccessRightsEvaluation.evaluateReadAndExecutablePermission(this.scannerDirectory);
     this.scanInterval = interval;
     this.ignore = Arrays.copyOf(Objects.requireNonNull(ignore), ignore.length);
+    this.mode = Mode.from(mode);
+    this.reconciliationInterval = reconciliationInterval;
   }
 
   public String scannerDirectory() {
@@ -37,4 +45,49 @@ public class ScannerConfiguration {
   public Collection<String> ignore() {
     return Arrays.stream(ignore).toList();
   }
+
+  public Mode mode() {
+    return mode;
+  }
+
+  /**
+   * The time interval (milliseconds) of the full reconciliation sweep in {@link Mode#WATCH} mode.
+   *
+   * @return the reconciliation interval in milliseconds
+   * @since 1.0.0
+   */
+  public long reconciliationInterval() {
+    return reconciliationInterval;
+  }
+
+  /**
+   * <b>Scanner Mode</b>
+   * <p>
+   * Defines how the scanner detects new registration requests.
+   *
+   * @since 1.0.0
+   */
+  public enum Mode {
+    /**
+     * Lists every user and registration directory in a fixed interval.
+     */
+    POLLING,
+    /**
+     * Listens to file system events and only runs a low-frequency full reconciliation sweep.
+     */
+    WATCH;
+
+    static Mode from(String value) {
+      if (value == null || value.isBlank()) {
+        return POLLING;
+      }
+      try {
+        return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            "Unknown scanner mode '%s', expected one of %s".formatted(value,
+                Arrays.toString(Mode.values())));
+      }
+    }
+  }
 }
@@ -0,0 +1,95 @@
+package life.qbic.data.processing.scanner;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import life.qbic.data.processing.registration.RegistrationRequest;
+
+/**
+ * <b>Submitted Request Index</b>
+ * <p>
+ * Remembers which registration requests have already been submitted, to prevent duplicate
+ * submissions of the same dataset.
+ * <p>
+ * A request is represented by a 64-bit hash of its target path and last modification time, stored
+ * in a primitive {@link LongHashSet} per registration directory. Entries are evicted as soon as
+ * their target has disappeared from the registration directory (see
+ * {@link #retainAll(Path, LongHashSet)}) or the registration directory itself is gone (see
+ * {@link #removeAll(Path)}). This keeps the index proportional to the number of datasets currently
+ * waiting in the registration directories.
+ * <p>
+ * The class is not thread-safe.
+ *
+ * @since 1.0.0
+ */
+final class SubmittedRequestIndex {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final Map<Path, LongHashSet> submittedByOrigin = new HashMap<>();
+
+  /**
+   * Computes the index key for a dataset.
+   *
+   * @param target       the path of the dataset
+   * @param lastModified the last modification time of the dataset
+   * @return the 64-bit key of the dataset
+   * @since 1.0.0
+   */
+  static long key(Path target, long lastModified) {
+    // 64-bit FNV-1a over the path characters, followed by the modification time
+    String path = target.toString();
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < path.length(); i++) {
+      hash ^= path.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    hash ^= lastModified;
+    hash *= FNV_PRIME;
+    return hash ^ (hash >>> 32);
+  }
+
+  boolean contains(RegistrationRequest request) {
+    var submitted = submittedByOrigin.get(request.origin());
+    return submitted != null && submitted.contains(key(request.target(), request.lastModified()));
+  }
+
+  void add(RegistrationRequest request) {
+    submittedByOrigin.computeIfAbsent(request.origin(), origin -> new LongHashSet())
+        .add(key(request.target(), request.lastModified()));
+  }
+
+  /**
+   * Evicts all entries of a registration directory, whose datasets are not present anymore.
+   *
+   * @param origin  the registration directory
+   * @param present the keys (see {@link #key(Path, long)}) of all datasets currently present in
+   *                the registration directory
+   * @since 1.0.0
+   */
+  void retainAll(Path origin, LongHashSet present) {
+    var submitted = submittedByOrigin.get(origin);
+    if (submitted == null) {
+      return;
+    }
+    submitted.retainAll(present);
+    if (submitted.isEmpty()) {
+      submittedByOrigin.remove(origin);
+    }
+  }
+
+  /**
+   * Evicts all entries of a registration directory.
+   *
+   * @param origin the registration directory
+   * @since 1.0.0
+   */
+  void removeAll(Path origin) {
+    submittedByOrigin.remove(origin);
+  }
+
+  int size() {
+    return submittedByOrigin.values().stream().mapToInt(LongHashSet::size).sum();
+  }
+}
@@ -0,0 +1,156 @@
+package life.qbic.data.processing.stage;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Autoscaler</b>
+ * <p>
+ * Adjusts the number of workers of {@link StageExecutor}s to their load, within configured
+ * bounds.
+ * <p>
+ * In every interval, the autoscaler estimates the number of workers a stage needs to process its
+ * backlog (see {@link Stage#backlog()}) within the target drain time, based on the recent mean task
+ * duration. As long as no task duration is known yet, a stage gets one more worker, if all workers
+ * are busy and tasks are waiting.
+ * <p>
+ * Scaling up happens immediately. Scaling down requires the stage to need fewer workers for
+ * several intervals in a row and then removes one worker per interval, so short pauses between
+ * bursts do not shrink the pool. Removed workers finish their current task before they retire.
+ * <p>
+ * Paused stages (see {@link StageExecutor#pauseWhen(java.util.function.BooleanSupplier)}) are not
+ * scaled, since their backlog does not reflect the work their workers can do.
+ *
+ * @since 1.0.0
+ */
+public class Autoscaler {
+
+  private static final Logger log = getLogger(Autoscaler.class);
+  private final long interval;
+  private final long targetDrainTime;
+  private final int scaleDownDelay;
+  private final Map<StageExecutor<?>, ScalingState> managedStages = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        var thread = new Thread(runnable, "Autoscaler");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * @param interval        the time interval (milliseconds) between two scaling decisions
+   * @param targetDrainTime the time (milliseconds) in which a stage shall be able to process its
+   *                        backlog
+   * @param scaleDownDelay  the number of intervals a stage has to need fewer workers, before
+   *                        workers are removed
+   * @since 1.0.0
+   */
+  public Autoscaler(long interval, long targetDrainTime, int scaleDownDelay) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("interval must be greater than 0");
+    }
+    if (targetDrainTime < 1) {
+      throw new IllegalArgumentException("targetDrainTime must be greater than 0");
+    }
+    if (scaleDownDelay < 1) {
+      throw new IllegalArgumentException("scaleDownDelay must be greater than 0");
+    }
+    this.interval = interval;
+    this.targetDrainTime = targetDrainTime;
+    this.scaleDownDelay = scaleDownDelay;
+  }
+
+  /**
+   * Puts the workers of a stage under the control of the autoscaler.
+   *
+   * @param executor   the executor of the stage
+   * @param minWorkers the minimal number of workers, must be greater than 0
+   * @param maxWorkers the maximal number of workers, the minimal number of workers is used if it
+   *                   is lower
+   * @since 1.0.0
+   */
+  public void manage(StageExecutor<?> executor, int minWorkers, int maxWorkers) {
+    if (minWorkers < 1) {
+      throw new IllegalArgumentException("Minimal number of workers must be greater than 0");
+    }
+    if (maxWorkers < minWorkers) {
+      log.warn("Maximal number of workers of stage {} is lower than {}, the stage is not scaled up",
+          executor.getName(), minWorkers);
+      maxWorkers = minWorkers;
+    }
+    managedStages.put(executor, new ScalingState(minWorkers, maxWorkers));
+  }
+
+  public void start() {
+    scheduler.scheduleWithFixedDelay(this::scale, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  public void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  void scale() {
+    managedStages.forEach((executor, state) -> {
+      try {
+        scale(executor, state);
+      } catch (RuntimeException e) {
+        log.error("Cannot scale stage {}", executor.getName(), e);
+      }
+    });
+  }
+
+  private void scale(StageExecutor<?> executor, ScalingState state) {
+    if (executor.isPaused()) {
+      state.intervalsBelow = 0;
+      return;
+    }
+    int current = executor.getWorkers();
+    int required = Math.max(state.minWorkers,
+        Math.min(state.maxWorkers, requiredWorkers(executor, current)));
+    if (required > current) {
+      state.intervalsBelow = 0;
+      log.info("Scaling up stage {} from {} to {} workers (backlog {}, mean task duration {} ms)",
+          executor.getName(), current, required, executor.getBacklog(),
+          Math.round(executor.getMeanTaskMillis()));
+      executor.setWorkers(required);
+    } else if (required < current) {
+      state.intervalsBelow++;
+      if (state.intervalsBelow >= scaleDownDelay) {
+        log.info("Scaling down stage {} from {} to {} workers", executor.getName(), current,
+            current - 1);
+        executor.setWorkers(current - 1);
+      }
+    } else {
+      state.intervalsBelow = 0;
+    }
+  }
+
+  private int requiredWorkers(StageExecutor<?> executor, int current) {
+    long backlog = executor.getBacklog();
+    int active = executor.getActiveWorkers();
+    double meanTaskMillis = executor.getMeanTaskMillis();
+    if (meanTaskMillis == 0) {
+      return backlog > 0 && active >= current ? current + 1 : Math.max(active, 1);
+    }
+    long drainWorkers = (long) Math.ceil(backlog * meanTaskMillis / targetDrainTime);
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(active, drainWorkers));
+  }
+
+  private static class ScalingState {
+
+    private final int minWorkers;
+    private final int maxWorkers;
+    private int intervalsBelow = 0;
+
+    private ScalingState(int minWorkers, int maxWorkers) {
+      this.minWorkers = minWorkers;
+      this.maxWorkers = maxWorkers;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package life.qbic.data.processing.stage;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>Stage</b>
+ * <p>
+ * A step of the data processing pipeline, e.g. the registration, a processing step or the
+ * evaluation. A stage only describes where its tasks come from and how a single task is processed,
+ * the workers are provided by a {@link StageExecutor}.
+ * <p>
+ * Every worker of the stage repeatedly waits for the {@link #next(long, TimeUnit) next} task and
+ * {@link #process(Object) processes} it. Since all workers share the same stage instance,
+ * implementations must be thread-safe.
+ *
+ * @param <T> the type of the tasks of the stage
+ * @since 1.0.0
+ */
+public interface Stage<T> {
+
+  /**
+   * The name of the stage, used for logging and the names of the worker threads.
+   *
+   * @return the name of the stage
+   * @since 1.0.0
+   */
+  String name();
+
+  /**
+   * Waits for the next task of the stage.
+   * <p>
+   * The timeout must be respected, so workers can be retired in time.
+   *
+   * @param timeout the maximal time to wait
+   * @param unit    the unit of the timeout
+   * @return the next task, or {@link Optional#empty()} if there is no task within the timeout
+   * @since 1.0.0
+   */
+  Optional<T> next(long timeout, TimeUnit unit);
+
+  /**
+   * Processes a task taken from {@link #next(long, TimeUnit)}.
+   * <p>
+   * A task is always processed completely, workers are never interrupted during processing.
+   *
+   * @param task the task to process
+   * @since 1.0.0
+   */
+  void process(T task);
+
+  /**
+   * The number of tasks waiting for a worker of the stage, used to scale the number of workers
+   * (see {@link Autoscaler}).
+   *
+   * @return the number of pending tasks, <code>0</code> if unknown
+   * @since 1.0.0
+   */
+  default long backlog() {
+    return 0;
+  }
+}
@@ -0,0 +1,104 @@
+package life.qbic.data.processing.stage;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Stage Engine</b>
+ * <p>
+ * Runs the {@link Stage}s of the data processing pipeline, every stage on an own
+ * {@link StageExecutor}.
+ * <p>
+ * On {@link #start()}, the engine registers every stage executor as MBean
+ * (<code>life.qbic.data.processing:type=Stage,name=&lt;stage name&gt;</code>), so the number of
+ * workers of every stage can be inspected and changed at runtime via JMX.
+ *
+ * @since 1.0.0
+ */
+public class StageEngine {
+
+  private static final Logger log = getLogger(StageEngine.class);
+  private static final String MBEAN_NAME = "life.qbic.data.processing:type=Stage,name=%s";
+  private final ThreadMode threadMode;
+  private final Map<StageExecutor<?>, Integer> initialWorkers = new LinkedHashMap<>();
+
+  public StageEngine(ThreadMode threadMode) {
+    this.threadMode = Objects.requireNonNull(threadMode, "threadMode must not be null");
+  }
+
+  /**
+   * Registers a stage. Stages must be registered in the order of the pipeline, since they are shut
+   * down in the same order.
+   *
+   * @param stage   the stage
+   * @param workers the number of workers of the stage after start-up
+   * @return the executor of the stage
+   * @throws IllegalArgumentException if a stage with the same name has been registered already
+   * @since 1.0.0
+   */
+  public synchronized <T> StageExecutor<T> register(Stage<T> stage, int workers) {
+    if (workers < 0) {
+      throw new IllegalArgumentException("Number of workers must not be negative");
+    }
+    if (executor(stage.name()).isPresent()) {
+      throw new IllegalArgumentException("Stage %s is already registered".formatted(stage.name()));
+    }
+    var executor = new StageExecutor<>(stage, threadMode);
+    initialWorkers.put(executor, workers);
+    return executor;
+  }
+
+  /**
+   * Starts the workers of all registered stages.
+   *
+   * @since 1.0.0
+   */
+  public synchronized void start() {
+    var mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    initialWorkers.forEach((executor, workers) -> {
+      log.info("Starting {} workers of stage {}", workers, executor.getName());
+      executor.setWorkers(workers);
+      try {
+        mBeanServer.registerMBean(executor,
+            new ObjectName(MBEAN_NAME.formatted(executor.getName())));
+      } catch (JMException e) {
+        log.warn("Cannot register stage {} for management", executor.getName(), e);
+      }
+    });
+  }
+
+  /**
+   * The executors of all registered stages, in the order of the pipeline.
+   *
+   * @return the stage executors
+   * @since 1.0.0
+   */
+  public synchronized List<StageExecutor<?>> executors() {
+    return Collections.unmodifiableList(new ArrayList<>(initialWorkers.keySet()));
+  }
+
+  public synchronized Optional<StageExecutor<?>> executor(String stageName) {
+    return initialWorkers.keySet().stream()
+        .filter(executor -> executor.getName().equals(stageName)).findFirst();
+  }
+
+  /**
+   * Shuts down all stages in the order of the pipeline. Every worker finishes its current task.
+   *
+   * @since 1.0.0
+   */
+  public void shutdown() {
+    executors().forEach(StageExecutor::shutdown);
+  }
+}
@@ -0,0 +1,256 @@
+package life.qbic.data.processing.stage;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Stage Executor</b>
+ * <p>
+ * Runs the workers of a {@link Stage} on an own {@link ExecutorService}.
+ * <p>
+ * Every worker waits for the next task of the stage and processes it. The number of workers can be
+ * changed at any time with {@link #setWorkers(int)}: additional workers start immediately, surplus
+ * workers retire after they have finished their current task. Waiting for a task is limited to
+ * one second, so idle workers retire quickly.
+ * <p>
+ * The stage itself holds the queue of its pending tasks, e.g. the bounded registration queue, so
+ * the executor does not buffer any tasks.
+ * <p>
+ * The workers can be paused by a condition (see {@link #pauseWhen(BooleanSupplier)}), e.g. while
+ * the process step after the stage cannot keep up. Paused workers do not take any new task and
+ * check the condition again every second.
+ *
+ * @param <T> the type of the tasks of the stage
+ * @since 1.0.0
+ */
+public class StageExecutor<T> implements StageExecutorMBean {
+
+  private static final Logger log = getLogger(StageExecutor.class);
+  private static final long POLL_TIMEOUT_MILLIS = 1000;
+  /**
+   * Weight of the latest task in the exponentially weighted moving average of the task duration.
+   */
+  private static final double LATENCY_WEIGHT = 0.2;
+  private final Stage<T> stage;
+  private final ThreadMode threadMode;
+  private final ExecutorService executor;
+  private final AtomicInteger targetWorkers = new AtomicInteger(0);
+  private final AtomicInteger runningWorkers = new AtomicInteger(0);
+  private final AtomicInteger activeWorkers = new AtomicInteger(0);
+  private final AtomicInteger workerNumber = new AtomicInteger(1);
+  private final AtomicLong processedTasks = new AtomicLong(0);
+  private final AtomicLong meanTaskMillis = new AtomicLong(Double.doubleToLongBits(0));
+  private volatile BooleanSupplier pauseCondition = () -> false;
+  private volatile boolean paused = false;
+  private boolean shutdown = false;
+
+  /**
+   * Creates an executor without any workers, see {@link #setWorkers(int)}.
+   *
+   * @param stage      the stage to run
+   * @param threadMode the kind of threads of the workers, falls back to
+   *                   {@link ThreadMode#PLATFORM} if not supported by the Java runtime
+   * @since 1.0.0
+   */
+  public StageExecutor(Stage<T> stage, ThreadMode threadMode) {
+    this.stage = Objects.requireNonNull(stage, "stage must not be null");
+    Objects.requireNonNull(threadMode, "threadMode must not be null");
+    if (!threadMode.isSupported()) {
+      log.warn("Thread mode {} is not supported by this Java runtime, stage {} uses {} threads",
+          threadMode, stage.name(), ThreadMode.PLATFORM);
+      threadMode = ThreadMode.PLATFORM;
+    }
+    this.threadMode = threadMode;
+    this.executor = threadMode.newExecutor();
+  }
+
+  public Stage<T> stage() {
+    return stage;
+  }
+
+  @Override
+  public String getName() {
+    return stage.name();
+  }
+
+  @Override
+  public String getThreadMode() {
+    return threadMode.name();
+  }
+
+  @Override
+  public int getWorkers() {
+    return targetWorkers.get();
+  }
+
+  /**
+   * Sets the number of workers of the stage. Surplus workers finish their current task before they
+   * retire.
+   *
+   * @param workers the number of workers, must not be negative
+   * @throws IllegalArgumentException if the number of workers is negative
+   * @throws IllegalStateException    if the executor has been shut down already
+   * @since 1.0.0
+   */
+  @Override
+  public synchronized void setWorkers(int workers) {
+    if (workers < 0) {
+      throw new IllegalArgumentException("Number of workers must not be negative");
+    }
+    if (shutdown) {
+      throw new IllegalStateException("Stage %s has been shut down".formatted(stage.name()));
+    }
+    int previous = targetWorkers.getAndSet(workers);
+    while (runningWorkers.get() < workers) {
+      runningWorkers.incrementAndGet();
+      executor.execute(this::work);
+    }
+    if (previous != workers) {
+      log.info("Stage {} has {} workers, before {}", stage.name(), workers, previous);
+    }
+  }
+
+  /**
+   * Pauses the workers of the stage as long as the condition holds.
+   *
+   * @param pauseCondition the condition, evaluated by every idle worker before it takes a task
+   * @since 1.0.0
+   */
+  public void pauseWhen(BooleanSupplier pauseCondition) {
+    this.pauseCondition = Objects.requireNonNull(pauseCondition,
+        "pauseCondition must not be null");
+  }
+
+  /**
+   * Checks if the workers of the stage are paused.
+   *
+   * @return <code>true</code>, if the workers do not take any new task, else <code>false</code>
+   * @since 1.0.0
+   */
+  @Override
+  public boolean isPaused() {
+    boolean pause = pauseCondition.getAsBoolean();
+    if (pause != paused) {
+      paused = pause;
+      if (pause) {
+        log.info("Pausing stage {}", stage.name());
+      } else {
+        log.info("Resuming stage {}", stage.name());
+      }
+    }
+    return pause;
+  }
+
+  @Override
+  public int getActiveWorkers() {
+    return activeWorkers.get();
+  }
+
+  @Override
+  public long getProcessedTasks() {
+    return processedTasks.get();
+  }
+
+  @Override
+  public long getBacklog() {
+    return stage.backlog();
+  }
+
+  /**
+   * The recent mean duration of processing a task, as exponentially weighted moving average.
+   *
+   * @return the mean task duration in milliseconds, <code>0</code> if no task has been processed
+   * yet
+   * @since 1.0.0
+   */
+  @Override
+  public double getMeanTaskMillis() {
+    return Double.longBitsToDouble(meanTaskMillis.get());
+  }
+
+  private void recordTaskDuration(long nanos) {
+    double millis = nanos / 1_000_000.0;
+    meanTaskMillis.updateAndGet(bits -> {
+      double mean = Double.longBitsToDouble(bits);
+      return Double.doubleToLongBits(
+          mean == 0 ? millis : mean + LATENCY_WEIGHT * (millis - mean));
+    });
+  }
+
+  private void work() {
+    Thread.currentThread().setName(stage.name() + "-" + workerNumber.getAndIncrement());
+    while (!retire()) {
+      if (isPaused()) {
+        pause();
+        continue;
+      }
+      Optional<T> task = stage.next(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      if (task.isEmpty()) {
+        continue;
+      }
+      activeWorkers.incrementAndGet();
+      long start = System.nanoTime();
+      try {
+        stage.process(task.get());
+      } catch (RuntimeException e) {
+        log.error("Unexpected error in stage {}", stage.name(), e);
+      } finally {
+        recordTaskDuration(System.nanoTime() - start);
+        activeWorkers.decrementAndGet();
+        processedTasks.incrementAndGet();
+      }
+    }
+    log.debug("Worker {} retired", Thread.currentThread().getName());
+  }
+
+  private static void pause() {
+    try {
+      Thread.sleep(POLL_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      // workers are retired by their stage executor, not by interruption
+    }
+  }
+
+  private boolean retire() {
+    int running;
+    while ((running = runningWorkers.get()) > targetWorkers.get()) {
+      if (runningWorkers.compareAndSet(running, running - 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Retires all workers and waits until they have finished their current task. No task is
+   * interrupted, since this might render the application in a non-recoverable state.
+   *
+   * @since 1.0.0
+   */
+  public void shutdown() {
+    synchronized (this) {
+      shutdown = true;
+      targetWorkers.set(0);
+    }
+    executor.shutdown();
+    while (true) {
+      try {
+        if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+          break;
+        }
+        log.debug("Stage {} still has {} active workers...", stage.name(), activeWorkers.get());
+      } catch (InterruptedException e) {
+        // we keep waiting for the workers to finish their task
+      }
+    }
+    log.debug("Stage {} has been shut down", stage.name());
+  }
+}
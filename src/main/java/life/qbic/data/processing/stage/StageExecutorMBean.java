@@ -0,0 +1,30 @@
+package life.qbic.data.processing.stage;
+
+/**
+ * <b>Stage Executor MBean</b>
+ * <p>
+ * Management interface of a {@link StageExecutor}, to inspect and resize the worker pool of a
+ * stage at runtime via JMX (e.g. with <code>jconsole</code>).
+ *
+ * @since 1.0.0
+ */
+public interface StageExecutorMBean {
+
+  String getName();
+
+  String getThreadMode();
+
+  int getWorkers();
+
+  void setWorkers(int workers);
+
+  int getActiveWorkers();
+
+  long getProcessedTasks();
+
+  long getBacklog();
+
+  double getMeanTaskMillis();
+
+  boolean isPaused();
+}
@@ -0,0 +1,78 @@
+package life.qbic.data.processing.stage;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <b>Thread Mode</b>
+ * <p>
+ * The kind of threads the workers of a {@link StageExecutor} run on.
+ * <p>
+ * Virtual threads require Java 21 or newer. Since the application is built for Java 17, they are
+ * looked up at runtime (see {@link #isSupported()}).
+ *
+ * @since 1.0.0
+ */
+public enum ThreadMode {
+
+  PLATFORM, VIRTUAL;
+
+  private static final Optional<Method> VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+  private static Optional<Method> findVirtualThreadExecutor() {
+    try {
+      return Optional.of(Executors.class.getMethod("newVirtualThreadPerTaskExecutor"));
+    } catch (NoSuchMethodException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Parses the thread mode from its configuration value.
+   *
+   * @param value the configuration value, case-insensitive
+   * @return the matching thread mode
+   * @throws IllegalArgumentException if the value is not a known thread mode
+   * @since 1.0.0
+   */
+  public static ThreadMode from(String value) {
+    for (ThreadMode threadMode : values()) {
+      if (threadMode.name().equalsIgnoreCase(value.strip())) {
+        return threadMode;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Unknown thread mode '%s', must be 'platform' or 'virtual'".formatted(value));
+  }
+
+  /**
+   * Checks if the Java runtime supports the thread mode.
+   *
+   * @return <code>true</code>, if threads of this mode can be created, else <code>false</code>
+   * @since 1.0.0
+   */
+  public boolean isSupported() {
+    return this == PLATFORM || VIRTUAL_THREAD_EXECUTOR.isPresent();
+  }
+
+  /**
+   * Creates an executor service that runs every submitted worker on a thread of this mode.
+   *
+   * @return the executor service
+   * @throws UnsupportedOperationException if the thread mode is not supported
+   * @since 1.0.0
+   */
+  public ExecutorService newExecutor() {
+    if (this == PLATFORM) {
+      return Executors.newCachedThreadPool();
+    }
+    try {
+      return (ExecutorService) VIRTUAL_THREAD_EXECUTOR.orElseThrow(
+          () -> new UnsupportedOperationException("Virtual threads are not supported")).invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new UnsupportedOperationException("Cannot create virtual thread executor", e);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package life.qbic.data.processing.transfer;
+
+/**
+ * <b>CRC32C</b>
+ * <p>
+ * Combines the CRC32C checksums of consecutive parts of a file to the checksum of the whole file,
+ * so the parts can be checksummed in parallel (the algorithm of zlib's
+ * <code>crc32_combine</code>, with the Castagnoli polynomial).
+ *
+ * @since 1.0.0
+ */
+final class Crc32c {
+
+  /**
+   * The reversed Castagnoli polynomial.
+   */
+  private static final long POLYNOMIAL = 0x82F63B78L;
+
+  private Crc32c() {
+  }
+
+  /**
+   * Combines the checksums of two consecutive parts.
+   *
+   * @param crc1   the checksum of the first part
+   * @param crc2   the checksum of the second part
+   * @param length the length of the second part in bytes
+   * @return the checksum of both parts
+   * @since 1.0.0
+   */
+  static long combine(long crc1, long crc2, long length) {
+    if (length <= 0) {
+      return crc1;
+    }
+    long[] even = new long[32];
+    long[] odd = new long[32];
+    // operator for one zero bit
+    odd[0] = POLYNOMIAL;
+    long row = 1;
+    for (int n = 1; n < 32; n++) {
+      odd[n] = row;
+      row <<= 1;
+    }
+    // operators for two and four zero bits
+    square(even, odd);
+    square(odd, even);
+    // apply length zero bytes to crc1, squaring the operator for every bit of the length
+    do {
+      square(even, odd);
+      if ((length & 1) != 0) {
+        crc1 = times(even, crc1);
+      }
+      length >>= 1;
+      if (length == 0) {
+        break;
+      }
+      square(odd, even);
+      if ((length & 1) != 0) {
+        crc1 = times(odd, crc1);
+      }
+      length >>= 1;
+    } while (length != 0);
+    return crc1 ^ crc2;
+  }
+
+  private static long times(long[] matrix, long vector) {
+    long sum = 0;
+    for (int i = 0; vector != 0; i++, vector >>>= 1) {
+      if ((vector & 1) != 0) {
+        sum ^= matrix[i];
+      }
+    }
+    return sum;
+  }
+
+  private static void square(long[] square, long[] matrix) {
+    for (int n = 0; n < 32; n++) {
+      square[n] = times(matrix, matrix[n]);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package life.qbic.data.processing.transfer;
+
+import java.nio.file.Path;
+import java.util.OptionalLong;
+
+/**
+ * <b>Expected Checksums</b>
+ * <p>
+ * The checksums the files of a transfer are verified against, e.g. from a checksum manifest
+ * computed earlier in the pipeline.
+ *
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface ExpectedChecksums {
+
+  /**
+   * No checksums known, the source files are read a second time to verify a transfer.
+   *
+   * @return expected checksums that are always unknown
+   * @since 1.0.0
+   */
+  static ExpectedChecksums unknown() {
+    return file -> OptionalLong.empty();
+  }
+
+  /**
+   * The expected CRC32C checksum of a source file.
+   *
+   * @param sourceFile the source file
+   * @return the expected checksum, or {@link OptionalLong#empty()} if unknown
+   * @since 1.0.0
+   */
+  OptionalLong crc32c(Path sourceFile);
+}
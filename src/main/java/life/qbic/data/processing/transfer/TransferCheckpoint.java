@@ -0,0 +1,25 @@
+package life.qbic.data.processing.transfer;
+
+import java.io.IOException;
+
+/**
+ * <b>Transfer Checkpoint</b>
+ * <p>
+ * Called by {@link TransferEngine#move(java.nio.file.Path, java.nio.file.Path, ExpectedChecksums,
+ * TransferCheckpoint)} as soon as the content is complete at the target, before the source is
+ * deleted. A caller recording the checkpoint durably knows after a crash, whether the target or the
+ * source holds the complete content.
+ *
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface TransferCheckpoint {
+
+  /**
+   * Called once the target is complete.
+   *
+   * @throws IOException if the checkpoint cannot be recorded, the source is kept then
+   * @since 1.0.0
+   */
+  void reached() throws IOException;
+}
@@ -0,0 +1,512 @@
+package life.qbic.data.processing.transfer;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+import life.qbic.data.processing.transfer.TransferResult.Method;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <b>Transfer Engine</b>
+ * <p>
+ * Moves and copies files and directories between the directories of the process steps, which can
+ * reside on different file systems.
+ * <p>
+ * If source and target share the same {@link java.nio.file.FileStore}, no data is copied: a move
+ * is an atomic rename, a copy creates hard links. Otherwise, the data is copied with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which lets the
+ * operating system copy the data without passing it through the JVM (e.g. via
+ * <code>copy_file_range</code> or <code>sendfile</code> on Linux). Files larger than the chunk size
+ * are split into chunks, that are copied in parallel.
+ * <p>
+ * Copies can be verified (see {@link #copy(Path, Path, ExpectedChecksums)}): the CRC32C checksum of
+ * every file is computed while its content streams through the application, and compared with the
+ * expected checksum. Copies with a mismatching checksum are repeated.
+ * <p>
+ * Data is copied into a hidden sibling of the target first, which is renamed to the target once
+ * the copy is complete and verified. A failed copy is deleted, so the target never exists
+ * partially.
+ * <p>
+ * The throughput of every transfer is logged and returned as {@link TransferResult}.
+ *
+ * @since 1.0.0
+ */
+public class TransferEngine {
+
+  /**
+   * The number of times the copy of a file is repeated, if its checksum does not match.
+   */
+  public static final int VERIFICATION_RETRIES = 2;
+  private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+  private static final Logger log = getLogger(TransferEngine.class);
+  private static final AtomicInteger threadNumber = new AtomicInteger(1);
+  private final int parallelism;
+  private final long chunkSize;
+  private final ThreadPoolExecutor chunkExecutor;
+  private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(
+      () -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+  /**
+   * @param parallelism the maximal number of chunks copied in parallel
+   * @param chunkSize   the size of the chunks in bytes, smaller files are copied in one piece
+   * @since 1.0.0
+   */
+  public TransferEngine(int parallelism, long chunkSize) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be greater than 0");
+    }
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be greater than 0");
+    }
+    this.parallelism = parallelism;
+    this.chunkSize = chunkSize;
+    this.chunkExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), runnable -> {
+      var thread = new Thread(runnable, "Transfer-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.chunkExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  private static boolean sameFileStore(Path source, Path targetDirectory) {
+    try {
+      return Files.getFileStore(source).equals(Files.getFileStore(targetDirectory));
+    } catch (IOException e) {
+      log.debug("Cannot determine file stores of {} and {}", source, targetDirectory, e);
+      return false;
+    }
+  }
+
+  private static void delete(Path path) throws IOException {
+    Files.walkFileTree(path, new SimpleFileVisitor<>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        if (exc != null) {
+          throw exc;
+        }
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Moves a file or directory. Within the same file store, the source is renamed atomically.
+   * Otherwise, it is copied and deleted afterwards.
+   *
+   * @param source the file or directory to move
+   * @param target the new path, must not exist
+   * @return the result of the transfer
+   * @throws IOException if the source cannot be moved
+   * @since 1.0.0
+   */
+  public TransferResult move(Path source, Path target) throws IOException {
+    return move(source, target, null);
+  }
+
+  /**
+   * Moves a file or directory like {@link #move(Path, Path)}. If the content has to be copied, the
+   * copy is verified like {@link #copy(Path, Path, ExpectedChecksums)}, before the source is
+   * deleted.
+   *
+   * @param source            the file or directory to move
+   * @param target            the new path, must not exist
+   * @param expectedChecksums the checksums to verify copied files against
+   * @return the result of the transfer
+   * @throws IOException if the source cannot be moved or the copy cannot be verified
+   * @since 1.0.0
+   */
+  public TransferResult move(Path source, Path target, ExpectedChecksums expectedChecksums)
+      throws IOException {
+    return move(source, target, expectedChecksums, () -> {
+    });
+  }
+
+  /**
+   * Moves a file or directory like {@link #move(Path, Path, ExpectedChecksums)} and calls the
+   * checkpoint as soon as the target is complete: right after renaming, or after copying and
+   * before deleting the source.
+   *
+   * @param source            the file or directory to move
+   * @param target            the new path, must not exist
+   * @param expectedChecksums the checksums to verify copied files against
+   * @param checkpoint        called once the target is complete
+   * @return the result of the transfer
+   * @throws IOException if the source cannot be moved, the copy cannot be verified or the
+   *                     checkpoint fails. A copied source is not deleted, if the checkpoint
+   *                     fails.
+   * @since 1.0.0
+   */
+  public TransferResult move(Path source, Path target, ExpectedChecksums expectedChecksums,
+      TransferCheckpoint checkpoint) throws IOException {
+    long start = System.nanoTime();
+    if (sameFileStore(source, target.toAbsolutePath().getParent())) {
+      try {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        checkpoint.reached();
+        return report(source, target, new TransferResult(Method.RENAME, 0, 0,
+            System.nanoTime() - start));
+      } catch (AtomicMoveNotSupportedException e) {
+        log.debug("Cannot rename {} atomically, copying instead", source);
+      }
+    }
+    var copy = transfer(source, target, false, expectedChecksums);
+    checkpoint.reached();
+    delete(source);
+    return report(source, target, new TransferResult(copy.method(), copy.files(), copy.bytes(),
+        System.nanoTime() - start));
+  }
+
+  /**
+   * Copies a file or directory.
+   * <p>
+   * Within the same file store, the copied files are hard links to the source files, so they share
+   * their content with the source. This suits copies that are followed by deleting the source;
+   * otherwise, neither source nor target files must be modified in place afterwards.
+   *
+   * @param source the file or directory to copy
+   * @param target the path of the copy, must not exist
+   * @return the result of the transfer
+   * @throws IOException if the source cannot be copied
+   * @since 1.0.0
+   */
+  public TransferResult copy(Path source, Path target) throws IOException {
+    return copy(source, target, null);
+  }
+
+  /**
+   * Copies a file or directory like {@link #copy(Path, Path)} and verifies every copied file.
+   * <p>
+   * The CRC32C checksum of every file is computed inline, while the content streams to the target,
+   * and compared with its expected checksum. If the expected checksum is unknown, the source file
+   * is read a second time for comparison. A file with a mismatching checksum is copied again, up to
+   * {@link #VERIFICATION_RETRIES} times. Hard links need no verification, since they share their
+   * content with the source.
+   *
+   * @param source            the file or directory to copy
+   * @param target            the path of the copy, must not exist
+   * @param expectedChecksums the checksums to verify copied files against, <code>null</code> to
+   *                          skip verification
+   * @return the result of the transfer
+   * @throws IOException if the source cannot be copied or the copy cannot be verified
+   * @since 1.0.0
+   */
+  public TransferResult copy(Path source, Path target, ExpectedChecksums expectedChecksums)
+      throws IOException {
+    boolean link = sameFileStore(source, target.toAbsolutePath().getParent());
+    return report(source, target, transfer(source, target, link, expectedChecksums));
+  }
+
+  private TransferResult report(Path source, Path target, TransferResult result) {
+    if (result.method() == Method.RENAME) {
+      log.info("Renamed {} to {} in {} ms", source, target, result.millis());
+    } else {
+      log.info("Transferred {} to {} ({}, {} files, {} bytes) in {} ms, {} bytes/s", source,
+          target, result.method(), result.files(), result.bytes(), result.millis(),
+          Math.round(result.bytesPerSecond()));
+    }
+    return result;
+  }
+
+  private TransferResult transfer(Path source, Path target, boolean link,
+      ExpectedChecksums expectedChecksums) throws IOException {
+    long start = System.nanoTime();
+    if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+      throw new FileAlreadyExistsException(target.toString());
+    }
+    var temporaryTarget = target.resolveSibling(
+        ".%s.%s.tmp".formatted(target.getFileName(), UUID.randomUUID()));
+    var visitor = new CopyVisitor(source, temporaryTarget, link, expectedChecksums);
+    try {
+      Files.walkFileTree(source, visitor);
+      Files.move(temporaryTarget, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      try {
+        if (Files.exists(temporaryTarget, LinkOption.NOFOLLOW_LINKS)) {
+          delete(temporaryTarget);
+        }
+      } catch (IOException cleanupException) {
+        e.addSuppressed(cleanupException);
+      }
+      throw e;
+    }
+    return new TransferResult(visitor.copiedFiles > 0 ? Method.COPY : Method.LINK, visitor.files,
+        visitor.bytes, System.nanoTime() - start);
+  }
+
+  /**
+   * Copies the content of a regular file, in parallel chunks if it exceeds the chunk size.
+   */
+  private void copyContent(Path source, Path target, long size) throws IOException {
+    try (var in = FileChannel.open(source, StandardOpenOption.READ);
+        var out = FileChannel.open(target, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE)) {
+      if (size <= chunkSize || parallelism == 1) {
+        transferRange(in, out, 0, size);
+        return;
+      }
+    }
+    List<Future<?>> chunks = new ArrayList<>();
+    for (long position = 0; position < size; position += chunkSize) {
+      long chunkStart = position;
+      long chunkLength = Math.min(chunkSize, size - position);
+      chunks.add(chunkExecutor.submit(() -> {
+        try (var in = FileChannel.open(source, StandardOpenOption.READ);
+            var out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+          out.position(chunkStart);
+          transferRange(in, out, chunkStart, chunkLength);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }));
+    }
+    awaitChunks(source, chunks);
+  }
+
+  /**
+   * Copies a file and verifies its checksum, repeating the copy in case of a mismatch.
+   */
+  private void copyVerified(Path source, Path target, long size,
+      ExpectedChecksums expectedChecksums) throws IOException {
+    for (int attempt = 0; ; attempt++) {
+      long actual = copyContentChecksummed(source, target, size);
+      var expected = expectedChecksums.crc32c(source);
+      long expectedChecksum = expected.isPresent() ? expected.getAsLong() : checksum(source);
+      if (actual == expectedChecksum) {
+        return;
+      }
+      Files.delete(target);
+      if (attempt == VERIFICATION_RETRIES) {
+        throw new TransferVerificationException(
+            "Checksum of %s does not match after %d attempts".formatted(source, attempt + 1));
+      }
+      log.warn("Checksum of {} does not match ({} instead of {}), copying again", source,
+          "%08x".formatted(actual), "%08x".formatted(expectedChecksum));
+    }
+  }
+
+  /**
+   * Copies the content of a regular file like {@link #copyContent(Path, Path, long)}, computing
+   * its checksum on the way.
+   *
+   * @return the CRC32C checksum of the copied content
+   */
+  private long copyContentChecksummed(Path source, Path target, long size) throws IOException {
+    // created up front, so the chunks can be written in any order
+    Files.createFile(target);
+    if (size <= chunkSize || parallelism == 1) {
+      return copyChecksummedRange(source, target, 0, size);
+    }
+    int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+    long[] checksums = new long[chunkCount];
+    List<Future<?>> chunks = new ArrayList<>();
+    for (int i = 0; i < chunkCount; i++) {
+      int chunk = i;
+      long chunkStart = i * chunkSize;
+      long chunkLength = Math.min(chunkSize, size - chunkStart);
+      chunks.add(chunkExecutor.submit(() -> {
+        try {
+          checksums[chunk] = copyChecksummedRange(source, target, chunkStart, chunkLength);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }));
+    }
+    awaitChunks(source, chunks);
+    long checksum = checksums[0];
+    for (int i = 1; i < chunkCount; i++) {
+      checksum = Crc32c.combine(checksum, checksums[i], Math.min(chunkSize, size - i * chunkSize));
+    }
+    return checksum;
+  }
+
+  private long copyChecksummedRange(Path source, Path target, long position, long count)
+      throws IOException {
+    var buffer = buffers.get();
+    var crc32c = new CRC32C();
+    try (var in = FileChannel.open(source, StandardOpenOption.READ);
+        var out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+      long end = position + count;
+      while (position < end) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), end - position));
+        int read = in.read(buffer, position);
+        if (read < 0) {
+          throw new IOException("Unexpected end of file at position %d".formatted(position));
+        }
+        buffer.flip();
+        crc32c.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+          position += out.write(buffer, position);
+        }
+      }
+    }
+    return crc32c.getValue();
+  }
+
+  private long checksum(Path file) throws IOException {
+    var buffer = buffers.get();
+    var crc32c = new CRC32C();
+    try (var in = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer.clear();
+      while (in.read(buffer) != -1) {
+        buffer.flip();
+        crc32c.update(buffer);
+        buffer.clear();
+      }
+    }
+    return crc32c.getValue();
+  }
+
+  /**
+   * Waits for all chunks of a file. After a failure, chunks that have not started yet are
+   * cancelled, but running chunks are still awaited, so nothing writes to the target anymore when
+   * the failure is thrown and the target can be deleted.
+   */
+  private static void awaitChunks(Path source, List<Future<?>> chunks) throws IOException {
+    IOException failure = null;
+    boolean interrupted = false;
+    for (Future<?> chunk : chunks) {
+      while (true) {
+        try {
+          chunk.get();
+          break;
+        } catch (CancellationException e) {
+          break;
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause() instanceof UncheckedIOException uncheckedIOException
+                ? uncheckedIOException.getCause()
+                : new IOException("Cannot copy %s".formatted(source), e.getCause());
+            chunks.forEach(pending -> pending.cancel(false));
+          }
+          break;
+        } catch (InterruptedException e) {
+          if (!interrupted) {
+            interrupted = true;
+            chunks.forEach(pending -> pending.cancel(false));
+          }
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+      if (failure == null) {
+        failure = new IOException("Interrupted while copying %s".formatted(source));
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static void transferRange(FileChannel in, FileChannel out, long position, long count)
+      throws IOException {
+    while (count > 0) {
+      long transferred = in.transferTo(position, count, out);
+      if (transferred <= 0) {
+        throw new IOException("Unexpected end of file at position %d".formatted(position));
+      }
+      position += transferred;
+      count -= transferred;
+    }
+  }
+
+  private class CopyVisitor extends SimpleFileVisitor<Path> {
+
+    private final Path source;
+    private final Path target;
+    private final ExpectedChecksums expectedChecksums;
+    private boolean link;
+    private long files = 0;
+    private long copiedFiles = 0;
+    private long bytes = 0;
+
+    private CopyVisitor(Path source, Path target, boolean link,
+        ExpectedChecksums expectedChecksums) {
+      this.source = source;
+      this.target = target;
+      this.link = link;
+      this.expectedChecksums = expectedChecksums;
+    }
+
+    private Path targetOf(Path path) {
+      return target.resolve(source.relativize(path).toString());
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+        throws IOException {
+      Files.createDirectory(targetOf(dir));
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+      var targetFile = targetOf(file);
+      files++;
+      bytes += attrs.size();
+      if (!attrs.isRegularFile()) {
+        Files.copy(file, targetFile, LinkOption.NOFOLLOW_LINKS);
+        return FileVisitResult.CONTINUE;
+      }
+      if (link) {
+        try {
+          Files.createLink(targetFile, file);
+          return FileVisitResult.CONTINUE;
+        } catch (IOException | UnsupportedOperationException e) {
+          log.debug("Cannot create hard link for {}, copying instead", file, e);
+          link = false;
+        }
+      }
+      if (expectedChecksums == null) {
+        copyContent(file, targetFile, attrs.size());
+      } else {
+        copyVerified(file, targetFile, attrs.size(), expectedChecksums);
+      }
+      Files.setLastModifiedTime(targetFile, attrs.lastModifiedTime());
+      copiedFiles++;
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+      if (exc != null) {
+        throw exc;
+      }
+      Files.setLastModifiedTime(targetOf(dir), Files.getLastModifiedTime(dir));
+      return FileVisitResult.CONTINUE;
+    }
+  }
+}
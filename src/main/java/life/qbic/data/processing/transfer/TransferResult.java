@@ -0,0 +1,49 @@
+package life.qbic.data.processing.transfer;
+
+/**
+ * <b>Transfer Result</b>
+ * <p>
+ * Summary of a transfer performed by the {@link TransferEngine}.
+ *
+ * @param method the way the content has been transferred
+ * @param files  the number of transferred files, <code>0</code> for a rename
+ * @param bytes  the number of transferred bytes, <code>0</code> for a rename
+ * @param nanos  the duration of the transfer in nanoseconds
+ * @since 1.0.0
+ */
+public record TransferResult(Method method, long files, long bytes, long nanos) {
+
+  /**
+   * The throughput of the transfer.
+   *
+   * @return the transferred bytes per second
+   * @since 1.0.0
+   */
+  public double bytesPerSecond() {
+    return nanos == 0 ? 0 : bytes * 1_000_000_000.0 / nanos;
+  }
+
+  public long millis() {
+    return nanos / 1_000_000;
+  }
+
+  /**
+   * The way the content has been transferred.
+   *
+   * @since 1.0.0
+   */
+  public enum Method {
+    /**
+     * Atomic rename within the same file store, no data has been copied.
+     */
+    RENAME,
+    /**
+     * Hard links within the same file store, no data has been copied.
+     */
+    LINK,
+    /**
+     * The data has been copied.
+     */
+    COPY
+  }
+}
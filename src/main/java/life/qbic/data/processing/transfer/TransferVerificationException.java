@@ -0,0 +1,17 @@
+package life.qbic.data.processing.transfer;
+
+import java.io.IOException;
+
+/**
+ * <b>Transfer Verification Exception</b>
+ * <p>
+ * Thrown if a copied file does not match its expected checksum, even after repeated copies.
+ *
+ * @since 1.0.0
+ */
+public class TransferVerificationException extends IOException {
+
+  public TransferVerificationException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,213 @@
+package life.qbic.data.processing
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardOpenOption
+import java.time.Instant
+import life.qbic.data.processing.registration.RegistrationRequest
+import spock.lang.Specification
+import spock.lang.TempDir
+
+class RegistrationRequestLogSpec extends Specification {
+
+  /**
+   * The size of the magic number at the start of the log.
+   */
+  static final int MAGIC_SIZE = 4
+  static final int RECORD_HEADER_SIZE = 8
+
+  @TempDir
+  Path directory
+
+  Path file
+
+  def setup() {
+    file = directory.resolve("registration-requests")
+  }
+
+  def "unacknowledged requests are recovered in the order of their appending"() {
+    given:
+    def requestLog = RegistrationRequestLog.open(file)
+    requestLog.append(request("a"))
+    requestLog.append(request("b"))
+    requestLog.append(request("c"))
+    requestLog.acknowledge(request("b"))
+    requestLog.close()
+
+    when:
+    def recovered = RegistrationRequestLog.open(file)
+
+    then:
+    recovered.unacknowledged() == [request("a"), request("c")]
+    recovered.unacknowledged()*.timestamp() == [request("a").timestamp(),
+                                                request("c").timestamp()]
+    recovered.unacknowledged()*.userPath() == [Paths.get("/users/alice")] * 2
+
+    cleanup:
+    recovered?.close()
+  }
+
+  def "a pending request is only appended once"() {
+    given:
+    def requestLog = RegistrationRequestLog.open(file)
+
+    when:
+    requestLog.append(request("a"))
+    requestLog.append(request("a"))
+    requestLog.close()
+
+    then:
+    requestLog.unacknowledged() == [request("a")]
+    recordOffsets(file).size() == 1
+  }
+
+  def "a truncated record ends the log"() {
+    given:
+    def requestLog = RegistrationRequestLog.open(file)
+    requestLog.append(request("a"))
+    requestLog.append(request("b"))
+    requestLog.close()
+    def recordOfB = recordOffsets(file)[1]
+    truncate(file, recordOfB + cut)
+
+    when:
+    def recovered = RegistrationRequestLog.open(file)
+
+    then:
+    recovered.unacknowledged() == [request("a")]
+
+    cleanup:
+    recovered?.close()
+
+    where:
+    cut << [2, RECORD_HEADER_SIZE, RECORD_HEADER_SIZE + 10]
+  }
+
+  def "a corrupt record ends the log"() {
+    given:
+    def requestLog = RegistrationRequestLog.open(file)
+    requestLog.append(request("a"))
+    requestLog.append(request("b"))
+    requestLog.append(request("c"))
+    requestLog.close()
+    flipByte(file, recordOffsets(file)[1] + RECORD_HEADER_SIZE + 3)
+
+    when:
+    def recovered = RegistrationRequestLog.open(file)
+
+    then:
+    recovered.unacknowledged() == [request("a")]
+
+    cleanup:
+    recovered?.close()
+  }
+
+  def "opening the log compacts it to the unacknowledged requests"() {
+    given:
+    def requestLog = RegistrationRequestLog.open(file)
+    requestLog.append(request("a"))
+    requestLog.append(request("b"))
+    requestLog.acknowledge(request("a"))
+    requestLog.close()
+
+    when:
+    RegistrationRequestLog.open(file).close()
+
+    then:
+    recordOffsets(file).size() == 1
+    Files.notExists(directory.resolve("registration-requests.compact"))
+
+    when:
+    def recovered = RegistrationRequestLog.open(file)
+
+    then:
+    recovered.unacknowledged() == [request("b")]
+    recovered.unacknowledged()[0].timestamp() == request("b").timestamp()
+
+    cleanup:
+    recovered?.close()
+  }
+
+  def "the log is compacted once all requests have been acknowledged"() {
+    given:
+    def requestLog = RegistrationRequestLog.open(file)
+    def requests = (1..1000).collect { request("dataset-$it") }
+    requests.each { requestLog.append(it) }
+
+    when:
+    requests.each { requestLog.acknowledge(it) }
+    requestLog.close()
+
+    then:
+    recordOffsets(file).isEmpty()
+    RegistrationRequestLog.open(file).unacknowledged().isEmpty()
+  }
+
+  def "requests appended after a compaction are recovered"() {
+    given:
+    def requestLog = RegistrationRequestLog.open(file)
+    def requests = (1..1000).collect { request("dataset-$it") }
+    requests.each { requestLog.append(it) }
+    requests.each { requestLog.acknowledge(it) }
+
+    when:
+    requestLog.append(request("a"))
+    requestLog.close()
+    def recovered = RegistrationRequestLog.open(file)
+
+    then:
+    recovered.unacknowledged() == [request("a")]
+
+    cleanup:
+    recovered?.close()
+  }
+
+  def "a file that is no registration request log is rejected"() {
+    given:
+    Files.writeString(file, "no log")
+
+    when:
+    RegistrationRequestLog.open(file)
+
+    then:
+    thrown(IOException)
+  }
+
+  private static RegistrationRequest request(String dataset) {
+    new RegistrationRequest(Instant.ofEpochSecond(1_700_000_000L, dataset.hashCode() & 0xffff),
+        1_000L, Paths.get("/users/alice/registration"),
+        Paths.get("/users/alice/registration", dataset), Paths.get("/users/alice"))
+  }
+
+  /**
+   * The offsets of all records in the log. The log is preallocated with zeros, a record length of
+   * zero marks the end of the records.
+   */
+  private static List<Long> recordOffsets(Path file) {
+    def content = ByteBuffer.wrap(Files.readAllBytes(file))
+    List<Long> offsets = []
+    int offset = MAGIC_SIZE
+    while (offset + RECORD_HEADER_SIZE <= content.limit() && content.getInt(offset) > 0) {
+      offsets << (long) offset
+      offset += RECORD_HEADER_SIZE + content.getInt(offset)
+    }
+    offsets
+  }
+
+  private static void truncate(Path file, long size) {
+    try (def channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(size)
+    }
+  }
+
+  private static void flipByte(Path file, long offset) {
+    try (def channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      def value = ByteBuffer.allocate(1)
+      channel.read(value, offset)
+      channel.write(ByteBuffer.wrap([(byte) (value.get(0) ^ 0xff)] as byte[]), offset)
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package life.qbic.data.processing
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import spock.lang.Specification
+import spock.lang.Timeout
+
+class RingBufferSpec extends Specification {
+
+  def "the capacity is at least two slots"() {
+    expect:
+    new RingBuffer<String>(requested).capacity() == capacity
+
+    where:
+    requested | capacity
+    1         | 2
+    2         | 2
+    5         | 5
+  }
+
+  def "a capacity below one is rejected"() {
+    when:
+    new RingBuffer<String>(0)
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def "items are taken in the order they were inserted"() {
+    given:
+    def buffer = new RingBuffer<Integer>(4)
+
+    when:
+    def accepted = (1..5).collect { buffer.offer(it) }
+
+    then:
+    accepted == [true, true, true, true, false]
+    buffer.size() == 4
+    (1..5).collect { buffer.poll() } == [1, 2, 3, 4, null]
+    buffer.size() == 0
+  }
+
+  def "slots are reused after the buffer has been drained"() {
+    given:
+    def buffer = new RingBuffer<Integer>(3)
+    List<Integer> taken = []
+
+    when:
+    10.times { round ->
+      (1..3).each { assert buffer.offer(round * 3 + it) }
+      assert !buffer.offer(-1)
+      3.times { taken << buffer.poll() }
+    }
+
+    then:
+    taken == (1..30).toList()
+    buffer.poll() == null
+  }
+
+  @Timeout(30)
+  def "under contention, every item is taken exactly once and in order per producer"() {
+    given:
+    def buffer = new RingBuffer<Integer>(16)
+    int producers = 4
+    int consumers = 4
+    int itemsPerProducer = 20_000
+    int items = producers * itemsPerProducer
+    def consumed = new AtomicInteger()
+    def start = new CountDownLatch(1)
+    def executor = Executors.newFixedThreadPool(producers + consumers)
+
+    when:
+    def producing = (0..<producers).collect { producer ->
+      executor.submit({
+        start.await()
+        for (int i = 0; i < itemsPerProducer; i++) {
+          while (!buffer.offer(producer * itemsPerProducer + i)) {
+            Thread.onSpinWait()
+          }
+        }
+      } as Callable)
+    }
+    def consuming = (0..<consumers).collect {
+      executor.submit({
+        start.await()
+        List<Integer> received = []
+        while (consumed.get() < items) {
+          def item = buffer.poll()
+          if (item == null) {
+            Thread.onSpinWait()
+            continue
+          }
+          received << item
+          consumed.incrementAndGet()
+        }
+        received
+      } as Callable<List<Integer>>)
+    }
+    start.countDown()
+    producing*.get()
+    def taken = consuming*.get()
+
+    then:
+    taken.flatten().sort() == (0..<items).toList()
+    taken.every { itemsOfConsumer ->
+      itemsOfConsumer.groupBy { it.intdiv(itemsPerProducer) }.values()
+          .every { it == it.sort(false) }
+    }
+    buffer.size() == 0
+    buffer.poll() == null
+
+    cleanup:
+    executor.shutdownNow()
+  }
+}
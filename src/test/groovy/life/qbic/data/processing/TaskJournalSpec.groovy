@@ -0,0 +1,200 @@
+package life.qbic.data.processing
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import life.qbic.data.processing.TaskJournal.Step
+import life.qbic.data.processing.TaskJournal.Task
+import spock.lang.Specification
+import spock.lang.TempDir
+
+class TaskJournalSpec extends Specification {
+
+  @TempDir
+  Path directory
+
+  Path file
+
+  def setup() {
+    file = directory.resolve("task-journal")
+  }
+
+  def "tasks in flight are recovered with the attributes of all their steps"() {
+    given:
+    def journal = TaskJournal.open(file)
+    journal.record("evaluation", "task-1", Step.STARTED, ["publishedDirectory": "/target/task-1"])
+    journal.record("evaluation", "task-1", Step.PUBLISHED)
+    journal.record("evaluation", "task-2", Step.STARTED)
+    journal.record("evaluation", "task-2", Step.COMPLETED)
+    journal.record("registration", "task-3", Step.FILES_MOVED)
+    journal.record("registration", "task-4", Step.STARTED)
+    journal.record("registration", "task-4", Step.ROLLED_BACK)
+    journal.close()
+
+    when:
+    def recovered = TaskJournal.open(file)
+
+    then:
+    recovered.inFlight("evaluation") == [new Task("evaluation", "task-1", Step.PUBLISHED,
+        ["publishedDirectory": "/target/task-1"])]
+    recovered.inFlight("registration")*.task() == ["task-3"]
+    recovered.inFlight("processing").isEmpty()
+
+    cleanup:
+    recovered?.close()
+  }
+
+  def "a truncated record ends the journal"() {
+    given:
+    def journal = TaskJournal.open(file)
+    journal.record("evaluation", "task-1", Step.STARTED)
+    long sizeOfFirstRecord = Files.size(file)
+    journal.record("evaluation", "task-2", Step.STARTED, ["publishedDirectory": "/target/task-2"])
+    journal.close()
+    truncate(file, cut)
+
+    when:
+    def recovered = TaskJournal.open(file)
+
+    then:
+    Files.size(file) == sizeOfFirstRecord
+    recovered.inFlight("evaluation")*.task() == ["task-1"]
+
+    cleanup:
+    recovered?.close()
+
+    where:
+    cut << [1, 4, 9]
+  }
+
+  def "a corrupt record ends the journal"() {
+    given:
+    def journal = TaskJournal.open(file)
+    journal.record("evaluation", "task-1", Step.STARTED)
+    long corruptOffset = Files.size(file) + 12
+    journal.record("evaluation", "task-2", Step.STARTED)
+    journal.record("evaluation", "task-3", Step.STARTED)
+    journal.close()
+    flipByte(file, corruptOffset)
+
+    when:
+    def recovered = TaskJournal.open(file)
+
+    then:
+    recovered.inFlight("evaluation")*.task() == ["task-1"]
+
+    cleanup:
+    recovered?.close()
+  }
+
+  def "a journal recovered from a corrupt tail can be continued"() {
+    given:
+    def journal = TaskJournal.open(file)
+    journal.record("evaluation", "task-1", Step.STARTED)
+    journal.record("evaluation", "task-2", Step.STARTED)
+    journal.close()
+    flipByte(file, Files.size(file) - 1)
+    def recovered = TaskJournal.open(file)
+
+    when:
+    recovered.record("evaluation", "task-3", Step.STARTED)
+    recovered.close()
+    def reopened = TaskJournal.open(file)
+
+    then:
+    reopened.inFlight("evaluation")*.task() == ["task-1", "task-3"]
+
+    cleanup:
+    reopened?.close()
+  }
+
+  def "opening the journal compacts it to the tasks in flight"() {
+    given:
+    def journal = TaskJournal.open(file)
+    100.times {
+      journal.record("evaluation", "finished-$it", Step.STARTED, ["key": "value"])
+      journal.record("evaluation", "finished-$it", Step.COMPLETED)
+    }
+    journal.record("evaluation", "task-1", Step.STARTED, ["key": "value"])
+    journal.record("evaluation", "task-1", Step.PUBLISHED)
+    journal.close()
+    def expectedFile = directory.resolve("expected-journal")
+    def expected = TaskJournal.open(expectedFile)
+    expected.record("evaluation", "task-1", Step.PUBLISHED, ["key": "value"])
+    expected.close()
+
+    when:
+    def compacted = TaskJournal.open(file)
+
+    then:
+    Files.size(file) == Files.size(expectedFile)
+    Files.notExists(directory.resolve("task-journal.compact"))
+    compacted.inFlight("evaluation") == [new Task("evaluation", "task-1", Step.PUBLISHED,
+        ["key": "value"])]
+
+    cleanup:
+    compacted?.close()
+  }
+
+  def "concurrent records are all written durably"() {
+    given:
+    def journal = TaskJournal.open(file)
+    def executor = Executors.newFixedThreadPool(8)
+
+    when:
+    (0..<8).collect { worker ->
+      executor.submit({
+        50.times { journal.record("processing", "task-$worker-$it", Step.STARTED) }
+      } as Callable)
+    }*.get()
+    journal.close()
+    def recovered = TaskJournal.open(file)
+
+    then:
+    recovered.inFlight("processing").size() == 400
+
+    cleanup:
+    executor.shutdownNow()
+    recovered?.close()
+  }
+
+  def "a disabled journal records nothing"() {
+    given:
+    def journal = TaskJournal.disabled()
+
+    when:
+    journal.record("evaluation", "task-1", Step.STARTED)
+
+    then:
+    journal.inFlight("evaluation").isEmpty()
+  }
+
+  def "a file that is no task journal is rejected"() {
+    given:
+    Files.writeString(file, "no journal")
+
+    when:
+    TaskJournal.open(file)
+
+    then:
+    thrown(IOException)
+  }
+
+  private static void truncate(Path file, long bytes) {
+    try (def channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - bytes)
+    }
+  }
+
+  private static void flipByte(Path file, long offset) {
+    try (def channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      def value = ByteBuffer.allocate(1)
+      channel.read(value, offset)
+      channel.write(ByteBuffer.wrap([(byte) (value.get(0) ^ 0xff)] as byte[]), offset)
+    }
+  }
+}
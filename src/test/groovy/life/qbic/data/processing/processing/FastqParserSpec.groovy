@@ -0,0 +1,74 @@
+package life.qbic.data.processing.processing
+
+import life.qbic.data.processing.processing.FastqParser.FastqFormatException
+import spock.lang.Specification
+
+class FastqParserSpec extends Specification {
+
+  static final String FASTQ = "@read-1\nACGT\n+\nII#I\n" +
+      "@read-2\nACGTACGT\n+read-2\nIIIIIIII\n" +
+      "@read-3\nAC\n+\n5I\n"
+
+  def "statistics are collected from all records"() {
+    expect:
+    parse(FASTQ) == new FastqStatistics(3, 14, 2, 8, (int) ('#' as char), (int) ('I' as char))
+  }
+
+  def "the statistics do not depend on the chunk size"() {
+    expect:
+    parse(FASTQ, chunkSize) == parse(FASTQ)
+
+    where:
+    chunkSize << [1, 2, 3, 7, 16]
+  }
+
+  def "line endings and empty lines between records are accepted"() {
+    expect:
+    parse(content).reads() == 2
+    parse(content).bases() == 6
+
+    where:
+    content << ["@r1\r\nACGT\r\n+\r\nIIII\r\n@r2\r\nAC\r\n+\r\nII\r\n",
+                "@r1\nACGT\n+\nIIII\n\n\n@r2\nAC\n+\nII\n",
+                "@r1\nACGT\n+\nIIII\n@r2\nAC\n+\nII"]
+  }
+
+  def "a file without records has empty statistics"() {
+    expect:
+    parse(content) == FastqStatistics.EMPTY
+
+    where:
+    content << ["", "\n\n"]
+  }
+
+  def "invalid records are reported"() {
+    when:
+    parse(content)
+
+    then:
+    def e = thrown(FastqFormatException)
+    e.message == message
+
+    where:
+    content                                 | message
+    "read-1\nACGT\n+\nIIII\n"               | "record 1 does not start with '@'"
+    "@read-1\nACGT\n-\nIIII\n"              | "record 1 has no '+' separator line"
+    "@r1\nAC\n+\nII\n@r2\nACGT\n+\nIII\n"   | "record 2 has 3 quality scores for 4 bases"
+    "@r1\nAC\n+\nII\n@r2\nACGT\n+\nIIIII"   | "record 2 has 5 quality scores for 4 bases"
+    "@read-1\nACGT\n+\nIIII\n@read-2\nAC\n" | "record 2 is incomplete, the file is truncated"
+    "@read-1\nACGT\n+"                      | "record 1 is incomplete, the file is truncated"
+  }
+
+  private static FastqStatistics parse(String content) {
+    parse(content, Math.max(1, content.length()))
+  }
+
+  private static FastqStatistics parse(String content, int chunkSize) {
+    def bytes = content.bytes
+    def parser = new FastqParser()
+    for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+      parser.parse(bytes, offset, Math.min(chunkSize, bytes.length - offset))
+    }
+    parser.finish()
+  }
+}
@@ -0,0 +1,240 @@
+package life.qbic.data.processing.processing
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.GZIPOutputStream
+import life.qbic.data.processing.processing.GzipValidator.GzipFormatException
+import spock.lang.Specification
+import spock.lang.TempDir
+
+class GzipValidatorSpec extends Specification {
+
+  /**
+   * The empty block terminating every BGZF file.
+   */
+  static final byte[] BGZF_END_OF_FILE = [0x1f, 0x8b, 0x08, 0x04, 0, 0, 0, 0, 0, 0xff, 0x06, 0,
+                                          0x42, 0x43, 0x02, 0, 0x1b, 0, 0x03, 0, 0, 0, 0, 0, 0, 0,
+                                          0, 0] as byte[]
+
+  @TempDir
+  Path directory
+
+  ExecutorService executor = Executors.newFixedThreadPool(2)
+
+  GzipValidator validator = new GzipValidator(executor, new BufferPool(2, 128 * 1024))
+
+  def cleanup() {
+    executor.shutdownNow()
+  }
+
+  def "valid gzip files pass"() {
+    given:
+    def file = write("valid.fastq.gz", content)
+
+    when:
+    validate(file)
+
+    then:
+    noExceptionThrown()
+
+    where:
+    content << [gzip(fastq(1)), gzip(fastq(10_000)), concat(gzip(fastq(10)), gzip(fastq(20))),
+                gzip(new byte[0]), concat(gzip(fastq(10)), new byte[16])]
+  }
+
+  def "a truncated gzip member is detected"() {
+    given:
+    def complete = concat(gzip(fastq(100)), gzip(fastq(100)))
+    def file = write("truncated.fastq.gz", Arrays.copyOf(complete, complete.length - cut))
+
+    when:
+    validate(file)
+
+    then:
+    def e = thrown(GzipFormatException)
+    e.message == "unexpected end of file in gzip member 2, the file is truncated"
+
+    where:
+    cut << [1, 4, 8, 20]
+  }
+
+  def "a gzip member with a wrong checksum is detected"() {
+    given:
+    def content = gzip(fastq(100))
+    // the CRC32 is the first field of the trailer
+    content[content.length - 8] ^= 0x01
+    def file = write("corrupt.fastq.gz", content)
+
+    when:
+    validate(file)
+
+    then:
+    def e = thrown(GzipFormatException)
+    e.message.startsWith("CRC32 mismatch in gzip member 1")
+  }
+
+  def "a gzip member with a wrong size is detected"() {
+    given:
+    def content = gzip(fastq(100))
+    content[content.length - 4] ^= 0x01
+    def file = write("corrupt.fastq.gz", content)
+
+    when:
+    validate(file)
+
+    then:
+    def e = thrown(GzipFormatException)
+    e.message.startsWith("size mismatch in gzip member 1")
+  }
+
+  def "data after the last gzip member is detected"() {
+    given:
+    def file = write("garbage.fastq.gz", concat(gzip(fastq(10)), "garbage".bytes))
+
+    when:
+    validate(file)
+
+    then:
+    def e = thrown(GzipFormatException)
+    e.message == "unexpected data after gzip member 1"
+  }
+
+  def "a file without gzip header is rejected"() {
+    given:
+    def file = write("plain.fastq.gz", fastq(10))
+
+    when:
+    validate(file)
+
+    then:
+    def e = thrown(GzipFormatException)
+    e.message == "not in gzip format"
+  }
+
+  def "valid BGZF files pass"() {
+    given:
+    def content = (1..blocks).collect { bgzfBlock(random(dataSize, it)) } + [BGZF_END_OF_FILE]
+    def file = write("valid.fastq.bgz", concat(content as byte[][]))
+
+    when:
+    validate(file)
+
+    then:
+    noExceptionThrown()
+
+    where:
+    // the batches of the validator hold 128 KiB, so the larger files span several batches
+    blocks | dataSize
+    1      | 1_000
+    200    | 1_000
+    5      | 60_000
+  }
+
+  def "a BGZF file without end-of-file block is truncated"() {
+    given:
+    def file = write("truncated.fastq.bgz", concat(bgzfBlock(fastq(100)), bgzfBlock(fastq(100))))
+
+    when:
+    validate(file)
+
+    then:
+    def e = thrown(GzipFormatException)
+    e.message == "BGZF end-of-file block is missing, the file is truncated"
+  }
+
+  def "an incomplete BGZF block is truncated"() {
+    given:
+    def first = bgzfBlock(fastq(100))
+    def second = bgzfBlock(fastq(100))
+    def file = write("truncated.fastq.bgz",
+        concat(first, Arrays.copyOf(second, second.length - 10)))
+
+    when:
+    validate(file)
+
+    then:
+    def e = thrown(GzipFormatException)
+    e.message == "incomplete BGZF block at offset ${first.length}, the file is truncated"
+  }
+
+  def "a BGZF block with a wrong checksum is detected"() {
+    given:
+    def first = bgzfBlock(fastq(100))
+    def second = bgzfBlock(fastq(100))
+    second[second.length - 8] ^= 0x01
+    def file = write("corrupt.fastq.bgz", concat(first, second, BGZF_END_OF_FILE))
+
+    when:
+    validate(file)
+
+    then:
+    def e = thrown(GzipFormatException)
+    e.message.startsWith("CRC32 mismatch in BGZF block at offset ${first.length}")
+  }
+
+  private void validate(Path file) {
+    List<Future<?>> results = []
+    validator.submit(file, results)
+    try {
+      results.each { it.get() }
+    } catch (ExecutionException e) {
+      throw e.cause
+    }
+  }
+
+  private Path write(String name, byte[] content) {
+    Files.write(directory.resolve(name), content)
+  }
+
+  private static byte[] fastq(int reads) {
+    (1..reads).collect { "@read-$it\nACGTACGTAC\n+\nIIIIIIIIII\n" }.join().bytes
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    def content = new ByteArrayOutputStream()
+    parts.each { content.write(it) }
+    content.toByteArray()
+  }
+
+  private static byte[] random(int size, long seed) {
+    def data = new byte[size]
+    new Random(seed).nextBytes(data)
+    data
+  }
+
+  private static byte[] gzip(byte[] data) {
+    def compressed = new ByteArrayOutputStream()
+    new GZIPOutputStream(compressed).withCloseable { it.write(data) }
+    compressed.toByteArray()
+  }
+
+  /**
+   * A gzip member with the BGZF extra field, holding the total size of the block.
+   */
+  private static byte[] bgzfBlock(byte[] data) {
+    def deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true)
+    deflater.setInput(data)
+    deflater.finish()
+    def deflated = new byte[data.length + 1024]
+    int deflatedSize = deflater.deflate(deflated)
+    deflater.end()
+    def crc = new CRC32()
+    crc.update(data)
+    int blockSize = 18 + deflatedSize + 8
+    def block = ByteBuffer.allocate(blockSize).order(ByteOrder.LITTLE_ENDIAN)
+    block.put([0x1f, 0x8b, 0x08, 0x04, 0, 0, 0, 0, 0, 0xff] as byte[])
+    block.putShort((short) 6).put([0x42, 0x43] as byte[]).putShort((short) 2)
+    block.putShort((short) (blockSize - 1))
+    block.put(deflated, 0, deflatedSize)
+    block.putInt((int) crc.value).putInt(data.length)
+    block.array()
+  }
+}
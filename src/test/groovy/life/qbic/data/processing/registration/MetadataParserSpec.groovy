@@ -0,0 +1,87 @@
+package life.qbic.data.processing.registration
+
+import java.nio.file.Files
+import java.nio.file.Path
+import spock.lang.Specification
+import spock.lang.TempDir
+
+class MetadataParserSpec extends Specification {
+
+  @TempDir
+  Path directory
+
+  def "rows are parsed in the order of the file"() {
+    given:
+    def metadataFile = write("QABCD001AE\tR1.fastq.gz\n" +
+        "\n" +
+        "QABCD002AF\tR2.fastq.gz\tfurther column\n" +
+        "QABCD003AG\tdata/R3.fastq.gz")
+
+    expect:
+    MetadataParser.parse(metadataFile) == [
+        new RegistrationMetadata("QABCD001AE", "R1.fastq.gz"),
+        new RegistrationMetadata("QABCD002AF", "R2.fastq.gz"),
+        new RegistrationMetadata("QABCD003AG", "data/R3.fastq.gz")]
+  }
+
+  def "Windows line endings are accepted"() {
+    given:
+    def metadataFile = write("QABCD001AE\tR1.fastq.gz\r\nQABCD002AF\tR2.fastq.gz\r\n")
+
+    expect:
+    MetadataParser.parse(metadataFile)*.file() == ["R1.fastq.gz", "R2.fastq.gz"]
+  }
+
+  def "an empty metadata file has no entries"() {
+    expect:
+    MetadataParser.parse(write("")).isEmpty()
+  }
+
+  def "all malformed rows are reported with their line numbers"() {
+    given:
+    def metadataFile = write("QABCD001AE\tR1.fastq.gz\n" +
+        "QABCD002AF R2.fastq.gz\n" +
+        "\tR3.fastq.gz\n" +
+        "QABCD004AH\t\n" +
+        "QABCD005AI\t\tR5.fastq.gz\n")
+
+    when:
+    MetadataParser.parse(metadataFile)
+
+    then:
+    def e = thrown(ValidationException)
+    e.errorCode() == ErrorCode.INCOMPLETE_METADATA
+    e.message == "Cannot parse metadata entries: " +
+        "line 2 (no tab between measurement ID and file), " +
+        "line 3 (empty measurement ID), " +
+        "line 4 (empty file name), " +
+        "line 5 (empty file name)"
+  }
+
+  def "the number of reported rows is limited"() {
+    given:
+    def rows = (1..MetadataParser.MAX_REPORTED_ROWS + 5).collect { "QABCD00${it}AE" }
+    def metadataFile = write(rows.join("\n"))
+
+    when:
+    MetadataParser.parse(metadataFile)
+
+    then:
+    def e = thrown(ValidationException)
+    e.message.findAll(/line \d+/).size() == MetadataParser.MAX_REPORTED_ROWS
+    e.message.endsWith("line ${MetadataParser.MAX_REPORTED_ROWS} " +
+        "(no tab between measurement ID and file) and 5 more")
+  }
+
+  def "a missing metadata file cannot be read"() {
+    when:
+    MetadataParser.parse(directory.resolve("metadata.txt"))
+
+    then:
+    thrown(IOException)
+  }
+
+  private Path write(String content) {
+    Files.writeString(directory.resolve("metadata.txt"), content)
+  }
+}
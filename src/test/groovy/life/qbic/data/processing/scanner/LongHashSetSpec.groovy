@@ -0,0 +1,105 @@
+package life.qbic.data.processing.scanner
+
+import spock.lang.Specification
+
+class LongHashSetSpec extends Specification {
+
+  def "values are added once"() {
+    given:
+    def set = new LongHashSet()
+
+    expect:
+    set.add(value)
+    !set.add(value)
+    set.contains(value)
+    set.size() == 1
+
+    where:
+    value << [0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE]
+  }
+
+  def "a new set is empty"() {
+    given:
+    def set = new LongHashSet()
+
+    expect:
+    set.isEmpty()
+    set.size() == 0
+    !set.contains(0L)
+    !set.contains(42L)
+  }
+
+  def "the set grows beyond its expected size"() {
+    given:
+    def set = new LongHashSet(4)
+    def values = new Random(7).longs(10_000).toArray().toList().unique()
+
+    when:
+    values.each { set.add(it) }
+
+    then:
+    set.size() == values.size()
+    values.every { set.contains(it) }
+    !set.contains(values.max() + 1)
+  }
+
+  def "values differing in the upper bits only are kept apart"() {
+    given:
+    def set = new LongHashSet()
+    def values = (0L..<64L).collect { it << 32 }
+
+    when:
+    values.each { set.add(it) }
+
+    then:
+    set.size() == 64
+    values.every { set.contains(it) }
+    !set.contains(64L << 32)
+  }
+
+  def "retaining keeps the values contained in the other set only"() {
+    given:
+    def set = new LongHashSet()
+    [0L, 1L, 2L, 3L, 1_000L, -5L].each { set.add(it) }
+    def other = new LongHashSet()
+    [0L, 2L, -5L, 7L].each { other.add(it) }
+
+    when:
+    set.retainAll(other)
+
+    then:
+    set.size() == 3
+    [0L, 2L, -5L].every { set.contains(it) }
+    [1L, 3L, 1_000L, 7L].every { !set.contains(it) }
+  }
+
+  def "retaining with an empty set removes all values"() {
+    given:
+    def set = new LongHashSet()
+    (0L..100L).each { set.add(it) }
+
+    when:
+    set.retainAll(new LongHashSet())
+
+    then:
+    set.isEmpty()
+    !set.contains(0L)
+    !set.contains(50L)
+  }
+
+  def "a cleared set can be reused"() {
+    given:
+    def set = new LongHashSet()
+    (0L..100L).each { set.add(it) }
+
+    when:
+    set.clear()
+
+    then:
+    set.isEmpty()
+    !set.contains(0L)
+    !set.contains(100L)
+    set.add(100L)
+    set.size() == 1
+  }
+}
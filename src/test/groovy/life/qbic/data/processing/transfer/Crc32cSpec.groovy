@@ -0,0 +1,57 @@
+package life.qbic.data.processing.transfer
+
+import java.util.zip.CRC32C
+import spock.lang.Specification
+
+class Crc32cSpec extends Specification {
+
+  def "the combined checksums of two parts are the checksum of the whole data"() {
+    given:
+    def data = new byte[size]
+    new Random(size).nextBytes(data)
+
+    expect:
+    Crc32c.combine(crc(data, 0, split), crc(data, split, size - split), size - split) ==
+        crc(data, 0, size)
+
+    where:
+    size      | split
+    0         | 0
+    1         | 0
+    1         | 1
+    2         | 1
+    100       | 37
+    4096      | 4095
+    1_000_003 | 524_288
+  }
+
+  def "the checksums of consecutive chunks combine to the checksum of the whole data"() {
+    given:
+    def data = new byte[10_000]
+    new Random(42).nextBytes(data)
+
+    when:
+    long combined = 0
+    for (int offset = 0; offset < data.length; offset += chunkSize) {
+      int length = Math.min(chunkSize, data.length - offset)
+      combined = Crc32c.combine(combined, crc(data, offset, length), length)
+    }
+
+    then:
+    combined == crc(data, 0, data.length)
+
+    where:
+    chunkSize << [1, 1024, 3333, 10_000]
+  }
+
+  def "combining with an empty second part keeps the first checksum"() {
+    expect:
+    Crc32c.combine(0x12345678L, 0L, 0L) == 0x12345678L
+  }
+
+  private static long crc(byte[] data, int offset, int length) {
+    def crc = new CRC32C()
+    crc.update(data, offset, length)
+    crc.value
+  }
+}